@@ -0,0 +1,62 @@
+package AnimationProcessor;
+
+import java.util.ArrayList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures the time taken to apply the effects of one event frame, both to
+ * the shapes as an {@link AnimationSession} does and to a
+ * {@link PackedScene}.
+ * <p>
+ * Each call applies the next event frame, starting again from the first once
+ * the end of the animation is reached. The shapes are not reset when this
+ * happens, as every effect sets its shape to a fixed state.
+ */
+public class EffectBenchmark extends SceneBenchmark {
+
+    private ArrayList<Shape> Shapes;
+    private Timeline Events;
+    private PackedScene Scene;
+    private DirtyRegion Dirty;
+    private SpatialIndex Index;
+    private int Frames;
+    private int Frame;
+
+    @Setup
+    public void setup() {
+        Shapes = scene();
+        Events = Timeline.build(Shapes);
+        Scene = new PackedScene(SceneSnapshot.copyOf(Shapes), Events);
+        Dirty = new DirtyRegion();
+        Index = new SpatialIndex(Shapes);
+        Frames = generator().Frames;
+        Frame = -1;
+    }
+
+    /**
+     * Moves on to the next event frame.
+     *
+     * @return The event frame.
+     */
+    private int nextFrame() {
+        Frame = Events.nextEvent(Frame);
+        if (Frame >= Frames) {
+            Frame = Events.nextEvent(-1);
+        }
+        return Frame;
+    }
+
+    @Benchmark
+    public boolean shapes() {
+        Events.apply(nextFrame(), Shapes, Dirty, Index);
+        boolean changed = !Dirty.isEmpty();
+        Dirty.clear();
+        return changed;
+    }
+
+    @Benchmark
+    public void packed() {
+        Scene.applyFrame(nextFrame());
+    }
+}
@@ -0,0 +1,54 @@
+package AnimationProcessor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the time taken to load an animation from a file, including
+ * building the timeline, display list, spatial index, layers and
+ * checkpoints.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LoadBenchmark extends SceneBenchmark {
+
+    /**
+     * The format of the file: "text" for an input file, or "binary" for a
+     * file compiled into the {@link BinaryScene binary format}.
+     */
+    @Param({"text", "binary"})
+    public String format;
+
+    private Path File;
+
+    @Setup
+    public void setup() throws IOException {
+        SceneGenerator generator = generator();
+        ArrayList<Shape> Shapes = generator.generate(shapes);
+        File = Files.createTempFile("scene", "." + format);
+        if (format.equals("binary")) {
+            BinaryScene.write(File, Shapes, generator.Frames, generator.Fps);
+        } else {
+            generator.write(File, Shapes);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(File);
+    }
+
+    @Benchmark
+    public AnimationSession load() {
+        AnimationSession session = new AnimationSession();
+        session.loadAnimationFromFile(File.toString());
+        return session;
+    }
+}
@@ -0,0 +1,35 @@
+package AnimationProcessor;
+
+import java.util.ArrayList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures the time taken to find the next frame on which an event occurs,
+ * as an {@link AnimationSession} does after each event frame.
+ */
+public class NextEventBenchmark extends SceneBenchmark {
+
+    private Timeline Events;
+    private int Frames;
+    /**
+     * The event frame reached so far.
+     */
+    private int Frame;
+
+    @Setup
+    public void setup() {
+        ArrayList<Shape> Shapes = scene();
+        Events = Timeline.build(Shapes);
+        Frames = generator().Frames;
+        Frame = -1;
+    }
+
+    @Benchmark
+    public int nextEvent() {
+        // Walks from one event frame to the next, starting again once the end of the animation is reached.
+        int next = Events.nextEvent(Frame);
+        Frame = next < Frames ? next : -1;
+        return next;
+    }
+}
@@ -0,0 +1,78 @@
+package AnimationProcessor;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the time taken to draw a whole frame into a
+ * {@link BufferedImage} without a display.
+ * <p>
+ * The scene is drawn as it is halfway through the animation, from the
+ * {@link DisplayList} used by the {@link HeadlessRenderer}, from a
+ * {@link PackedScene}, and through the {@link LayerCache} and
+ * {@link SpatialIndex} used when painting the window.
+ */
+public class PaintBenchmark extends SceneBenchmark {
+
+    private DisplayList Display;
+    private PackedScene Scene;
+    private SpatialIndex Index;
+    private LayerCache Layers;
+    private BufferedImage Image;
+    private Graphics2D Graphics;
+    private final Rectangle Area = new Rectangle(0, 0, HeadlessRenderer.DefaultWidth, HeadlessRenderer.DefaultHeight);
+
+    @Setup
+    public void setup() {
+        ArrayList<Shape> Shapes = scene();
+        Timeline Events = Timeline.build(Shapes);
+        // The layers are sorted while the shapes are in the state of frame 0.
+        Index = new SpatialIndex(Shapes);
+        Layers = new LayerCache(Shapes, Events, Index);
+        Scene = new PackedScene(SceneSnapshot.copyOf(Shapes), Events);
+
+        int middle = generator().Frames / 2;
+        Events.applyRange(0, middle, Shapes);
+        for (int frame = 0; frame < middle; frame++) {
+            Scene.applyFrame(frame);
+        }
+        for (int shape = 0; shape < Shapes.size(); shape++) {
+            Index.update(shape);
+        }
+        Display = new DisplayList(Shapes);
+        Image = new BufferedImage(HeadlessRenderer.DefaultWidth, HeadlessRenderer.DefaultHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics = Image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        Graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage displayList() {
+        HeadlessRenderer.drawFrame(Graphics, Display, Image.getWidth(), Image.getHeight());
+        return Image;
+    }
+
+    @Benchmark
+    public BufferedImage packed() {
+        Graphics.setColor(HeadlessRenderer.Background);
+        Graphics.fillRect(0, 0, Image.getWidth(), Image.getHeight());
+        Scene.draw(Graphics);
+        return Image;
+    }
+
+    @Benchmark
+    public BufferedImage layered() {
+        Graphics.setColor(HeadlessRenderer.Background);
+        Graphics.fillRect(0, 0, Image.getWidth(), Image.getHeight());
+        Layers.draw(Graphics, Display, Index, Area, Image.getWidth(), Image.getHeight());
+        return Image;
+    }
+}
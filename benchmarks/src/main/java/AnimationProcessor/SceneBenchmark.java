@@ -0,0 +1,65 @@
+package AnimationProcessor;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The settings shared by every benchmark, which each run on scenes made by a
+ * {@link SceneGenerator}.
+ * <p>
+ * By default every benchmark is run on scenes of 10^2 to 10^6 shapes. A
+ * single size can be chosen with the JMH option {@code -p shapes=<count>}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Djava.awt.headless=true"})
+public abstract class SceneBenchmark {
+
+    /**
+     * The number of shapes in the scene.
+     */
+    @Param({"100", "1000", "10000", "100000", "1000000"})
+    public int shapes;
+    /**
+     * The average number of effects given to each shape.
+     */
+    @Param({"2"})
+    public double effectsPerShape;
+    /**
+     * The seed the scene is made from.
+     */
+    @Param({"42"})
+    public long seed;
+
+    /**
+     * Defines a generator for the chosen settings.
+     *
+     * @return The generator.
+     */
+    protected SceneGenerator generator() {
+        SceneGenerator generator = new SceneGenerator(seed);
+        generator.EffectsPerShape = effectsPerShape;
+        return generator;
+    }
+
+    /**
+     * Creates a scene with the chosen settings.
+     *
+     * @return The shapes of the scene, in the state of frame 0.
+     */
+    protected ArrayList<Shape> scene() {
+        return generator().generate(shapes);
+    }
+}
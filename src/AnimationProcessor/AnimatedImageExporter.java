@@ -0,0 +1,567 @@
+package AnimationProcessor;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Exports an animation as an animated GIF or APNG image.
+ * <p>
+ * Shapes only change on the frames the {@link Timeline} holds events for, so
+ * most frames of an animation are the same as the one before. Only the event
+ * frames are visited: on each, the area changed by its effects is drawn
+ * again and compared with the frame before, and only the rectangle of pixels
+ * that changed is written, over the previous frame. Each run of unchanged
+ * frames is written once, shown for the length of the run. The size of the
+ * image, and the time taken to write it, therefore grow with the number of
+ * event frames and the area their effects change, not with the number of
+ * frames.
+ * <p>
+ * GIF images hold at most 256 colors per frame, so frames with more colors
+ * are reduced to 256 by the JDK's GIF encoder. APNG frames keep every color.
+ * <p>
+ * The exporter applies the effects to the shapes of the session it was given,
+ * as the {@link HeadlessRenderer} does.
+ */
+public class AnimatedImageExporter {
+
+    /**
+     * The file formats the animation can be exported in.
+     */
+    public enum Format {
+        /**
+         * An animated GIF image.
+         */
+        GIF("gif"),
+        /**
+         * An animated PNG image, which programs that do not support animation
+         * show as its first frame.
+         */
+        APNG("png");
+
+        /**
+         * The file extension of the format.
+         */
+        protected final String Extension;
+
+        Format(String Extension) {
+            this.Extension = Extension;
+        }
+
+        /**
+         * Finds the format of an image file from its extension.
+         *
+         * @param file The image file.
+         * @return The format, or null if the extension is not known.
+         */
+        static protected Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase();
+            if (name.endsWith(".gif")) {
+                return GIF;
+            }
+            return name.endsWith(".png") || name.endsWith(".apng") ? APNG : null;
+        }
+    }
+
+    /**
+     * Writes the frames of an animated image. Each frame is a rectangle drawn
+     * over the frame before it.
+     */
+    private interface Encoder {
+
+        /**
+         * Writes a frame.
+         *
+         * @param image The whole frame.
+         * @param area The part of the frame that changed, which is written.
+         * @param first The first frame of the animation the frame is shown on.
+         * @param length The number of frames of the animation it is shown for.
+         * @throws IOException If the frame could not be written.
+         */
+        void writeFrame(BufferedImage image, Rectangle area, int first, int length) throws IOException;
+
+        /**
+         * Finishes the image and closes its file.
+         *
+         * @throws IOException If the image could not be written.
+         */
+        void close() throws IOException;
+    }
+
+    private final List<Shape> Shapes;
+    private final Timeline Events;
+    private final Checkpoints Seeker;
+    private final int Frames;
+    private final int Fps;
+
+    /**
+     * How far past the area changed by effects the shapes are drawn again.
+     * Java2D may draw the pixels at the edge of a clip differently than when
+     * the shapes are drawn in full, so only the pixels inside the margin are
+     * kept.
+     */
+    static private final int ClipMargin = 2;
+
+    /**
+     * The size of the image.
+     */
+    protected int Width = HeadlessRenderer.DefaultWidth;
+    protected int Height = HeadlessRenderer.DefaultHeight;
+
+    /**
+     * The number of frames written by the last export, and the number of
+     * event frames found to change nothing that is drawn.
+     */
+    protected int Written;
+    protected int Unchanged;
+
+    /**
+     * Defines an exporter for the animation of a session, which should not
+     * have been played yet.
+     *
+     * @param Session The session holding the animation.
+     */
+    AnimatedImageExporter(AnimationSession Session) {
+        this.Shapes = Session.ShapeList;
+        this.Events = Session.EffectTimeline;
+        this.Seeker = Session.Seeker;
+        this.Frames = Session.Frames;
+        // Error Checking
+        // An image must have a positive frame rate, so animations without one are written at one frame per second.
+        this.Fps = Math.max(1, Session.Fps);
+    }
+
+    /**
+     * Exports the animation from a frame to its end.
+     *
+     * @param File The image file, which is replaced if it exists.
+     * @param Type The format of the image.
+     * @param from The first frame exported.
+     * @throws IOException If the image could not be written.
+     */
+    protected void export(Path File, Format Type, int from) throws IOException {
+        from = Math.max(0, Math.min(from, Frames - 1));
+        // Moves the shapes to the first frame, from the nearest checkpoint.
+        if (from > 0) {
+            Seeker.restore(from, Shapes);
+        }
+        DisplayList Display = new DisplayList(Shapes);
+        SpatialIndex Index = new SpatialIndex(Shapes);
+        DirtyRegion Dirty = new DirtyRegion();
+        Rectangle bounds = new Rectangle(0, 0, Width, Height);
+        // The frame being drawn, and the frame last written.
+        BufferedImage canvas = new BufferedImage(Width, Height, BufferedImage.TYPE_INT_RGB);
+        BufferedImage shown = new BufferedImage(Width, Height, BufferedImage.TYPE_INT_RGB);
+        int[] drawn = ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+        int[] written = ((DataBufferInt) shown.getRaster().getDataBuffer()).getData();
+        Written = 0;
+        Unchanged = 0;
+
+        Encoder encoder = Type == Format.GIF ? new GifEncoder(File, Fps) : new ApngEncoder(File, Width, Height, Fps);
+        Graphics2D g = canvas.createGraphics();
+        try {
+            // The first frame is drawn and written in full.
+            Events.apply(from, Shapes, null, Index);
+            HeadlessRenderer.drawFrame(g, Display, Width, Height);
+            System.arraycopy(drawn, 0, written, 0, drawn.length);
+            int first = from;
+            Rectangle area = bounds;
+
+            for (int frame = Events.nextEvent(from); frame < Frames; frame = Events.nextEvent(frame)) {
+                Dirty.clear();
+                Events.apply(frame, Shapes, Dirty, Index);
+                // The bounds of the region are inclusive.
+                Rectangle changed = Dirty.getBounds();
+                changed.width++;
+                changed.height++;
+                changed = changed.intersection(bounds);
+                if (!Dirty.isEmpty() && !changed.isEmpty()) {
+                    Rectangle margin = new Rectangle(changed);
+                    margin.grow(ClipMargin, ClipMargin);
+                    margin = margin.intersection(bounds);
+                    draw(g, Display, Index, margin);
+                    // The frame being drawn was the same as the last frame written, so the margin is returned to it.
+                    for (int y = margin.y; y < margin.y + margin.height; y++) {
+                        int row = y * Width;
+                        if (y < changed.y || y >= changed.y + changed.height) {
+                            System.arraycopy(written, row + margin.x, drawn, row + margin.x, margin.width);
+                        } else {
+                            System.arraycopy(written, row + margin.x, drawn, row + margin.x, changed.x - margin.x);
+                            int right = changed.x + changed.width;
+                            System.arraycopy(written, row + right, drawn, row + right, margin.x + margin.width - right);
+                        }
+                    }
+                    changed = changedPixels(drawn, written, changed);
+                }
+                // Error Checking
+                // Effects that change nothing that is drawn, such as showing a shape that is already visible, add no frame.
+                if (Dirty.isEmpty() || changed == null || changed.isEmpty()) {
+                    Unchanged++;
+                    continue;
+                }
+                encoder.writeFrame(shown, area, first, frame - first);
+                Written++;
+                for (int y = changed.y; y < changed.y + changed.height; y++) {
+                    System.arraycopy(drawn, y * Width + changed.x, written, y * Width + changed.x, changed.width);
+                }
+                first = frame;
+                area = changed;
+            }
+            encoder.writeFrame(shown, area, first, Math.max(1, Frames - first));
+            Written++;
+        } finally {
+            g.dispose();
+            encoder.close();
+        }
+    }
+
+    /**
+     * Draws the shapes overlapping part of the frame.
+     *
+     * @param g The graphics object of the frame.
+     * @param Display The shapes compiled into draw commands.
+     * @param Index The spatial index of the shapes.
+     * @param area The part of the frame to draw.
+     */
+    static private void draw(Graphics2D g, DisplayList Display, SpatialIndex Index, Rectangle area) {
+        g.setClip(area);
+        g.setColor(HeadlessRenderer.Background);
+        g.fillRect(area.x, area.y, area.width, area.height);
+        int count = Index.query(area.x, area.y, area.x + area.width, area.y + area.height);
+        for (int i = 0; i < count; i++) {
+            Display.draw(g, Index.Results[i]);
+        }
+        g.setClip(null);
+    }
+
+    /**
+     * Finds the smallest rectangle holding every pixel that differs between
+     * two frames, within an area.
+     *
+     * @param drawn The pixels of the new frame.
+     * @param written The pixels of the last frame written.
+     * @param area The area to compare.
+     * @return The rectangle, or null if no pixel differs.
+     */
+    private Rectangle changedPixels(int[] drawn, int[] written, Rectangle area) {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = -1;
+        int maxY = -1;
+        for (int y = area.y; y < area.y + area.height; y++) {
+            int row = y * Width;
+            int left = area.x;
+            int right = area.x + area.width - 1;
+            while (left <= right && drawn[row + left] == written[row + left]) {
+                left++;
+            }
+            if (left > right) {
+                continue;
+            }
+            while (drawn[row + right] == written[row + right]) {
+                right--;
+            }
+            minX = Math.min(minX, left);
+            maxX = Math.max(maxX, right);
+            minY = Math.min(minY, y);
+            maxY = y;
+        }
+        return maxY < 0 ? null : new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+    }
+
+    /**
+     * Writes the frames of an animated GIF with the JDK's GIF encoder.
+     */
+    static private class GifEncoder implements Encoder {
+
+        static private final String MetadataFormat = "javax_imageio_gif_image_1.0";
+        /**
+         * The longest delay a frame can hold, in hundredths of a second.
+         */
+        static private final int MaxDelay = 0xFFFF;
+
+        private final ImageWriter Writer;
+        private final ImageOutputStream Output;
+        private final int Fps;
+        private boolean First = true;
+
+        GifEncoder(Path File, int Fps) throws IOException {
+            this.Fps = Fps;
+            Files.deleteIfExists(File);
+            Output = ImageIO.createImageOutputStream(File.toFile());
+            Writer = ImageIO.getImageWritersByFormatName("gif").next();
+            Writer.setOutput(Output);
+            Writer.prepareWriteSequence(null);
+        }
+
+        public void writeFrame(BufferedImage image, Rectangle area, int first, int length) throws IOException {
+            // Delays are in hundredths of a second, so each is measured from the start to keep the rounding from adding up.
+            int delay = (int) (Math.round((first + length) * 100.0 / Fps) - Math.round(first * 100.0 / Fps));
+            write(image.getSubimage(area.x, area.y, area.width, area.height), area.x, area.y, Math.min(delay, MaxDelay));
+            // Frames shown for longer than a GIF can hold are followed by a pixel that changes nothing.
+            for (delay -= MaxDelay; delay > 0; delay -= MaxDelay) {
+                write(image.getSubimage(area.x, area.y, 1, 1), area.x, area.y, Math.min(delay, MaxDelay));
+            }
+        }
+
+        private void write(BufferedImage part, int x, int y, int delay) throws IOException {
+            IIOMetadata metadata = Writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(part), null);
+            IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(MetadataFormat);
+            IIOMetadataNode control = child(root, "GraphicControlExtension");
+            // The frame is drawn over the frames before it.
+            control.setAttribute("disposalMethod", "doNotDispose");
+            control.setAttribute("userInputFlag", "FALSE");
+            control.setAttribute("transparentColorFlag", "FALSE");
+            control.setAttribute("delayTime", Integer.toString(delay));
+            control.setAttribute("transparentColorIndex", "0");
+            IIOMetadataNode descriptor = child(root, "ImageDescriptor");
+            descriptor.setAttribute("imageLeftPosition", Integer.toString(x));
+            descriptor.setAttribute("imageTopPosition", Integer.toString(y));
+            descriptor.setAttribute("imageWidth", Integer.toString(part.getWidth()));
+            descriptor.setAttribute("imageHeight", Integer.toString(part.getHeight()));
+            descriptor.setAttribute("interlaceFlag", "FALSE");
+            if (First) {
+                // Plays the animation in a loop.
+                IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+                loop.setAttribute("applicationID", "NETSCAPE");
+                loop.setAttribute("authenticationCode", "2.0");
+                loop.setUserObject(new byte[] {1, 0, 0});
+                child(root, "ApplicationExtensions").appendChild(loop);
+                First = false;
+            }
+            metadata.setFromTree(MetadataFormat, root);
+            Writer.writeToSequence(new IIOImage(part, null, metadata), null);
+        }
+
+        static private IIOMetadataNode child(IIOMetadataNode root, String name) {
+            for (int i = 0; i < root.getLength(); i++) {
+                if (root.item(i).getNodeName().equals(name)) {
+                    return (IIOMetadataNode) root.item(i);
+                }
+            }
+            IIOMetadataNode node = new IIOMetadataNode(name);
+            root.appendChild(node);
+            return node;
+        }
+
+        public void close() throws IOException {
+            try {
+                Writer.endWriteSequence();
+            } finally {
+                Writer.dispose();
+                Output.close();
+            }
+        }
+    }
+
+    /**
+     * Writes the chunks of an animated PNG. The first frame is the default
+     * image, and the number of frames is filled in once every frame has been
+     * written.
+     */
+    static private class ApngEncoder implements Encoder {
+
+        static private final byte[] Signature = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+        /**
+         * The position of the number of frames in the acTL chunk, and of the
+         * checksum of that chunk.
+         */
+        static private final int FrameCount = 41;
+        static private final int FrameCountCrc = 49;
+        /**
+         * The longest delay a frame can hold, in frames.
+         */
+        static private final int MaxDelay = 0xFFFF;
+        /**
+         * The largest amount of compressed data held in one chunk.
+         */
+        static private final int ChunkSize = 1 << 16;
+
+        private final FileChannel Channel;
+        private final int Fps;
+        private final Deflater Compressor = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        private final CRC32 Crc = new CRC32();
+        /**
+         * Holds each chunk before it is written, and each frame's filtered
+         * rows before they are compressed, which grow as needed.
+         */
+        private final ByteBuffer Chunk = ByteBuffer.allocate(ChunkSize + 64);
+        private byte[] Rows = new byte[0];
+        private final byte[] Compressed = new byte[ChunkSize];
+        /**
+         * The number of frames written, and the sequence number of the next
+         * fcTL or fdAT chunk.
+         */
+        private int Count;
+        private int Sequence;
+
+        ApngEncoder(Path File, int Width, int Height, int Fps) throws IOException {
+            // Error Checking
+            // The frame rate is the denominator of each delay, which holds 16 bits.
+            this.Fps = Math.min(Fps, 0xFFFF);
+            Channel = FileChannel.open(File, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            writeFully(ByteBuffer.wrap(Signature));
+            // 8 bit RGB, without interlacing.
+            begin("IHDR").putInt(Width).putInt(Height).put((byte) 8).put((byte) 2).put((byte) 0).put((byte) 0).put((byte) 0);
+            end();
+            // The number of frames, filled in on close, and 0 to play them in a loop.
+            begin("acTL").putInt(0).putInt(0);
+            end();
+        }
+
+        public void writeFrame(BufferedImage image, Rectangle area, int first, int length) throws IOException {
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            write(pixels, image.getWidth(), area, Math.min(length, MaxDelay));
+            // Frames shown for longer than a delay can hold are followed by a pixel that changes nothing.
+            for (length -= MaxDelay; length > 0; length -= MaxDelay) {
+                write(pixels, image.getWidth(), new Rectangle(area.x, area.y, 1, 1), Math.min(length, MaxDelay));
+            }
+        }
+
+        private void write(int[] pixels, int stride, Rectangle area, int delay) throws IOException {
+            begin("fcTL").putInt(Sequence++).putInt(area.width).putInt(area.height).putInt(area.x).putInt(area.y);
+            // Shown for the given number of frames, not disposed of, and drawn over the frame before it.
+            Chunk.putShort((short) delay).putShort((short) Fps).put((byte) 0).put((byte) 0);
+            end();
+
+            int length = filter(pixels, stride, area);
+            Compressor.reset();
+            Compressor.setInput(Rows, 0, length);
+            Compressor.finish();
+            while (!Compressor.finished()) {
+                int size = Compressor.deflate(Compressed);
+                if (size == 0) {
+                    continue;
+                }
+                // The first frame is the image shown by programs that do not support animation.
+                if (Count == 0) {
+                    begin("IDAT");
+                } else {
+                    begin("fdAT").putInt(Sequence++);
+                }
+                Chunk.put(Compressed, 0, size);
+                end();
+            }
+            Count++;
+        }
+
+        /**
+         * Converts part of a frame into the rows of a PNG image, each filtered
+         * by whichever of the none, sub and up filters gives the smallest
+         * values, which usually compress best.
+         *
+         * @param pixels The pixels of the frame.
+         * @param stride The width of the frame.
+         * @param area The part of the frame to convert.
+         * @return The number of bytes in {@link ApngEncoder#Rows}.
+         */
+        private int filter(int[] pixels, int stride, Rectangle area) {
+            int rowLength = 1 + area.width * 3;
+            int length = rowLength * area.height;
+            if (Rows.length < length) {
+                Rows = new byte[length];
+            }
+            for (int y = 0; y < area.height; y++) {
+                int row = (area.y + y) * stride + area.x;
+                int out = y * rowLength;
+                // Sums the magnitude of each filtered byte to pick the filter.
+                long none = 0;
+                long sub = 0;
+                long up = 0;
+                for (int x = 0; x < area.width; x++) {
+                    int p = pixels[row + x];
+                    int left = x > 0 ? pixels[row + x - 1] : 0;
+                    int above = y > 0 ? pixels[row + x - stride] : 0;
+                    for (int shift = 16; shift >= 0; shift -= 8) {
+                        int c = (p >> shift) & 0xFF;
+                        none += Math.abs((byte) c);
+                        sub += Math.abs((byte) (c - ((left >> shift) & 0xFF)));
+                        up += Math.abs((byte) (c - ((above >> shift) & 0xFF)));
+                    }
+                }
+                int type = none <= sub && none <= up ? 0 : sub <= up ? 1 : 2;
+                Rows[out++] = (byte) type;
+                for (int x = 0; x < area.width; x++) {
+                    int p = pixels[row + x];
+                    int prior = type == 1 ? (x > 0 ? pixels[row + x - 1] : 0) : type == 2 && y > 0 ? pixels[row + x - stride] : 0;
+                    Rows[out++] = (byte) ((p >> 16) - (prior >> 16));
+                    Rows[out++] = (byte) ((p >> 8) - (prior >> 8));
+                    Rows[out++] = (byte) (p - prior);
+                }
+            }
+            return length;
+        }
+
+        public void close() throws IOException {
+            try {
+                begin("IEND");
+                end();
+                // Fills in the number of frames and the new checksum of the acTL chunk.
+                ByteBuffer count = ByteBuffer.allocate(4).putInt(0, Count);
+                Crc.reset();
+                Crc.update("acTL".getBytes(StandardCharsets.US_ASCII));
+                Crc.update(count.array());
+                Crc.update(new byte[4]);
+                Channel.write(count, FrameCount);
+                Channel.write(ByteBuffer.allocate(4).putInt(0, (int) Crc.getValue()), FrameCountCrc);
+            } finally {
+                Compressor.end();
+                Channel.close();
+            }
+        }
+
+        /**
+         * Starts a chunk, leaving room for its length.
+         *
+         * @param type The type of the chunk.
+         * @return The buffer the data of the chunk is written to.
+         */
+        private ByteBuffer begin(String type) {
+            Chunk.clear();
+            Chunk.order(ByteOrder.BIG_ENDIAN).putInt(0).put(type.getBytes(StandardCharsets.US_ASCII));
+            return Chunk;
+        }
+
+        /**
+         * Fills in the length and checksum of the chunk being written, then
+         * writes it.
+         *
+         * @throws IOException If the chunk could not be written.
+         */
+        private void end() throws IOException {
+            int length = Chunk.position() - 8;
+            Chunk.putInt(0, length);
+            Crc.reset();
+            Crc.update(Chunk.array(), 4, length + 4);
+            Chunk.putInt((int) Crc.getValue());
+            Chunk.flip();
+            writeFully(Chunk);
+        }
+
+        private void writeFully(ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                Channel.write(bytes);
+            }
+        }
+    }
+}
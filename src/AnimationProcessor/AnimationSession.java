@@ -0,0 +1,798 @@
+package AnimationProcessor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A single animation: its shapes and effects, the structures built from them
+ * for playback, and its own clock.
+ * <p>
+ * Each session owns everything it needs to load, step, seek and paint its
+ * animation, including the {@link AnimationSession#Canvas component} it is
+ * drawn on, so any number of sessions can be loaded and played in one
+ * program. The {@link AnimationPlayer} shows a session in a window, and the
+ * {@link HeadlessRenderer} can draw the shapes of a session into images.
+ * <p>
+ * Thread safety:
+ * <ul>
+ * <li>Sessions share no mutable state, so different sessions can be used at
+ * the same time from different threads without any locking.</li>
+ * <li>A single session is not safe to load, {@link AnimationSession#run run},
+ * {@link AnimationSession#stepFrame step} or
+ * {@link AnimationSession#seek seek} from several threads at once. Each of
+ * these must be called by one thread at a time, usually the thread that
+ * created the session.</li>
+ * <li>The {@link AnimationSession#Canvas} is painted by the swing thread
+ * while the session is being played. It only reads the shapes while holding
+ * the lock on the {@link AnimationSession#ShapeList}, which is also held
+ * while effects change them, so a half updated frame is never drawn.</li>
+ * <li>While an animation is
+ * {@link AnimationSession#loadAnimationProgressively loaded progressively},
+ * its {@link ProgressiveLoader} only hands over shapes it will not touch
+ * again. The scene is built again with them on the
+ * {@link AnimationSession#ParsePool}, and swapped in by the thread stepping
+ * the animation while holding the same lock.</li>
+ * <li>While the input file is {@link AnimationSession#watchFile watched},
+ * each new version of the animation is built by its {@link HotReloader} on a
+ * thread of its own, and swapped in by the thread stepping the animation while
+ * holding the same lock.</li>
+ * <li>The {@link AnimationSession#Metrics} can be read from any thread.</li>
+ * </ul>
+ * The first and third of these are checked by {@code AnimationSessionTest}.
+ * <p>
+ * Methods related to painting on the screen are located in {@link JComp}.
+ */
+public class AnimationSession {
+
+    /**
+     * The {@link javax.swing.JComponent} that draws this session, which can be
+     * added to a window.
+     */
+    protected final JComp Canvas = new JComp(this);
+
+    /**
+     * Stores the information of each {@link Shape} read from the input file.
+     */
+    protected final ArrayList<Shape> ShapeList = new ArrayList<>();
+
+    /**
+     * Stores every {@link Effect} in the {@link AnimationSession#ShapeList},
+     * indexed by the frame on which it occurs.
+     */
+    protected Timeline EffectTimeline = Timeline.build(ShapeList);
+
+    /**
+     * The shapes in the {@link AnimationSession#ShapeList} compiled into draw
+     * commands for {@link JComp}.
+     */
+    protected DisplayList Display = new DisplayList(ShapeList);
+
+    /**
+     * A grid of the visible shapes in the {@link AnimationSession#ShapeList},
+     * used by {@link JComp#paint paint} to only draw the shapes inside the
+     * area being repainted. It is updated whenever an effect changes a shape.
+     */
+    protected SpatialIndex Index = new SpatialIndex(ShapeList);
+
+    /**
+     * The static shapes in the {@link AnimationSession#ShapeList} rendered
+     * into images, so {@link JComp#paint paint} only draws the shapes changed
+     * by effects. The shapes held by these images stay in the
+     * {@link AnimationSession#Index}, and are skipped when painting.
+     */
+    protected LayerCache Layers = new LayerCache(ShapeList, EffectTimeline);
+
+    /**
+     * Snapshots of the {@link AnimationSession#ShapeList} taken when the
+     * animation is loaded, used by {@link AnimationSession#seek seek} to move
+     * to any frame.
+     */
+    protected Checkpoints Seeker = new Checkpoints(ShapeList, EffectTimeline, 0);
+
+    /**
+     * The frame rate of the Animation.
+     */
+    protected int Fps = 10;
+    /**
+     * The current frame of the Animation.
+     */
+    protected volatile int CurrFrame = 0;
+    /**
+     * The maximum number of frames the Animation should run for.
+     */
+    protected int Frames = 1000;
+
+    /**
+     * What the {@link FrameScheduler} should do when a frame takes longer than
+     * the frame rate allows.
+     */
+    protected FrameScheduler.CatchUp CatchUpPolicy = FrameScheduler.CatchUp.DROP_FRAMES;
+
+    /**
+     * The largest number of bytes the {@link AnimationSession#Seeker} may use
+     * for its snapshots. A larger budget allows snapshots to be taken more
+     * often, which makes seeking faster.
+     */
+    protected long CheckpointBudget = 16L << 20;
+
+    /**
+     * The threads large input files are read on by the {@link ParallelParser}.
+     */
+    protected ForkJoinPool ParsePool = ForkJoinPool.commonPool();
+
+    /**
+     * What playback does while the animation is being
+     * {@link AnimationSession#loadAnimationProgressively loaded progressively}.
+     */
+    protected ProgressiveLoader.Behind LoadingPolicy = ProgressiveLoader.Behind.PLAY_LOADED;
+    /**
+     * The number given to the next session created.
+     */
+    static private final AtomicInteger NextId = new AtomicInteger();
+    /**
+     * A number identifying this session, unique within the program.
+     */
+    protected final int Id = NextId.incrementAndGet();
+    /**
+     * The time taken by each part of playback. Nothing is recorded until the
+     * metrics are enabled.
+     */
+    protected final PlaybackMetrics Metrics = new PlaybackMetrics();
+
+    /**
+     * The next frame an event will occur.
+     */
+    private int NextEvent;
+
+    /**
+     * The area of the {@link AnimationSession#Canvas} changed by effects since
+     * it was last repainted.
+     */
+    private final DirtyRegion Dirty = new DirtyRegion();
+
+    /**
+     * Reads the shapes of an animation being loaded progressively, or null once
+     * every shape has been added to the {@link AnimationSession#ShapeList}.
+     */
+    private ProgressiveLoader Loader;
+    /**
+     * The shapes taken from the {@link AnimationSession#Loader} that have not
+     * been added to the {@link AnimationSession#ShapeList} yet.
+     */
+    private final ArrayList<Shape> Loaded = new ArrayList<>();
+    /**
+     * The first frame on which a shape in {@link AnimationSession#Loaded} has
+     * an effect.
+     */
+    private int LoadedDue = Integer.MAX_VALUE;
+    /**
+     * Every shape taken from the {@link AnimationSession#Loader} that a scene
+     * has been built from, in the state of frame 0. These are never played,
+     * so each scene is built from copies of them.
+     */
+    private final ArrayList<Shape> Unplayed = new ArrayList<>();
+    /**
+     * The scene being built from the shapes loaded so far, or null if none is
+     * being built, and whether it holds every shape of the input file.
+     */
+    private CompletableFuture<HotReloader.Reload> Building;
+    private boolean BuildingLast;
+    /**
+     * When the progressive load started, and the event recording it.
+     */
+    private long LoadBegin;
+    private PlaybackEvents.Load LoadEvent;
+
+    /**
+     * The scene built from the last change to the input file, waiting to be
+     * swapped in on the next frame, or null if there is none.
+     */
+    private final AtomicReference<HotReloader.Reload> PendingReload = new AtomicReference<>();
+
+    /**
+     * The area in the bottom left corner of the {@link AnimationSession#Canvas}
+     * holding the Fps and Frame counters drawn by {@link JComp#paint paint}.
+     */
+    static protected final int OverlayWidth = 150;
+    static protected final int OverlayHeight = 32;
+
+    /**
+     * Parses the information found in the input file and stores it in the
+     * {@link AnimationSession#ShapeList}.
+     * <p>
+     * After running this method, the program should assume that all data from
+     * the input file is stored properly in the
+     * {@link AnimationSession#ShapeList}, that every effect has been indexed in
+     * the {@link AnimationSession#EffectTimeline}, and that the shapes have been
+     * compiled into the {@link AnimationSession#Display display list} and the
+     * {@link AnimationSession#Index spatial index}, with the static shapes
+     * cached in the {@link AnimationSession#Layers layers}, and that
+     * {@link AnimationSession#Seeker checkpoints} have been taken for seeking.
+     * <p>
+     * Files compiled into the {@link BinaryScene binary format} are also
+     * accepted, and are loaded without any text parsing. Large input files are
+     * read in blocks on the {@link AnimationSession#ParsePool} by the
+     * {@link ParallelParser}.
+     *
+     * <p>
+     * The time taken is recorded in the {@link AnimationSession#Metrics} and
+     * as a {@link PlaybackEvents.Load} event.
+     *
+     * @param Filepath Location of the input file.
+     */
+    protected void loadAnimationFromFile(String Filepath) {
+        long begin = Metrics.begin();
+        PlaybackEvents.Load event = PlaybackEvents.beginLoad();
+        readAnimation(Filepath);
+        compileScene();
+        Metrics.endLoad(begin);
+        PlaybackEvents.endLoad(event, ShapeList.size());
+    }
+
+    /**
+     * Starts loading the information found in the input file, and returns as
+     * soon as the number of frames and the frame rate have been read, so the
+     * time taken does not depend on the size of the file.
+     * <p>
+     * The shapes are read by a {@link ProgressiveLoader} on a background
+     * thread. Each time the animation is {@link AnimationSession#stepFrame
+     * stepped}, the shapes read so far are taken, and everything
+     * {@link AnimationSession#loadAnimationFromFile loadAnimationFromFile}
+     * builds is built again with them on the
+     * {@link AnimationSession#ParsePool}, from copies of the shapes in the
+     * state of frame 0, while the shapes already playing play on. Once built,
+     * the scene is brought up to the current frame and swapped in on the next
+     * step, in the same way as a scene built by a {@link HotReloader}, so
+     * playback is never held up while a scene is built.
+     * <p>
+     * Only one scene is built at a time, holding every shape read before it
+     * started. A scene is only built once as many shapes have been read as are
+     * already playing, once a shape read has an effect on a frame already
+     * reached, or once every shape has been read, so the total time spent
+     * building scenes stays close to the time taken to build the scene once.
+     * Once every shape has been swapped in, the animation is exactly as if it
+     * had been loaded in full.
+     * <p>
+     * Until every shape has been added, the {@link AnimationSession#LoadingPolicy}
+     * decides whether {@link AnimationSession#run run} waits for them or plays
+     * the shapes added so far. Files compiled into the
+     * {@link BinaryScene binary format} are loaded in full before this returns,
+     * as they are read without any text parsing.
+     * <p>
+     * The time until every shape has been added is recorded in the
+     * {@link AnimationSession#Metrics} and as a {@link PlaybackEvents.Load}
+     * event.
+     *
+     * @param Filepath Location of the input file.
+     */
+    protected void loadAnimationProgressively(String Filepath) {
+        ByteBuffer file = FileLoader.readFile(Filepath);
+        if (BinaryScene.isBinary(file)) {
+            loadAnimationFromFile(Filepath);
+            return;
+        }
+        LoadBegin = Metrics.begin();
+        LoadEvent = PlaybackEvents.beginLoad();
+        SceneLexer lexer = new SceneLexer(file);
+        int ShapeNum = readHeader(lexer);
+        Loader = new ProgressiveLoader(lexer, ShapeNum);
+        Loader.start("AnimationLoader-" + Id);
+    }
+
+    /**
+     * Waits until every shape of an animation being
+     * {@link AnimationSession#loadAnimationProgressively loaded progressively}
+     * has been added to the {@link AnimationSession#ShapeList}. Returns at
+     * once if the animation is not being loaded progressively.
+     * <p>
+     * This must be called either before the animation is
+     * {@link AnimationSession#run run} or from the thread running it.
+     */
+    protected void awaitLoaded() {
+        if (Loader == null) {
+            return;
+        }
+        try {
+            Loader.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        // Builds the scene holding every shape, once the scene being built has been swapped in.
+        while (Loader != null) {
+            addLoaded();
+            if (Building != null) {
+                Building.join();
+            }
+        }
+    }
+
+    /**
+     * Swaps in the last scene built from the shapes read by the
+     * {@link AnimationSession#Loader}, once it is ready, and starts building
+     * the next scene if enough shapes have been read since.
+     */
+    private void addLoaded() {
+        if (Building != null && Building.isDone()) {
+            swapLoaded();
+            if (Loader == null) {
+                return;
+            }
+        }
+        boolean finished = Loader.isFinished();
+        int taken = Loader.take(Loaded);
+        // Error Checking
+        // A file that could not be read stops the animation, as it would if it had been loaded in full.
+        if (Loader.failure() != null) {
+            throw new IllegalStateException("The animation could not be loaded", Loader.failure());
+        }
+        for (int shape = Loaded.size() - taken; shape < Loaded.size(); shape++) {
+            for (Effect CurrEffect : Loaded.get(shape).EffectList) {
+                LoadedDue = Math.min(LoadedDue, CurrEffect.start);
+            }
+        }
+        if (Building != null || (Loaded.isEmpty() && !finished)) {
+            return;
+        }
+        // Waits until the number of shapes would at least double, so the scene is rebuilt only a few times, unless
+        // a shape read should already have changed.
+        if (!finished && LoadedDue > CurrFrame && Loaded.size() < Math.max(ProgressiveLoader.ChunkSize, Unplayed.size())) {
+            return;
+        }
+        Unplayed.addAll(Loaded);
+        Loaded.clear();
+        LoadedDue = Integer.MAX_VALUE;
+        // The list is copied, as more shapes are added to it while the scene is built.
+        List<Shape> shapes = new ArrayList<>(Unplayed);
+        int frame = CurrFrame;
+        BuildingLast = finished;
+        Building = CompletableFuture.supplyAsync(() -> buildLoaded(shapes, frame), ParsePool);
+    }
+
+    /**
+     * Builds everything {@link AnimationSession#loadAnimationFromFile
+     * loadAnimationFromFile} builds from copies of the shapes loaded so far,
+     * brought up to a frame. This runs on the
+     * {@link AnimationSession#ParsePool}, and touches nothing being played.
+     *
+     * @param shapes The shapes, in the state of frame 0.
+     * @param frame The frame to bring the scene up to.
+     * @return The scene, ready to be swapped in.
+     */
+    private HotReloader.Reload buildLoaded(List<Shape> shapes, int frame) {
+        HotReloader.Reload scene = new HotReloader.Reload(new ArrayList<>(shapes.size()));
+        for (Shape shape : shapes) {
+            scene.Shapes.add(shape.copy());
+        }
+        scene.Frames = Frames;
+        scene.Fps = Fps;
+        scene.compile(CheckpointBudget, frame);
+        return scene;
+    }
+
+    /**
+     * Swaps the scene built from the shapes loaded so far into the session,
+     * keeping the current frame. Once the scene holds every shape, the load is
+     * finished.
+     */
+    private void swapLoaded() {
+        HotReloader.Reload scene = Building.join();
+        Building = null;
+        synchronized (ShapeList) {
+            swapIn(scene);
+            // Cleared while locked, so a HotReloader never copies the shapes of a partly loaded animation.
+            if (BuildingLast) {
+                Loader = null;
+            }
+        }
+        if (BuildingLast) {
+            Unplayed.clear();
+            Unplayed.trimToSize();
+            Metrics.endLoad(LoadBegin);
+            PlaybackEvents.endLoad(LoadEvent, ShapeList.size());
+            LoadEvent = null;
+        }
+    }
+
+    /**
+     * Watches the input file and applies any change made to it while the
+     * animation is playing, on the next frame.
+     *
+     * @param Filepath Location of the input file the animation was loaded
+     * from.
+     * @return The {@link HotReloader} watching the file, which stops watching
+     * once closed.
+     * @throws IOException If the file cannot be watched.
+     */
+    protected HotReloader watchFile(String Filepath) throws IOException {
+        HotReloader reloader = new HotReloader(this, Paths.get(Filepath));
+        reloader.start();
+        return reloader;
+    }
+
+    /**
+     * Copies the shapes of the animation in the state of frame 0, for a
+     * {@link HotReloader} to build a new scene from, along with the timeline,
+     * checkpoints and layers a patch of the scene starts from. If a reloaded
+     * scene is waiting to be swapped in, its shapes are copied instead.
+     * <p>
+     * This can be called from any thread. If the animation is still being
+     * {@link AnimationSession#loadAnimationProgressively loaded progressively},
+     * it waits until every shape has been added.
+     *
+     * @return The scene, with copies of the shapes in the order of the
+     * {@link AnimationSession#ShapeList}. Its changed shapes are those of the
+     * scene waiting to be swapped in, null if that scene was built in full,
+     * or none if there is no such scene.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    protected HotReloader.Reload sceneAtFrameZero() throws InterruptedException {
+        List<Shape> shapes;
+        HotReloader.Reload scene;
+        while (true) {
+            synchronized (ShapeList) {
+                HotReloader.Reload pending = PendingReload.get();
+                if (pending != null) {
+                    shapes = pending.Shapes;
+                    scene = new HotReloader.Reload(new ArrayList<>(shapes.size()));
+                    scene.Events = pending.Events;
+                    scene.Seeker = pending.Seeker;
+                    scene.Layers = pending.Layers;
+                    scene.Changed = pending.Changed;
+                    break;
+                }
+                if (Loader == null) {
+                    shapes = new ArrayList<>(ShapeList);
+                    scene = new HotReloader.Reload(new ArrayList<>(shapes.size()));
+                    scene.Events = EffectTimeline;
+                    scene.Seeker = Seeker;
+                    scene.Layers = Layers;
+                    scene.Changed = new int[0];
+                    break;
+                }
+            }
+            Thread.sleep(HotReloader.SettleMillis);
+        }
+        // The shapes may be changed by effects while they are copied, but every field an effect changes is then
+        // restored from the first checkpoint.
+        for (Shape shape : shapes) {
+            scene.Shapes.add(shape.copy());
+        }
+        scene.Seeker.restore(0, scene.Shapes);
+        return scene;
+    }
+
+    /**
+     * Hands a scene built from a change to the input file to the thread
+     * playing the animation, replacing any scene not swapped in yet.
+     *
+     * @param scene The scene.
+     */
+    protected void offerReload(HotReloader.Reload scene) {
+        PendingReload.set(scene);
+    }
+
+    /**
+     * Swaps the scene built from the last change to the input file into the
+     * session, keeping the current frame.
+     * <p>
+     * A scene that patches the one being played only has its changed shapes
+     * swapped in, which are then moved to the current frame. A new frame rate
+     * takes effect the next time the animation is
+     * {@link AnimationSession#run run}.
+     */
+    private void applyReload() {
+        HotReloader.Reload scene = PendingReload.getAndSet(null);
+        if (scene.Changed != null) {
+            patchReload(scene);
+            return;
+        }
+        swapIn(scene);
+    }
+
+    /**
+     * Swaps a scene built in full into the session, keeping the current frame.
+     * <p>
+     * The scene was brought up to the frame being played when it was built, so
+     * only the effects of the frames played since then are applied.
+     *
+     * @param scene The scene, built in full.
+     */
+    private void swapIn(HotReloader.Reload scene) {
+        synchronized (ShapeList) {
+            ShapeList.clear();
+            ShapeList.addAll(scene.Shapes);
+            Frames = scene.Frames;
+            Fps = scene.Fps;
+            EffectTimeline = scene.Events;
+            Seeker = scene.Seeker;
+            Display = scene.Display;
+            Index = scene.Index;
+            Layers = scene.Layers;
+            if (CurrFrame < scene.Frame) {
+                // The animation was moved back while the scene was built.
+                Seeker.restore(CurrFrame, ShapeList);
+                for (int shape : Seeker.Members) {
+                    Index.update(shape);
+                }
+            } else {
+                for (int frame = scene.Frame; frame < CurrFrame; frame++) {
+                    EffectTimeline.apply(frame, ShapeList, null, Index);
+                }
+            }
+        }
+        findNextEvent(CurrFrame - 1);
+        Dirty.clear();
+        Canvas.repaint();
+    }
+
+    /**
+     * Swaps the changed shapes of a reloaded scene into the session, in place
+     * of the shapes they replace, and moves every shape with effects to the
+     * current frame from the new checkpoints.
+     *
+     * @param scene The scene, patching the one being played.
+     */
+    private void patchReload(HotReloader.Reload scene) {
+        synchronized (ShapeList) {
+            Frames = scene.Frames;
+            Fps = scene.Fps;
+            EffectTimeline = scene.Events;
+            Seeker = scene.Seeker;
+            boolean compiled = true;
+            for (int shape : scene.Changed) {
+                Shape CurrShape = scene.Shapes.get(shape);
+                ShapeList.set(shape, CurrShape);
+                compiled &= Display.replace(shape, CurrShape);
+                Index.replace(shape, CurrShape);
+                Layers.replaced(shape, CurrShape);
+            }
+            if (!compiled) {
+                Display = new DisplayList(ShapeList);
+            }
+            Seeker.restore(CurrFrame, ShapeList);
+            for (int shape : Seeker.Members) {
+                Index.update(shape);
+            }
+        }
+        findNextEvent(CurrFrame - 1);
+        Dirty.clear();
+        Canvas.repaint();
+    }
+
+    /**
+     * Reads the shapes of an input file, or of a compiled file, into the
+     * {@link AnimationSession#ShapeList}.
+     *
+     * @param Filepath Location of the input file.
+     */
+    private void readAnimation(String Filepath) {
+        ByteBuffer file = FileLoader.readFile(Filepath);
+        // Checks if the file has been compiled.
+        if (BinaryScene.isBinary(file)) {
+            try {
+                BinaryScene scene = BinaryScene.read(file);
+                Frames = scene.Frames;
+                Fps = scene.Fps;
+                ShapeList.addAll(scene.Shapes);
+            } catch (IOException e) {
+                throw new UncheckedIOException("The compiled animation could not be loaded: " + Filepath, e);
+            }
+            return;
+        }
+
+        // Defines a lexer that reads from the input file.
+        SceneLexer lexer = new SceneLexer(file);
+        int ShapeNum = readHeader(lexer);
+        // Reads each shape and stores it in the ShapeList. Large files are read in blocks on several threads.
+        ShapeList.addAll(new ParallelParser(ParsePool).readShapes(file, lexer.position(), ShapeNum));
+    }
+
+    /**
+     * Reads the maximum number of frames, the frame rate and the number of
+     * shapes from the start of an input file.
+     *
+     * @param lexer The {@link SceneLexer} reading from the start of the input
+     * file.
+     * @return The number of shapes given in the input file.
+     */
+    private int readHeader(SceneLexer lexer) {
+        // Reads the max number of frames from the input file.
+        lexer.next();
+        Frames = lexer.Value;
+
+        // Reads the fps from the input file.
+        lexer.next();
+        Fps = lexer.Value;
+
+        // Reads the number of shapes defined in the input file.
+        lexer.next();
+        return lexer.Value;
+    }
+
+    /**
+     * Prepares the shapes in the {@link AnimationSession#ShapeList} for
+     * playback once they have been loaded.
+     */
+    private void compileScene() {
+        // Indexes the effects by frame so events can be found without querying every shape.
+        EffectTimeline = Timeline.build(ShapeList);
+        // Takes snapshots throughout the animation so any frame can be reached quickly.
+        Seeker = new Checkpoints(ShapeList, EffectTimeline, CheckpointBudget);
+        // Compiles the shapes into draw commands so they do not need to be interpreted on each paint.
+        Display = new DisplayList(ShapeList);
+        // Indexes the shapes by position so only those inside the repainted area are drawn.
+        Index = new SpatialIndex(ShapeList);
+        // Renders the shapes that never change into images so they are not drawn on each paint.
+        Layers = new LayerCache(ShapeList, EffectTimeline);
+    }
+
+    /**
+     * Controls the frame rate of the animation and applies effects to shapes on
+     * their corresponding frames.
+     * <p>
+     * This loop manipulates {@link AnimationSession#ShapeList} data while
+     * {@link JComp} draws shapes to the screen. The frames are timed by a
+     * {@link FrameScheduler}, which sleeps between frames and requests one
+     * repaint per frame, covering only the area changed by effects. This method
+     * returns once the animation reaches the maximum frame.
+     */
+    protected void run() {
+        // Frame 0 has no visible shapes, so it can be shown while the shapes are waited for.
+        if (LoadingPolicy == ProgressiveLoader.Behind.WAIT) {
+            awaitLoaded();
+        }
+        // Determines the next frame an event will occur. The current frame is included, as the player may have been
+        // moved to a frame whose effects have not been applied yet.
+        findNextEvent(CurrFrame - 1);
+
+        FrameScheduler scheduler = new FrameScheduler(Fps, CatchUpPolicy);
+        scheduler.Metrics = Metrics;
+        scheduler.run(new FrameScheduler.Frame() {
+            // The routine that should run each frame.
+            public boolean step() {
+                // Checks if the animation has reached the maximum frame.
+                if (CurrFrame >= Frames) {
+                    return false;
+                }
+                stepFrame();
+                return true;
+            }
+
+            // Sends a request to swing to repaint the parts of the JComponent that have changed.
+            public void render() {
+                repaintChanges();
+            }
+        });
+    }
+
+    /**
+     * Requests that swing repaint the parts of the
+     * {@link AnimationSession#Canvas} that have changed since the last repaint.
+     * <p>
+     * Only the area changed by effects is repainted, along with the frame
+     * counter. On frames without any events, the frame counter is the only
+     * part that is repainted.
+     */
+    private void repaintChanges() {
+        // The frame counter changes on every frame.
+        Canvas.repaint(0, Canvas.getHeight() - OverlayHeight, OverlayWidth, OverlayHeight);
+        if (!Dirty.isEmpty()) {
+            Canvas.repaint(Dirty.getBounds());
+            Dirty.clear();
+        }
+    }
+
+    /**
+     * Applies the effects of the current frame, if any, and moves on to the
+     * next frame.
+     * <p>
+     * The {@link AnimationSession#ShapeList} is locked while the effects are
+     * applied so that {@link JComp#paint paint} never draws a half updated
+     * frame. The time taken is recorded in the
+     * {@link AnimationSession#Metrics} and as a {@link PlaybackEvents.Effects}
+     * event.
+     */
+    protected void stepFrame() {
+        // Adds the shapes read since the last frame, if the animation is being loaded progressively.
+        if (Loader != null) {
+            addLoaded();
+        }
+        // Swaps in the scene built from the last change to the input file, if it is being watched.
+        if (Loader == null && PendingReload.get() != null) {
+            applyReload();
+        }
+        // Checks if the an effect should occur on this frame.
+        if (CurrFrame == NextEvent) {
+            PlaybackEvents.Effects event = PlaybackEvents.beginEffects();
+            long begin = Metrics.begin();
+            synchronized (ShapeList) {
+                // Applies active effects to their respective shapes.
+                ViewEffects();
+            }
+            Metrics.endEffects(begin);
+            PlaybackEvents.endEffects(event, CurrFrame);
+            // Determines the next frame and event will occur.
+            findNextEvent(CurrFrame);
+        }
+        // Increments the frame counter.
+        CurrFrame++;
+    }
+
+    /**
+     * Applies effects to their corresponding shape. This method is only called
+     * on the frames which the program knows an effect will occur.
+     * <p>
+     * Only the effects stored in the {@link AnimationSession#EffectTimeline}
+     * bucket of the current frame are visited. The area each effect changes
+     * is added to {@link AnimationSession#Dirty} so it can be repainted, and
+     * each changed shape is moved within the {@link AnimationSession#Index}.
+     * The {@link AnimationSession#Layers layers} are drawn again if a shape
+     * they hold was changed.
+     */
+    private void ViewEffects() {
+        EffectTimeline.apply(CurrFrame, ShapeList, Dirty, Index);
+        Layers.applied(CurrFrame);
+    }
+
+    /**
+     * Determines the next frame at which an event will occur. The result is
+     * stored in {@link AnimationSession#NextEvent}.
+     * <p>
+     * This allows the program to save resources by only querying the effects of
+     * each shape when one of the effects is guaranteed to occur. The lookup is a
+     * binary search over the {@link AnimationSession#EffectTimeline}.
+     *
+     * @param after The frame after which to look for events.
+     */
+    private void findNextEvent(int after) {
+        // Finds the first event after the given frame, capped at the maximum number of frames.
+        NextEvent = Math.min(EffectTimeline.nextEvent(after), Frames);
+    }
+
+    /**
+     * Moves the animation to the given frame, as if it had been played up to
+     * that frame. The effects of the frame itself are applied when it is next
+     * stepped.
+     * <p>
+     * The shapes are restored from the nearest
+     * {@link AnimationSession#Seeker checkpoint} before the frame, and only the
+     * effects after that checkpoint are applied, so this takes about the same
+     * time wherever the frame is. Once the checkpoints no longer fit in the
+     * {@link AnimationSession#CheckpointBudget}, they are taken further apart
+     * in longer animations, so the time taken grows with the number of frames
+     * with events. The whole {@link AnimationSession#Canvas} is then
+     * repainted.
+     * <p>
+     * This must be called either before the animation is
+     * {@link AnimationSession#run run} or from the thread running it.
+     *
+     * @param frame The frame to move to, from 0 to
+     * {@link AnimationSession#Frames}.
+     */
+    protected void seek(int frame) {
+        // Error Checking
+        // Frames outside the animation are moved to its first or last frame.
+        frame = Math.max(0, Math.min(frame, Frames));
+        synchronized (ShapeList) {
+            Seeker.restore(frame, ShapeList);
+            // Only the shapes with effects have changed.
+            for (int shape : Seeker.Members) {
+                Index.update(shape);
+            }
+            Layers.invalidate();
+        }
+        CurrFrame = frame;
+        findNextEvent(frame - 1);
+        Dirty.clear();
+        Canvas.repaint();
+    }
+}
@@ -0,0 +1,287 @@
+package AnimationProcessor;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Renders many animations in one program, each into its own directory of
+ * frames, and reports how each one went.
+ * <p>
+ * Each animation is a job that loads the file into its own
+ * {@link AnimationSession} and then draws every frame with a
+ * {@link HeadlessRenderer}. Jobs run on virtual threads where the Java
+ * version has them, and otherwise on a pool of platform threads. Loading
+ * mostly waits on the disk, so many jobs load at once, but applying effects
+ * and drawing frames keeps a processor busy, so that part of each job runs
+ * on a separate pool with one thread per processor.
+ * <p>
+ * A loaded animation stays in memory until its frames are drawn. To keep the
+ * memory used bounded, only {@link BatchRenderer#InFlight} jobs may be
+ * loaded or drawing at once; the next job is not started until one of them
+ * finishes.
+ * <p>
+ * A job that fails, for example because its file is missing or cannot be
+ * parsed, is reported in the summary and does not stop the other jobs.
+ */
+public class BatchRenderer {
+
+    /**
+     * The result of rendering one animation.
+     */
+    static protected class Job {
+
+        /**
+         * The input file, and the directory its frames are written to.
+         */
+        protected final Path Input;
+        protected final Path Output;
+        /**
+         * Whether all the frames were written, and if not, why.
+         */
+        protected boolean Succeeded;
+        protected String Error = "";
+        /**
+         * The size of the animation, once it has been loaded.
+         */
+        protected int Shapes;
+        protected int Frames;
+        /**
+         * The time taken to load the animation, to draw its frames, and the
+         * whole job, including waiting for a render thread.
+         */
+        protected double LoadMillis;
+        protected double RenderMillis;
+        protected double TotalMillis;
+
+        Job(Path Input, Path Output) {
+            this.Input = Input;
+            this.Output = Output;
+        }
+    }
+
+    /**
+     * The number of threads drawing frames.
+     */
+    private final int RenderThreads;
+    /**
+     * The largest number of jobs loaded or drawing at once.
+     */
+    protected final int InFlight;
+    /**
+     * The format the frames are written in.
+     */
+    protected ImageSequenceSink.Format Format = ImageSequenceSink.Format.PNG;
+
+    /**
+     * Defines a batch renderer.
+     *
+     * @param RenderThreads The number of threads drawing frames, usually the
+     * number of processors.
+     */
+    BatchRenderer(int RenderThreads) {
+        this.RenderThreads = Math.max(1, RenderThreads);
+        // Lets the next jobs load while the current ones are drawn, so the render threads are never idle.
+        this.InFlight = this.RenderThreads * 2;
+    }
+
+    /**
+     * Finds the input files listed by a directory or a manifest.
+     * <p>
+     * Every regular file in a directory is an input file, in order of name. A
+     * manifest is a text file listing one input file per line. Blank lines and
+     * lines starting with '#' are skipped, and relative paths are relative to
+     * the manifest.
+     *
+     * @param source The directory or manifest.
+     * @return The input files.
+     * @throws IOException If the directory or manifest could not be read.
+     */
+    static protected List<Path> listInputs(Path source) throws IOException {
+        if (Files.isDirectory(source)) {
+            try (Stream<Path> files = Files.list(source)) {
+                return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+        }
+        List<Path> inputs = new ArrayList<>();
+        Path base = source.toAbsolutePath().getParent();
+        for (String line : Files.readAllLines(source, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                inputs.add(base.resolve(line));
+            }
+        }
+        return inputs;
+    }
+
+    /**
+     * Renders every input file into its own directory inside the output
+     * directory, named after the file without its extension. Files with the
+     * same name are given a number after it.
+     *
+     * @param inputs The input files.
+     * @param Directory The directory the frames are written to.
+     * @return The result of each job, in the order of the input files.
+     * @throws InterruptedException If the thread is interrupted while waiting
+     * for the jobs.
+     */
+    protected List<Job> render(List<Path> inputs, Path Directory) throws InterruptedException {
+        List<Job> jobs = new ArrayList<>();
+        Map<String, Integer> names = new HashMap<>();
+        for (Path input : inputs) {
+            String name = input.getFileName().toString().replaceFirst("\\.[^.]*$", "");
+            int uses = names.merge(name, 1, Integer::sum);
+            jobs.add(new Job(input, Directory.resolve(uses == 1 ? name : name + "_" + uses)));
+        }
+
+        ExecutorService renderPool = Executors.newFixedThreadPool(RenderThreads);
+        ExecutorService jobPool = jobExecutor(InFlight);
+        Semaphore slots = new Semaphore(InFlight);
+        try {
+            for (Job job : jobs) {
+                // Waits for a job to finish before starting another, which bounds the animations held in memory.
+                slots.acquire();
+                jobPool.execute(() -> {
+                    try {
+                        run(job, renderPool);
+                    } finally {
+                        slots.release();
+                    }
+                });
+            }
+            jobPool.shutdown();
+            jobPool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            jobPool.shutdownNow();
+            renderPool.shutdownNow();
+        }
+        return jobs;
+    }
+
+    /**
+     * Loads one animation, then draws its frames on the render pool.
+     *
+     * @param job The job to run, which receives the results.
+     * @param renderPool The threads that draw frames.
+     */
+    private void run(Job job, ExecutorService renderPool) {
+        long begin = System.nanoTime();
+        try {
+            // Error Checking
+            // The loader asks for another file if one is missing, which nobody would answer in a batch.
+            if (!Files.isRegularFile(job.Input)) {
+                throw new NoSuchFileException(job.Input.toString());
+            }
+            AnimationSession session = new AnimationSession();
+            session.loadAnimationFromFile(job.Input.toString());
+            job.Shapes = session.ShapeList.size();
+            job.Frames = session.Frames;
+            job.LoadMillis = (System.nanoTime() - begin) / 1e6;
+
+            renderPool.submit(() -> {
+                long start = System.nanoTime();
+                try (FrameSink sink = new ImageSequenceSink(job.Output, Format)) {
+                    new HeadlessRenderer(session).render(sink);
+                }
+                job.RenderMillis = (System.nanoTime() - start) / 1e6;
+                return null;
+            }).get();
+            job.Succeeded = true;
+        } catch (ExecutionException e) {
+            job.Error = describe(e.getCause());
+        } catch (InterruptedException e) {
+            job.Error = "Interrupted";
+            Thread.currentThread().interrupt();
+        } catch (Exception | OutOfMemoryError e) {
+            job.Error = describe(e);
+        }
+        job.TotalMillis = (System.nanoTime() - begin) / 1e6;
+    }
+
+    /**
+     * Describes why a job failed on a single line.
+     *
+     * @param cause The exception or error thrown by the job.
+     * @return The description.
+     */
+    static private String describe(Throwable cause) {
+        String message = cause.getMessage();
+        return cause.getClass().getSimpleName() + (message == null ? "" : ": " + message.replace('\n', ' '));
+    }
+
+    /**
+     * Creates the threads jobs run on: a new virtual thread for each job if
+     * the Java version supports them, or else a fixed pool of platform
+     * threads.
+     * <p>
+     * Virtual threads were added after the Java version this program is built
+     * for, so they are found by reflection.
+     *
+     * @param Threads The number of platform threads used if there are no
+     * virtual threads.
+     * @return The executor.
+     */
+    static protected ExecutorService jobExecutor(int Threads) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newFixedThreadPool(Threads);
+        }
+    }
+
+    /**
+     * Prints the result of each job, followed by the totals and the number
+     * of animations that would be rendered per hour at the same rate.
+     *
+     * @param out Where the summary is printed.
+     * @param jobs The results.
+     * @param seconds The time taken by the whole batch.
+     */
+    static protected void printSummary(PrintStream out, List<Job> jobs, double seconds) {
+        int succeeded = 0;
+        out.printf("%-6s %8s %8s %10s %10s  %s%n", "status", "shapes", "frames", "load ms", "render ms", "input");
+        for (Job job : jobs) {
+            out.printf("%-6s %8d %8d %10.1f %10.1f  %s%s%n", job.Succeeded ? "ok" : "FAILED", job.Shapes, job.Frames,
+                    job.LoadMillis, job.RenderMillis, job.Input, job.Succeeded ? "" : " (" + job.Error + ")");
+            if (job.Succeeded) {
+                succeeded++;
+            }
+        }
+        out.printf("%d of %d animations rendered in %.1f seconds, %.0f animations per hour.%n", succeeded, jobs.size(),
+                seconds, succeeded / Math.max(1e-9, seconds) * 3600);
+    }
+
+    /**
+     * Writes the result of each job as CSV, with a header row.
+     *
+     * @param file The file to write.
+     * @param jobs The results.
+     * @throws IOException If the file could not be written.
+     */
+    static protected void writeSummary(Path file, List<Job> jobs) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, "UTF-8")) {
+            out.println("input,output,succeeded,error,shapes,frames,load_ms,render_ms,total_ms");
+            for (Job job : jobs) {
+                out.printf("\"%s\",\"%s\",%b,\"%s\",%d,%d,%.3f,%.3f,%.3f%n", job.Input, job.Output, job.Succeeded,
+                        job.Error.replace("\"", "\"\""), job.Shapes, job.Frames, job.LoadMillis, job.RenderMillis,
+                        job.TotalMillis);
+            }
+        }
+    }
+}
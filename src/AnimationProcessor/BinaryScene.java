@@ -0,0 +1,265 @@
+package AnimationProcessor;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes animations in a compiled binary format.
+ * <p>
+ * Compiled files hold the same information as an input file after it has
+ * been parsed, so they can be loaded without any text parsing. The layout is:
+ * <ul>
+ * <li>a header: the magic bytes "ANIM", the format version, the CRC32 of the
+ * body and the length of the body;</li>
+ * <li>the number of frames, the frame rate and the number of shapes;</li>
+ * <li>a table of the shape and effect type names, each stored as its length
+ * followed by its UTF-8 bytes;</li>
+ * <li>each shape: its type, geometry, border and colors (as packed ARGB),
+ * followed by its effects sorted by start frame. Each effect is stored as
+ * its type, start frame, position, color, end frame and easing curve.</li>
+ * </ul>
+ * All numbers are stored as big-endian 32-bit integers, apart from the
+ * checksum which is stored as a 64-bit integer.
+ */
+public class BinaryScene {
+
+    /**
+     * The bytes every compiled file starts with ("ANIM").
+     */
+    static protected final int Magic = 0x414E494D;
+    /**
+     * The version of the format. Files written by other versions are
+     * rejected, and should be compiled again.
+     */
+    static protected final int Version = 2;
+    /**
+     * The size of the header in bytes.
+     */
+    static private final int HeaderSize = 20;
+
+    /**
+     * The maximum number of frames of the animation.
+     */
+    protected int Frames;
+    /**
+     * The frame rate of the animation.
+     */
+    protected int Fps;
+    /**
+     * The shapes read from the file.
+     */
+    protected ArrayList<Shape> Shapes;
+
+    /**
+     * Checks if a file holds a compiled animation rather than an input file.
+     *
+     * @param file The contents of the file.
+     * @return If the file starts with the magic bytes.
+     */
+    static protected boolean isBinary(ByteBuffer file) {
+        return file.remaining() >= HeaderSize && file.getInt(file.position()) == Magic;
+    }
+
+    /**
+     * Writes an animation to a compiled file.
+     * <p>
+     * The effects of each shape are sorted by start frame. Effects that start
+     * on the same frame keep their order, so they are applied in the same
+     * order as before.
+     *
+     * @param file The file to write.
+     * @param Shapes The shapes of the animation, in the state of frame 0.
+     * @param Frames The maximum number of frames of the animation.
+     * @param Fps The frame rate of the animation.
+     * @throws IOException If the file could not be written.
+     */
+    static protected void write(Path file, List<Shape> Shapes, int Frames, int Fps) throws IOException {
+        // Gives each distinct type name an index in the type table.
+        HashMap<String, Integer> typeIndex = new HashMap<>();
+        ArrayList<String> types = new ArrayList<>();
+        for (Shape CurrShape : Shapes) {
+            typeIndex.computeIfAbsent(CurrShape.type, name -> addType(types, name));
+            for (Effect CurrEffect : CurrShape.EffectList) {
+                typeIndex.computeIfAbsent(CurrEffect.type, name -> addType(types, name));
+            }
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(buffer);
+        body.writeInt(Frames);
+        body.writeInt(Fps);
+        body.writeInt(Shapes.size());
+        body.writeInt(types.size());
+        for (String name : types) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            body.writeInt(bytes.length);
+            body.write(bytes);
+        }
+        for (Shape CurrShape : Shapes) {
+            body.writeInt(typeIndex.get(CurrShape.type));
+            body.writeInt(CurrShape.x);
+            body.writeInt(CurrShape.y);
+            body.writeInt(CurrShape.border);
+            body.writeInt(CurrShape.visible ? 1 : 0);
+            body.writeInt(CurrShape.color.getRGB());
+            body.writeInt(CurrShape.borderColor.getRGB());
+            body.writeInt(CurrShape.r);
+            body.writeInt(CurrShape.length);
+            body.writeInt(CurrShape.width);
+            body.writeInt(CurrShape.endX);
+            body.writeInt(CurrShape.endY);
+
+            // Sorts the effects by start frame. The sort is stable, so effects on the same frame keep their order.
+            ArrayList<Effect> effects = new ArrayList<>(CurrShape.EffectList);
+            effects.sort((a, b) -> Integer.compare(a.start, b.start));
+            body.writeInt(effects.size());
+            for (Effect CurrEffect : effects) {
+                body.writeInt(typeIndex.get(CurrEffect.type));
+                body.writeInt(CurrEffect.start);
+                body.writeInt(CurrEffect.x);
+                body.writeInt(CurrEffect.y);
+                body.writeInt(CurrEffect.newColor.getRGB());
+                body.writeInt(CurrEffect.end);
+                body.writeInt(CurrEffect.ease);
+            }
+        }
+        body.flush();
+        byte[] payload = buffer.toByteArray();
+
+        // Writes the header followed by the body.
+        CRC32 checksum = new CRC32();
+        checksum.update(payload);
+        ByteBuffer header = ByteBuffer.allocate(HeaderSize);
+        header.putInt(Magic).putInt(Version).putLong(checksum.getValue()).putInt(payload.length).flip();
+        ByteBuffer[] contents = {header, ByteBuffer.wrap(payload)};
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // Loops until every byte has been written, as a single write may be partial.
+            while (contents[1].hasRemaining()) {
+                channel.write(contents);
+            }
+        }
+    }
+
+    /**
+     * Adds a name to the type table.
+     *
+     * @param types The type table.
+     * @param name The name to add.
+     * @return The index of the name in the table.
+     */
+    static private int addType(ArrayList<String> types, String name) {
+        types.add(name);
+        return types.size() - 1;
+    }
+
+    /**
+     * Reads a compiled animation.
+     *
+     * @param file The contents of the compiled file, such as a memory-mapped
+     * buffer from {@link FileLoader#readFile readFile}.
+     * @return The animation stored in the file.
+     * @throws IOException If the file is not a compiled animation, was written
+     * by another version of the format, or is damaged.
+     */
+    static protected BinaryScene read(ByteBuffer file) throws IOException {
+        ByteBuffer in = file.duplicate();
+        // Error Checking
+        // Rejects files that are not compiled animations or that were compiled by another version.
+        if (!isBinary(in)) {
+            throw new IOException("The file is not a compiled animation.");
+        }
+        in.getInt();
+        int version = in.getInt();
+        if (version != Version) {
+            throw new IOException("The compiled animation uses version " + version + " of the format, but version " + Version + " is required. Compile it again.");
+        }
+        long expected = in.getLong();
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("The compiled animation is truncated.");
+        }
+
+        // Error Checking
+        // Verifies the checksum before reading anything from the body.
+        ByteBuffer body = in.slice();
+        body.limit(length);
+        CRC32 checksum = new CRC32();
+        checksum.update(body.duplicate());
+        if (checksum.getValue() != expected) {
+            throw new IOException("The compiled animation is damaged: its checksum does not match.");
+        }
+
+        try {
+            BinaryScene scene = new BinaryScene();
+            scene.Frames = body.getInt();
+            scene.Fps = body.getInt();
+            int shapes = body.getInt();
+            String[] types = new String[body.getInt()];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = readName(body);
+            }
+
+            // Colors are shared between shapes that use the same one, rather than creating one per shape.
+            ColorCache colors = new ColorCache();
+            scene.Shapes = new ArrayList<>(shapes);
+            for (int i = 0; i < shapes; i++) {
+                Shape CurrShape = new Shape();
+                CurrShape.type = types[body.getInt()];
+                CurrShape.x = body.getInt();
+                CurrShape.y = body.getInt();
+                CurrShape.border = body.getInt();
+                CurrShape.visible = body.getInt() != 0;
+                CurrShape.color = colors.get(body.getInt());
+                CurrShape.borderColor = colors.get(body.getInt());
+                CurrShape.r = body.getInt();
+                CurrShape.length = body.getInt();
+                CurrShape.width = body.getInt();
+                CurrShape.endX = body.getInt();
+                CurrShape.endY = body.getInt();
+
+                int effects = body.getInt();
+                CurrShape.EffectList.ensureCapacity(effects);
+                for (int j = 0; j < effects; j++) {
+                    Effect CurrEffect = new Effect();
+                    CurrEffect.type = types[body.getInt()];
+                    CurrEffect.start = body.getInt();
+                    CurrEffect.x = body.getInt();
+                    CurrEffect.y = body.getInt();
+                    CurrEffect.newColor = colors.get(body.getInt());
+                    CurrEffect.end = body.getInt();
+                    CurrEffect.ease = body.getInt();
+                    CurrShape.EffectList.add(CurrEffect);
+                }
+                scene.Shapes.add(CurrShape);
+            }
+            return scene;
+        } catch (RuntimeException e) {
+            // Error Checking
+            // A body that matches its checksum but cannot be read was not written by this class.
+            throw new IOException("The compiled animation is malformed.", e);
+        }
+    }
+
+    /**
+     * Reads a type name, stored as its length followed by its UTF-8 bytes.
+     *
+     * @param in The buffer to read from.
+     * @return The type name.
+     */
+    static private String readName(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
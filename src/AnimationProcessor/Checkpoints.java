@@ -0,0 +1,165 @@
+package AnimationProcessor;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Snapshots of an animation taken at regular points in its
+ * {@link Timeline}, used to move to any frame without applying every effect
+ * before it.
+ * <p>
+ * A {@link SceneSnapshot} is taken before every {@code Interval}-th event
+ * frame. Moving to a frame restores the last snapshot before it, then
+ * applies the effects of at most {@code Interval} event frames, so the time
+ * taken does not depend on how far into the animation the frame is.
+ * <p>
+ * Only the shapes that have effects can change, so the snapshots only hold
+ * those shapes. The interval is chosen so the snapshots fit in a memory
+ * budget. Move and fade effects do not add event frames, as their value on
+ * any frame can be found without the frames before it.
+ * <p>
+ * The interval is not capped: once the budget only allows fewer snapshots
+ * than there are event frames, the interval grows with the number of event
+ * frames, and so does the time taken to move to a frame. The time taken is
+ * about that of applying the effects of {@code Interval} event frames, which
+ * for a budget of {@code B} bytes and {@code S} shapes with effects is
+ * {@code EventFrames * S * BytesPerShape / B} event frames. A larger budget
+ * keeps seeking fast for longer animations.
+ */
+public class Checkpoints {
+
+    /**
+     * The approximate number of bytes used by each shape in a snapshot: four
+     * coordinates, a visibility flag and a reference to a color.
+     */
+    static protected final int BytesPerShape = 4 * 4 + 1 + 4;
+
+    /**
+     * The effects of the animation.
+     */
+    private final Timeline Events;
+    /**
+     * The index of each shape that has at least one effect, in ascending
+     * order. These are the only shapes that change.
+     */
+    protected final int[] Members;
+    /**
+     * The number of event frames between snapshots.
+     */
+    protected final int Interval;
+    /**
+     * The snapshots. Snapshot {@code i} holds the state of the shapes before
+     * the effects of event frame {@code i * Interval} are applied.
+     */
+    private final SceneSnapshot[] Snapshots;
+    /**
+     * The frame each snapshot was taken before. The first snapshot is taken
+     * before frame 0, as move and fade effects may start on it.
+     */
+    private final int[] SnapshotFrames;
+
+    /**
+     * Takes the snapshots by applying every effect of the animation to the
+     * shapes, then returns the shapes to the state they were given in.
+     *
+     * @param Shapes The shapes of the animation, in the state of frame 0.
+     * @param Events The effects of the shapes.
+     * @param Budget The largest number of bytes the snapshots should use. At
+     * least one snapshot is always taken.
+     */
+    Checkpoints(List<Shape> Shapes, Timeline Events, long Budget) {
+        this(Shapes, Events, Budget, null, -1);
+    }
+
+    /**
+     * Takes the snapshots of shapes some of which have been replaced, such as
+     * by a {@link HotReloader}, reusing the snapshots of the checkpoints
+     * before that were taken before anything changed. The effects are only
+     * applied from the last snapshot reused. All snapshots are taken again if
+     * the shapes with effects or the interval between snapshots changed.
+     *
+     * @param Shapes The shapes of the animation, in the state of frame 0.
+     * @param Events The effects of the shapes.
+     * @param Budget The largest number of bytes the snapshots should use.
+     * @param previous The checkpoints of the shapes before they were
+     * replaced, or null to take every snapshot.
+     * @param from The earliest frame whose effects changed, or -1 if the
+     * state of the shapes on frame 0 changed. Snapshots taken before this
+     * frame's effects are reused.
+     */
+    Checkpoints(List<Shape> Shapes, Timeline Events, long Budget, Checkpoints previous, int from) {
+        this.Events = Events;
+
+        // Finds the shapes that have effects.
+        boolean[] changes = new boolean[Shapes.size()];
+        int count = 0;
+        for (int shape : Events.ShapeIndex) {
+            if (!changes[shape]) {
+                changes[shape] = true;
+                count++;
+            }
+        }
+        for (int shape : Events.Tweened.ShapeIndex) {
+            if (!changes[shape]) {
+                changes[shape] = true;
+                count++;
+            }
+        }
+        Members = new int[count];
+        for (int shape = 0, i = 0; shape < changes.length; shape++) {
+            if (changes[shape]) {
+                Members[i++] = shape;
+            }
+        }
+
+        // Spreads as many snapshots as the budget allows evenly over the event frames.
+        int buckets = Events.EventFrames.length;
+        long allowed = Math.max(1, Budget / Math.max(1L, (long) count * BytesPerShape));
+        Interval = (int) Math.max(1, (buckets + allowed - 1) / allowed);
+        Snapshots = new SceneSnapshot[Math.max(1, (buckets + Interval - 1) / Interval)];
+        SnapshotFrames = new int[Snapshots.length];
+        for (int i = 1; i < Snapshots.length; i++) {
+            SnapshotFrames[i] = Events.EventFrames[i * Interval];
+        }
+
+        // Reuses the snapshots taken before the first change, if they hold the same shapes at the same frames.
+        int reused = 0;
+        if (previous != null && Interval == previous.Interval && Arrays.equals(Members, previous.Members)) {
+            while (reused < Snapshots.length && reused < previous.Snapshots.length
+                    && SnapshotFrames[reused] == previous.SnapshotFrames[reused] && SnapshotFrames[reused] <= from) {
+                Snapshots[reused] = previous.Snapshots[reused];
+                reused++;
+            }
+        }
+        if (reused > 0 && reused < Snapshots.length) {
+            Snapshots[reused - 1].restore(Shapes);
+            Events.applyRange(SnapshotFrames[reused - 1], SnapshotFrames[reused], Shapes);
+        }
+
+        // Applies the effects one interval at a time, taking a snapshot before each.
+        for (int i = reused; i < Snapshots.length; i++) {
+            Snapshots[i] = new SceneSnapshot(Shapes, Members);
+            if (i + 1 < Snapshots.length) {
+                Events.applyRange(SnapshotFrames[i], SnapshotFrames[i + 1], Shapes);
+            }
+        }
+        Snapshots[0].restore(Shapes);
+    }
+
+    /**
+     * Returns the shapes to their state just before the given frame, with the
+     * effects of every earlier frame applied.
+     *
+     * @param frame The frame to move to.
+     * @param Shapes The shapes the checkpoints were taken from, or copies of
+     * them.
+     */
+    protected void restore(int frame, List<Shape> Shapes) {
+        // Finds the last snapshot taken before the frame.
+        int snapshot = Arrays.binarySearch(SnapshotFrames, frame);
+        snapshot = snapshot < 0 ? Math.max(0, -snapshot - 2) : snapshot;
+        Snapshots[snapshot].restore(Shapes);
+        // Applies the effects between the snapshot and the frame.
+        Events.applyRange(SnapshotFrames[snapshot], frame, Shapes);
+    }
+}
@@ -0,0 +1,39 @@
+package AnimationProcessor;
+
+import java.awt.Color;
+
+/**
+ * Finds the {@link java.awt.Color Color} object for a packed ARGB value,
+ * reusing the object created for the same value when it is still cached.
+ * <p>
+ * The cache is a fixed size table indexed by a hash of the value, so looking
+ * up a color does not create any objects once the color has been seen. A
+ * cache is not safe to share between threads.
+ */
+class ColorCache {
+
+    /**
+     * The packed value stored in each slot.
+     */
+    private final int[] Keys = new int[1024];
+    /**
+     * The color stored in each slot, or null if the slot is empty.
+     */
+    private final Color[] Values = new Color[1024];
+
+    /**
+     * Finds the color for a packed ARGB value.
+     *
+     * @param argb The packed color.
+     * @return A color object with that value.
+     */
+    protected Color get(int argb) {
+        // Multiplying by a large odd constant spreads similar colors across the table.
+        int slot = (argb * 0x9E3779B9) >>> 22;
+        if (Values[slot] == null || Keys[slot] != argb) {
+            Keys[slot] = argb;
+            Values[slot] = new Color(argb, true);
+        }
+        return Values[slot];
+    }
+}
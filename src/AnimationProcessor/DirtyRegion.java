@@ -0,0 +1,122 @@
+package AnimationProcessor;
+
+import java.awt.Rectangle;
+
+/**
+ * Keeps track of the part of the screen that has changed since it was last
+ * drawn.
+ * <p>
+ * The area covered by a shape is added before and after an effect changes
+ * it, so both the old and new position of a moving shape are drawn again. The
+ * region is the smallest rectangle holding every area that was added.
+ */
+public class DirtyRegion {
+
+    /**
+     * The bounds of the region. The region is empty while minX is greater
+     * than maxX.
+     */
+    private int minX = Integer.MAX_VALUE;
+    private int minY = Integer.MAX_VALUE;
+    private int maxX = Integer.MIN_VALUE;
+    private int maxY = Integer.MIN_VALUE;
+
+    /**
+     * Holds the bounds of a shape while it is being added.
+     */
+    private final int[] Scratch = new int[4];
+
+    /**
+     * Adds the area covered by a shape, including its border.
+     *
+     * @param CurrShape The shape to add.
+     */
+    protected void add(Shape CurrShape) {
+        if (boundsOf(CurrShape, Scratch)) {
+            add(Scratch[0], Scratch[1], Scratch[2], Scratch[3]);
+        }
+    }
+
+    /**
+     * Finds the area covered by a shape, including its border. This is also
+     * used by the {@link SpatialIndex}, so both agree on which shapes are in
+     * an area.
+     *
+     * @param CurrShape The shape to measure.
+     * @param bounds Receives the left, top, right and bottom edge of the area.
+     * @return If the shape is of a type that is drawn. Otherwise the bounds are
+     * left unchanged.
+     */
+    static protected boolean boundsOf(Shape CurrShape, int[] bounds) {
+        // Half of the border is drawn outside the shape. An extra pixel on each side covers antialiasing
+        // and rounding, and lines add the border again to cover the square caps at their ends.
+        int pad = CurrShape.border / 2 + 2;
+        switch (PackedScene.kindOf(CurrShape.type)) {
+            case PackedScene.CIRCLE:
+                bounds[0] = CurrShape.x - CurrShape.r - pad;
+                bounds[1] = CurrShape.y - CurrShape.r - pad;
+                bounds[2] = CurrShape.x + CurrShape.r + pad;
+                bounds[3] = CurrShape.y + CurrShape.r + pad;
+                return true;
+            case PackedScene.RECT:
+                bounds[0] = CurrShape.x - pad;
+                bounds[1] = CurrShape.y - pad;
+                bounds[2] = CurrShape.x + CurrShape.length + pad;
+                bounds[3] = CurrShape.y + CurrShape.width + pad;
+                return true;
+            case PackedScene.LINE:
+                pad += CurrShape.border;
+                bounds[0] = Math.min(CurrShape.x, CurrShape.endX) - pad;
+                bounds[1] = Math.min(CurrShape.y, CurrShape.endY) - pad;
+                bounds[2] = Math.max(CurrShape.x, CurrShape.endX) + pad;
+                bounds[3] = Math.max(CurrShape.y, CurrShape.endY) + pad;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Adds a rectangular area.
+     *
+     * @param x1 The left edge of the area.
+     * @param y1 The top edge of the area.
+     * @param x2 The right edge of the area.
+     * @param y2 The bottom edge of the area.
+     */
+    protected void add(int x1, int y1, int x2, int y2) {
+        minX = Math.min(minX, x1);
+        minY = Math.min(minY, y1);
+        maxX = Math.max(maxX, x2);
+        maxY = Math.max(maxY, y2);
+    }
+
+    /**
+     * Checks if nothing has been added since the region was last cleared.
+     *
+     * @return If the region is empty.
+     */
+    protected boolean isEmpty() {
+        return minX > maxX;
+    }
+
+    /**
+     * Finds the rectangle covering the region.
+     *
+     * @return The bounds of the region, or an empty rectangle if the region
+     * is empty.
+     */
+    protected Rectangle getBounds() {
+        return isEmpty() ? new Rectangle() : new Rectangle(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * Empties the region once it has been drawn.
+     */
+    protected void clear() {
+        minX = Integer.MAX_VALUE;
+        minY = Integer.MAX_VALUE;
+        maxX = Integer.MIN_VALUE;
+        maxY = Integer.MIN_VALUE;
+    }
+}
@@ -0,0 +1,163 @@
+package AnimationProcessor;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.util.List;
+
+/**
+ * The shapes of an animation compiled into a list of draw commands.
+ * <p>
+ * Each command holds the kind of the shape as an opcode and the stroke used
+ * for its border, so neither the shapes type nor its stroke needs to be
+ * worked out again each time the shape is drawn. Commands still refer to the
+ * {@link Shape} itself, so changes made by effects are drawn without
+ * compiling the list again. Drawing the list creates no objects.
+ * <p>
+ * The colors of each command are also kept packed into ints, as in
+ * {@link PackedScene}, for drawing with a {@link SoftwareRasterizer}. Effects
+ * replace the color of a shape rather than changing it, so a color is only
+ * packed again when the shape has been given a different one.
+ */
+public class DisplayList {
+
+    /**
+     * The opcode of each command, one of the kinds defined in
+     * {@link PackedScene}.
+     */
+    private final byte[] Ops;
+    /**
+     * The shape drawn by each command.
+     */
+    private final Shape[] Targets;
+    /**
+     * The stroke used to draw the border of each command's shape.
+     */
+    private final BasicStroke[] BorderStrokes;
+    /**
+     * The packed colors of each command's shape, and the colors they were
+     * packed from.
+     */
+    private final int[] argb;
+    private final int[] borderArgb;
+    private final Color[] Packed;
+    private final Color[] BorderPacked;
+    /**
+     * The command drawing each shape, indexed by the position of the shape in
+     * the compiled list, or -1 for shapes that are never drawn.
+     */
+    private final int[] CommandOf;
+    /**
+     * The number of commands.
+     */
+    private final int Size;
+
+    /**
+     * Compiles the given shapes into draw commands. Shapes of unknown types
+     * are left out, as they are never drawn.
+     *
+     * @param Shapes The shapes to compile, in the order they are drawn.
+     */
+    DisplayList(List<Shape> Shapes) {
+        Ops = new byte[Shapes.size()];
+        Targets = new Shape[Shapes.size()];
+        BorderStrokes = new BasicStroke[Shapes.size()];
+        argb = new int[Shapes.size()];
+        borderArgb = new int[Shapes.size()];
+        Packed = new Color[Shapes.size()];
+        BorderPacked = new Color[Shapes.size()];
+        CommandOf = new int[Shapes.size()];
+        int size = 0;
+        for (int shape = 0; shape < Shapes.size(); shape++) {
+            Shape CurrShape = Shapes.get(shape);
+            byte op = PackedScene.kindOf(CurrShape.type);
+            CommandOf[shape] = -1;
+            if (op != PackedScene.OTHER) {
+                CommandOf[shape] = size;
+                Ops[size] = op;
+                Targets[size] = CurrShape;
+                BorderStrokes[size] = JComp.strokeOf(CurrShape.border);
+                pack(size);
+                size++;
+            }
+        }
+        Size = size;
+    }
+
+    /**
+     * Draws every visible shape in order.
+     *
+     * @param g The graphics object to draw on.
+     */
+    protected void draw(Graphics2D g) {
+        for (int i = 0; i < Size; i++) {
+            JComp.drawShape(g, Targets[i], Ops[i], BorderStrokes[i]);
+        }
+    }
+
+    /**
+     * Draws every visible shape in order into the pixels of a software
+     * rasterizer, rather than through Java2D.
+     *
+     * @param rasterizer The rasterizer to draw with.
+     */
+    protected void draw(SoftwareRasterizer rasterizer) {
+        for (int i = 0; i < Size; i++) {
+            Shape CurrShape = Targets[i];
+            if (CurrShape.color != Packed[i] || CurrShape.borderColor != BorderPacked[i]) {
+                pack(i);
+            }
+            rasterizer.drawShape(CurrShape, Ops[i], argb[i], borderArgb[i]);
+        }
+    }
+
+    /**
+     * Compiles a new shape in the place of a shape, such as one replaced by a
+     * {@link HotReloader}. This can only be done if both shapes are drawn, or
+     * neither is, as otherwise the commands would need to be moved.
+     *
+     * @param shape The index of the shape in the list that was compiled.
+     * @param CurrShape The new shape.
+     * @return False if the list must be compiled again instead.
+     */
+    protected boolean replace(int shape, Shape CurrShape) {
+        int command = CommandOf[shape];
+        byte op = PackedScene.kindOf(CurrShape.type);
+        if ((command >= 0) != (op != PackedScene.OTHER)) {
+            return false;
+        }
+        if (command >= 0) {
+            Ops[command] = op;
+            Targets[command] = CurrShape;
+            BorderStrokes[command] = JComp.strokeOf(CurrShape.border);
+            pack(command);
+        }
+        return true;
+    }
+
+    /**
+     * Packs the current colors of a command's shape.
+     *
+     * @param command The command.
+     */
+    private void pack(int command) {
+        Shape CurrShape = Targets[command];
+        Packed[command] = CurrShape.color;
+        BorderPacked[command] = CurrShape.borderColor;
+        argb[command] = CurrShape.color.getRGB();
+        borderArgb[command] = CurrShape.borderColor.getRGB();
+    }
+
+    /**
+     * Draws a single shape, if it is visible.
+     *
+     * @param g The graphics object to draw on.
+     * @param shape The index of the shape in the list that was compiled.
+     */
+    protected void draw(Graphics2D g, int shape) {
+        int command = CommandOf[shape];
+        if (command >= 0) {
+            JComp.drawShape(g, Targets[command], Ops[command], BorderStrokes[command]);
+        }
+    }
+}
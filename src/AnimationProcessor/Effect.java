@@ -12,21 +12,32 @@ public class Effect {
      */
     protected int start = 0;
     /**
-     * The effect type ("Show", "Hide", "Jump", "ChangeColor").
+     * The effect type ("Show", "Hide", "Jump", "ChangeColor", "Move",
+     * "Fade").
      */
     protected String type = "";
+    /**
+     * The frame on which a move or fade effect finishes.
+     */
+    protected int end = 0;
+    /**
+     * The easing curve of a move or fade effect, as defined in
+     * {@link Tweens}: 0 for linear, 1 to ease in, 2 to ease out, or 3 to ease
+     * in and out.
+     */
+    protected int ease = Tweens.LINEAR;
 
     /**
-     * The x-coordinate to jump to.
+     * The x-coordinate to jump or move to.
      */
     protected int x = 0;
     /**
-     * The y-coordinate to jump to.
+     * The y-coordinate to jump or move to.
      */
     protected int y = 0;
 
     /**
-     * The color to change to.
+     * The color to change or fade to.
      */
     protected Color newColor = JComp.Default;
 }
@@ -1,9 +1,16 @@
 package AnimationProcessor;
 
 import java.awt.Color;
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Scanner;
+import java.util.function.Consumer;
 
 /**
  * A collection of methods pertaining to the parsing of information from the
@@ -17,17 +24,20 @@ public class FileLoader {
      * The loop will repeatedly prompt the user for a valid file path. This
      * continues until either a valid file path is entered, or the user chooses
      * to terminate the program via an input to the terminal.
+     * <p>
+     * The file is memory-mapped rather than read into memory, so large files
+     * are only loaded as the {@link SceneLexer} reaches them.
      *
      * @param Filepath Location of the input file.
-     * @return A Scanner object reading from the input file.
+     * @return A buffer holding the contents of the input file.
      */
-    static protected Scanner readFile(String Filepath) {
-        // Defines a scanner object that reads from the terminal so the user can enter a new filepath.
-        Scanner scan = new Scanner(System.in);
-        try {
-            // Attempts to create a scanner reading from the provided filepath.
-            return new Scanner(new File(Filepath));
-        } catch (FileNotFoundException e) {
+    static protected ByteBuffer readFile(String Filepath) {
+        try (FileChannel channel = FileChannel.open(Paths.get(Filepath), StandardOpenOption.READ)) {
+            // Attempts to map the contents of the file at the provided filepath.
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException | InvalidPathException e) {
+            // Defines a scanner object that reads from the terminal so the user can enter a new filepath.
+            Scanner scan = new Scanner(System.in);
             System.out.print("The File was not found.\nEnter the correct filepath or 'n' to exit the program: ");
             // Reads a new filepath from the user.
             Filepath = scan.nextLine();
@@ -38,217 +48,154 @@ public class FileLoader {
             }
             // Runs the method recursively until a valid filepath is found.
             return readFile(Filepath);
+        } catch (IOException e) {
+            throw new UncheckedIOException("The File could not be read: " + Filepath, e);
         }
     }
 
     /**
-     * Reads the next section of numerical data from the input file.
-     *
-     * @param scan The {@link java.util.Scanner} object reading from the input
-     * file.
-     * @return The integer read from the input file.
+     * Reads every shape following the header of an input file. Each shape is
+     * passed on once all of its information and effects have been read, in the
+     * order the shapes appear in the file.
+     *
+     * @param lexer The {@link SceneLexer} reading from the input file, whose
+     * last token was the number of shapes.
+     * @param ShapeNum The number of shapes given in the input file.
+     * @param Shapes Receives each shape.
      */
-    static protected int readNum(Scanner scan) {
-        scan.useDelimiter("\n");
+    static protected void readShapes(SceneLexer lexer, int ShapeNum, Consumer<Shape> Shapes) {
+        // Reads each token of the file and organizes the information into shape objects.
+        // CurrShape is the shape currently being defined, and CurrEffect the effect currently being defined.
+        // CurrEffect is null until the first effect of the shape is read, which means the shape itself is being defined.
         // Error Checking
-        // Removes any non-integers from read information.
-        return Integer.parseInt(scan.next().replaceAll("\\D", ""));
-    }
-
-    /**
-     * Advances the Scanner to the next section of data.
-     *
-     * @param scan The {@link java.util.Scanner} object reading from the input
-     * file.
-     */
-    static protected void skipToNum(Scanner scan) {
-        scan.skip("\\D*+");
-    }
-
-    /**
-     * Checks if the the Scanner has read all the information for the current
-     * shape.
-     * <p>
-     * Also checks if the end of the file has been reached.
-     *
-     * @param scan The {@link java.util.Scanner} object reading from the input
-     * file.
-     *
-     * @return If either of the conditions mentioned are true.
-     */
-    static protected boolean endOfShape(Scanner scan) {
-        scan.useDelimiter("\\S");
-        // Checks if the following line is the end of the file.
-        if (scan.hasNext("[.|\\s]\\z")) {
-            return true;
+        // The number of shapes given in the file is not trusted. Every shape up to the end of the file is read,
+        // unless the file indicated there were no shapes at all.
+        Shape CurrShape = null;
+        Effect CurrEffect = null;
+        for (int token = ShapeNum > 0 ? lexer.next() : SceneLexer.END; token != SceneLexer.END; token = lexer.next()) {
+            switch (token) {
+                case SceneLexer.SHAPE:
+                    // The previous shape is complete once the next one begins.
+                    if (CurrShape != null) {
+                        Shapes.accept(CurrShape);
+                    }
+                    CurrShape = new Shape();
+                    CurrShape.type = lexer.Text;
+                    CurrEffect = null;
+                    break;
+                case SceneLexer.EFFECT:
+                    // Adds a new effect to the EffectList of the current shape.
+                    CurrEffect = new Effect();
+                    CurrEffect.type = lexer.Text;
+                    CurrShape.EffectList.add(CurrEffect);
+                    break;
+                case SceneLexer.PROPERTY:
+                    // Stores the data in the current effect, or in the shape if no effect has been read yet.
+                    if (CurrEffect == null) {
+                        defineShape(CurrShape, lexer);
+                    } else {
+                        defineEffect(CurrEffect, lexer);
+                    }
+                    break;
+            }
+        }
+        if (CurrShape != null) {
+            Shapes.accept(CurrShape);
         }
-        // Checks if a blank space is located on the next line.
-        return scan.hasNext("\n\r*+\n");
-    }
-
-    /**
-     * Checks if the Scanner has reached the end of the file.
-     *
-     * @param scan The {@link java.util.Scanner} object reading from the input
-     * file.
-     *
-     * @return If the end of the file has been reached.
-     */
-    static protected boolean endOfFile(Scanner scan) {
-        // Checks if the following line is the end of the file.
-        return scan.hasNext("[.|\\s]\\z");
-    }
-
-    /**
-     * Reads the next shape/effect type ("Circle", "Rect", "Show", "Jump", etc).
-     *
-     * @param scan The {@link java.util.Scanner} object reading from the input
-     * file.
-     *
-     * @return The shape/effect type.
-     */
-    static protected String readNextType(Scanner scan) {
-        scan.skip("[^a-zA-Z]*+");
-        scan.useDelimiter("\n");
-        // Error Checking
-        // Removes any whitespace characters to avoid unintended behaviour when checking types.
-        return scan.next().replaceAll("\\s", "");
-    }
-
-    /**
-     * Checks if the information on the following line of the text file is in a
-     * format that corresponds to readable data ("label": "data").
-     *
-     * @param scan The {@link java.util.Scanner} object reading from the input
-     * file.
-     *
-     * @return If the following line of the text file follows the correct
-     * format.
-     */
-    static protected boolean nextInfoExists(Scanner scan) {
-        scan.useDelimiter("\n");
-        // Checks if the format of the next line is correct.
-        return scan.hasNext("\\D++[\\d[, ]*+]++\\s*+");
-    }
-
-    /**
-     * Reads the type of data the following information represents ("length",
-     * "width", "color", etc).
-     *
-     * @param scan The {@link java.util.Scanner} object reading from the input
-     * file.
-     *
-     * @return The type of information the following data represents.
-     */
-    static protected String readinfoType(Scanner scan) {
-        scan.useDelimiter("[^a-zA-Z]");
-        // Reads the type of the next piece of informtion.
-        return scan.next();
-    }
-
-    /**
-     * Reads the next section of data as a color (r,g,b).
-     *
-     * @param scan The {@link java.util.Scanner} object reading from the input
-     * file.
-     *
-     * @return A {@link java.awt.Color} object corresponding to the values from
-     * the input file.
-     */
-    static protected Color readColor(Scanner scan) {
-        scan.useDelimiter(",|\n");
-        // Error Checking
-        // Removes any non-integer values from the data read.
-        return new Color(Integer.parseInt(scan.next().replaceAll("\\D", "")), Integer.parseInt(scan.next().replaceAll("\\D", "")), readNum(scan));
     }
 
     /**
-     * Stores the data being read from the input file in the corresponding
+     * Stores the line of information read by the lexer in the corresponding
      * {@link Shape}.
      *
      * @param CurrShape The current {@link Shape} being defined by the input
      * file.
      *
-     * @param scan The {@link java.util.Scanner} object reading from the input
-     * file.
+     * @param lexer The {@link SceneLexer} reading from the input file, whose
+     * last token was a {@link SceneLexer#PROPERTY}.
      */
-    static protected void defineShape(Shape CurrShape, Scanner scan) {
-        // Checks what type of data is contained on the following line.
+    static protected void defineShape(Shape CurrShape, SceneLexer lexer) {
+        // Checks what type of data is contained on the line.
         // Defines the shape using the information read from the file.
-        switch (FileLoader.readinfoType(scan).toLowerCase()) {
-            case "x":
-                FileLoader.skipToNum(scan);
-                CurrShape.x = FileLoader.readNum(scan);
+        switch (lexer.Key) {
+            case SceneLexer.KEY_X:
+                CurrShape.x = lexer.Value;
                 break;
-            case "y":
-                FileLoader.skipToNum(scan);
-                CurrShape.y = FileLoader.readNum(scan);
+            case SceneLexer.KEY_Y:
+                CurrShape.y = lexer.Value;
                 break;
-            case "border":
-                FileLoader.skipToNum(scan);
-                CurrShape.border = FileLoader.readNum(scan);
+            case SceneLexer.KEY_BORDER:
+                CurrShape.border = lexer.Value;
                 break;
-            case "color":
-                FileLoader.skipToNum(scan);
-                CurrShape.color = FileLoader.readColor(scan);
+            case SceneLexer.KEY_COLOR:
+                CurrShape.color = readColor(lexer);
                 break;
-            case "bordercolor":
-                FileLoader.skipToNum(scan);
-                CurrShape.borderColor = FileLoader.readColor(scan);
+            case SceneLexer.KEY_BORDERCOLOR:
+                CurrShape.borderColor = readColor(lexer);
                 break;
-            case "r":
-                FileLoader.skipToNum(scan);
-                CurrShape.r = FileLoader.readNum(scan);
+            case SceneLexer.KEY_R:
+                CurrShape.r = lexer.Value;
                 break;
-            case "length":
-                FileLoader.skipToNum(scan);
-                CurrShape.length = FileLoader.readNum(scan);
+            case SceneLexer.KEY_LENGTH:
+                CurrShape.length = lexer.Value;
                 break;
-            case "width":
-                FileLoader.skipToNum(scan);
-                CurrShape.width = FileLoader.readNum(scan);
+            case SceneLexer.KEY_WIDTH:
+                CurrShape.width = lexer.Value;
                 break;
-            case "endx":
-                FileLoader.skipToNum(scan);
-                CurrShape.endX = FileLoader.readNum(scan);
+            case SceneLexer.KEY_ENDX:
+                CurrShape.endX = lexer.Value;
                 break;
-            case "endy":
-                FileLoader.skipToNum(scan);
-                CurrShape.endY = FileLoader.readNum(scan);
+            case SceneLexer.KEY_ENDY:
+                CurrShape.endY = lexer.Value;
                 break;
         }
     }
 
     /**
-     * Stores the data being read from the input file in the corresponding
+     * Stores the line of information read by the lexer in the corresponding
      * {@link Effect}.
      *
      * @param CurrEffect The current {@link Effect} being defined by the input
      * file.
      *
-     * @param scan The {@link java.util.Scanner} object reading from the input
-     * file.
+     * @param lexer The {@link SceneLexer} reading from the input file, whose
+     * last token was a {@link SceneLexer#PROPERTY}.
      */
-    static protected void defineEffect(Effect CurrEffect, Scanner scan) {
-        // Checks what type of data is contained on the following line.
+    static protected void defineEffect(Effect CurrEffect, SceneLexer lexer) {
+        // Checks what type of data is contained on the line.
         // Defines the effect using the information read from the file.
-        switch (FileLoader.readinfoType(scan).toLowerCase()) {
-            case "start":
-                FileLoader.skipToNum(scan);
-                CurrEffect.start = FileLoader.readNum(scan);
+        switch (lexer.Key) {
+            case SceneLexer.KEY_START:
+                CurrEffect.start = lexer.Value;
+                break;
+            case SceneLexer.KEY_END:
+                CurrEffect.end = lexer.Value;
+                break;
+            case SceneLexer.KEY_EASE:
+                CurrEffect.ease = lexer.Value;
                 break;
-            case "x":
-                FileLoader.skipToNum(scan);
-                CurrEffect.x = FileLoader.readNum(scan);
+            case SceneLexer.KEY_X:
+                CurrEffect.x = lexer.Value;
                 break;
-            case "y":
-                FileLoader.skipToNum(scan);
-                CurrEffect.y = FileLoader.readNum(scan);
+            case SceneLexer.KEY_Y:
+                CurrEffect.y = lexer.Value;
                 break;
-            case "color":
-                FileLoader.skipToNum(scan);
-                CurrEffect.newColor = FileLoader.readColor(scan);
+            case SceneLexer.KEY_COLOR:
+                CurrEffect.newColor = readColor(lexer);
                 break;
         }
     }
+
+    /**
+     * Creates a color (r,g,b) from the last line of information read by the
+     * lexer.
+     *
+     * @param lexer The {@link SceneLexer} reading from the input file.
+     *
+     * @return A {@link java.awt.Color} object corresponding to the values from
+     * the input file.
+     */
+    static protected Color readColor(SceneLexer lexer) {
+        return new Color(lexer.Red, lexer.Green, lexer.Blue);
+    }
 }
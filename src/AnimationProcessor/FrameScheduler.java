@@ -0,0 +1,152 @@
+package AnimationProcessor;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the frames of an animation at a fixed rate.
+ * <p>
+ * Each frame is given a deadline measured with {@link System#nanoTime()}. The
+ * deadlines are calculated from the time the scheduler started rather than
+ * from the previous frame, so rounding errors and late wake ups do not build
+ * up over the course of the animation. Between frames the thread is parked,
+ * leaving the processor idle.
+ */
+public class FrameScheduler {
+
+    /**
+     * Decides what happens when a frame finishes after the deadline of the
+     * frame that follows it.
+     */
+    public enum CatchUp {
+        /**
+         * Keeps the original schedule. Effects are still applied for every
+         * frame, but frames that are already late are not drawn.
+         */
+        DROP_FRAMES,
+        /**
+         * Draws every frame and moves the schedule back, so the animation plays
+         * slower instead of skipping frames.
+         */
+        SLOW_DOWN
+    }
+
+    /**
+     * The work done by the scheduler on each frame.
+     */
+    public interface Frame {
+
+        /**
+         * Advances the animation by one frame.
+         *
+         * @return False once the animation has no frames left.
+         */
+        boolean step();
+
+        /**
+         * Requests that the current frame be drawn.
+         */
+        void render();
+    }
+
+    /**
+     * The most frames that can be dropped in a row before one is drawn anyway.
+     * This keeps the screen updating while the scheduler is catching up.
+     */
+    static protected final int MaxDroppedFrames = 30;
+
+    /**
+     * The frame rate of the schedule.
+     */
+    private final int Fps;
+    /**
+     * The policy used when frames overrun their deadline.
+     */
+    private final CatchUp Policy;
+
+    /**
+     * The number of frames that were not drawn because they were late.
+     */
+    protected long DroppedFrames = 0;
+    /**
+     * Receives the lateness of each frame, and whether it was dropped. Each
+     * frame is also recorded as a {@link PlaybackEvents.Frame} event.
+     */
+    protected PlaybackMetrics Metrics = new PlaybackMetrics();
+
+    /**
+     * Defines a scheduler for the given frame rate.
+     *
+     * @param Fps The number of frames per second.
+     * @param Policy What to do when a frame overruns its deadline.
+     */
+    FrameScheduler(int Fps, CatchUp Policy) {
+        // Error Checking
+        // A frame rate of 0 would never schedule a frame.
+        this.Fps = Math.max(1, Fps);
+        this.Policy = Policy;
+    }
+
+    /**
+     * Runs frames on the calling thread until {@link Frame#step step} reports
+     * that the animation is finished.
+     *
+     * @param frame The work done on each frame.
+     */
+    protected void run(Frame frame) {
+        // The time the schedule is measured from, and the number of frames run since then.
+        long origin = System.nanoTime();
+        long ticks = 0;
+        // The number of frames dropped since the last one that was drawn.
+        int dropped = 0;
+        // The number of frames run in total.
+        int count = 0;
+
+        while (true) {
+            // The deadline of the next frame. Calculating it from the origin rather than adding
+            // the period each frame keeps the schedule exact for periods that are not whole nanoseconds.
+            long deadline = origin + (ticks + 1) * 1_000_000_000L / Fps;
+            long wait = deadline - System.nanoTime();
+            // Sleeps until the deadline. The loop also handles the thread waking up early.
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+
+            PlaybackEvents.Frame event = PlaybackEvents.beginFrame();
+            // Applies the logic of the frame.
+            if (!frame.step()) {
+                return;
+            }
+            ticks++;
+
+            // Checks if the following frame is already due.
+            long late = System.nanoTime() - (origin + (ticks + 1) * 1_000_000_000L / Fps);
+            boolean skipped = false;
+            if (late < 0) {
+                frame.render();
+                dropped = 0;
+            } else if (Policy == CatchUp.DROP_FRAMES) {
+                // Skips drawing this frame so the following frames can catch up, but still draws
+                // one occasionally so the screen does not freeze.
+                if (dropped == MaxDroppedFrames) {
+                    frame.render();
+                    dropped = 0;
+                } else {
+                    DroppedFrames++;
+                    dropped++;
+                    skipped = true;
+                }
+            } else {
+                // Draws the frame and restarts the schedule from now, slowing the animation down.
+                frame.render();
+                origin = System.nanoTime();
+                ticks = 0;
+            }
+
+            // The frame was started as soon as its deadline passed, so the time waited past it is its lateness.
+            Metrics.frame(-wait, skipped);
+            PlaybackEvents.endFrame(event, count, -wait, skipped);
+            count++;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package AnimationProcessor;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A destination for the frames drawn by the {@link HeadlessRenderer}.
+ */
+public interface FrameSink extends Closeable {
+
+    /**
+     * Writes a single frame.
+     * <p>
+     * The image is reused for the following frame once this method returns,
+     * so implementations must not keep a reference to it.
+     *
+     * @param frame The number of the frame.
+     * @param image The drawn frame.
+     * @throws IOException If the frame could not be written.
+     */
+    void writeFrame(int frame, BufferedImage image) throws IOException;
+}
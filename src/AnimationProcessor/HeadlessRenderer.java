@@ -0,0 +1,207 @@
+package AnimationProcessor;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Draws every frame of an animation into an image without a swing window.
+ * <p>
+ * Frames are drawn as fast as possible rather than at the animation's frame
+ * rate, and are passed to a {@link FrameSink}. Shapes are drawn from a
+ * {@link DisplayList}, as they are by {@link JComp}, so the frames match what the
+ * {@link AnimationPlayer} shows on the screen. This works with
+ * {@code java.awt.headless=true}.
+ * <p>
+ * The renderer can also draw a {@link PackedScene}, in which case no
+ * {@link Shape} objects are used.
+ * <p>
+ * Shapes can be drawn by a {@link SoftwareRasterizer} instead of Java2D, which
+ * writes the pixels of the frame directly and fills shapes faster.
+ */
+public class HeadlessRenderer {
+
+    /**
+     * The default width of the drawn frames, matching the swing window.
+     */
+    static protected final int DefaultWidth = 400;
+    /**
+     * The default height of the drawn frames, matching the swing window.
+     */
+    static protected final int DefaultHeight = 300;
+    /**
+     * The color drawn behind the shapes.
+     */
+    static protected final Color Background = Color.white;
+
+    /**
+     * The shapes being drawn. These are modified as effects are applied.
+     */
+    private final List<Shape> Shapes;
+    /**
+     * The effects applied to the shapes.
+     */
+    private final Timeline Events;
+    /**
+     * The shapes compiled into draw commands.
+     */
+    private final DisplayList Commands;
+    /**
+     * The packed scene being drawn instead of the shapes, or null if the
+     * shapes are drawn.
+     */
+    private final PackedScene Scene;
+    /**
+     * The number of frames to draw.
+     */
+    private final int Frames;
+
+    /**
+     * The width of the drawn frames in pixels.
+     */
+    protected int Width = DefaultWidth;
+    /**
+     * The height of the drawn frames in pixels.
+     */
+    protected int Height = DefaultHeight;
+
+    /**
+     * The checkpoints used to start drawing partway through the animation,
+     * or null if the effects before the first frame are applied one by one.
+     * Only used when drawing shapes.
+     */
+    protected Checkpoints Seeker = null;
+
+    /**
+     * Whether the shapes are drawn by a {@link SoftwareRasterizer} rather
+     * than through Java2D. Only used when drawing shapes.
+     */
+    protected boolean Software = false;
+
+    /**
+     * Defines a renderer for the given animation.
+     *
+     * @param Shapes The shapes being drawn, in the state of frame 0.
+     * @param Events The effects applied to the shapes.
+     * @param Frames The number of frames to draw.
+     */
+    HeadlessRenderer(List<Shape> Shapes, Timeline Events, int Frames) {
+        this.Shapes = Shapes;
+        this.Events = Events;
+        this.Commands = new DisplayList(Shapes);
+        this.Scene = null;
+        this.Frames = Frames;
+    }
+
+    /**
+     * Defines a renderer for every frame of a loaded session, which seeks
+     * using the checkpoints of the session. The shapes of the session are
+     * changed as the frames are drawn, so the session must not be played at
+     * the same time.
+     *
+     * @param Session The session to draw, in the state of frame 0.
+     */
+    HeadlessRenderer(AnimationSession Session) {
+        this(Session.ShapeList, Session.EffectTimeline, Session.Frames);
+        Seeker = Session.Seeker;
+    }
+
+    /**
+     * Defines a renderer for a packed scene.
+     *
+     * @param Scene The scene being drawn, in the state of frame 0.
+     * @param Frames The number of frames to draw.
+     */
+    HeadlessRenderer(PackedScene Scene, int Frames) {
+        this.Shapes = null;
+        this.Events = null;
+        this.Commands = null;
+        this.Scene = Scene;
+        this.Frames = Frames;
+    }
+
+    /**
+     * Draws every frame of the animation and passes it to the sink. Frame
+     * {@code n} shows the shapes after the effects of frame {@code n} have
+     * been applied.
+     *
+     * @param sink Where the frames are written.
+     * @return The number of frames drawn per second.
+     * @throws IOException If the sink could not write a frame.
+     */
+    protected double render(FrameSink sink) throws IOException {
+        return render(sink, 0);
+    }
+
+    /**
+     * Draws the frames of the animation from the given frame onwards and
+     * passes them to the sink. The frames keep their numbers, so frame
+     * {@code n} shows the same image as it would if every frame were drawn.
+     *
+     * @param sink Where the frames are written.
+     * @param from The first frame to draw. The shapes must be in the state of
+     * frame 0.
+     * @return The number of frames drawn per second.
+     * @throws IOException If the sink could not write a frame.
+     */
+    protected double render(FrameSink sink, int from) throws IOException {
+        // A single image is reused for every frame.
+        BufferedImage image = new BufferedImage(Width, Height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        SoftwareRasterizer rasterizer = Software && Scene == null ? new SoftwareRasterizer(image) : null;
+        long begin = System.nanoTime();
+        // Moves the shapes to the first frame, from the nearest checkpoint if there are any.
+        if (from > 0) {
+            if (Scene != null) {
+                for (int frame = 0; frame < from; frame++) {
+                    Scene.applyFrame(frame);
+                }
+            } else if (Seeker != null) {
+                Seeker.restore(from, Shapes);
+            } else {
+                Events.applyRange(0, from, Shapes);
+            }
+        }
+        try {
+            for (int frame = from; frame < Frames; frame++) {
+                // Applies the effects that occur on this frame.
+                if (Scene == null) {
+                    Events.apply(frame, Shapes);
+                    if (rasterizer != null) {
+                        rasterizer.drawFrame(Commands);
+                    } else {
+                        drawFrame(g, Commands, Width, Height);
+                    }
+                } else {
+                    Scene.applyFrame(frame);
+                    g.setColor(Background);
+                    g.fillRect(0, 0, Width, Height);
+                    Scene.draw(g);
+                }
+                sink.writeFrame(frame, image);
+            }
+        } finally {
+            g.dispose();
+        }
+        // Converts the time taken into frames per second.
+        return Math.max(0, Frames - from) / Math.max(1e-9, (System.nanoTime() - begin) / 1e9);
+    }
+
+    /**
+     * Clears the image and draws each shape onto it.
+     *
+     * @param g The graphics object of the image.
+     * @param Commands The shapes to draw, compiled into draw commands.
+     * @param Width The width of the image.
+     * @param Height The height of the image.
+     */
+    static protected void drawFrame(Graphics2D g, DisplayList Commands, int Width, int Height) {
+        // Clears the previous frame.
+        g.setColor(Background);
+        g.fillRect(0, 0, Width, Height);
+        // Draws each shape onto the graphics object.
+        Commands.draw(g);
+    }
+}
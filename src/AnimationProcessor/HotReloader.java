@@ -0,0 +1,484 @@
+package AnimationProcessor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches the input file of an {@link AnimationSession} and applies any
+ * changes made to it while the animation is playing, without starting it
+ * again.
+ * <p>
+ * The shapes of the file are split into the same blocks used by the
+ * {@link ParallelParser}, which usually hold one shape each, and a hash of
+ * the bytes of each block is kept. When the file changes, only the blocks
+ * whose hash changed are read again. The shapes of every other block are
+ * copied from the animation, in the state of frame 0.
+ * <p>
+ * When the shapes read again replace the same number of shapes, as when a
+ * shape is edited, only their entries are patched: their effects are swapped
+ * into the buckets of the {@link Timeline}, the checkpoints are only taken
+ * again from the earliest frame that changed, and the thread playing the
+ * animation swaps the new shapes into the display list, spatial index and
+ * layers, then moves them to the current frame. Otherwise the new scene,
+ * with all of these, is built again on the watching thread and brought up to
+ * the frame being played, and the thread playing the animation swaps it in
+ * and applies the effects of any frames played in the meantime. Either way
+ * playback is not held up while the scene is built, and the current frame is
+ * kept. Files compiled into the {@link BinaryScene binary format} are read
+ * again in full.
+ * <p>
+ * A change that cannot be read, for example because the file is only
+ * partly written, is recorded in {@link HotReloader#LastFailure} and
+ * ignored, and the animation plays on unchanged until the file is next
+ * saved. The {@link HotReloader#Listener} is told of each reload.
+ */
+public class HotReloader implements Runnable {
+
+    /**
+     * How long the file must go without changing before it is read, in
+     * milliseconds. Editors often save a file in several writes.
+     */
+    static protected final long SettleMillis = 50;
+
+    /**
+     * A scene built from a changed file, ready to be swapped into the session,
+     * either complete or as a patch of the scene being played.
+     */
+    static protected class Reload {
+
+        protected final ArrayList<Shape> Shapes;
+        protected int Frames;
+        protected int Fps;
+        protected Timeline Events;
+        protected Checkpoints Seeker;
+        protected DisplayList Display;
+        protected SpatialIndex Index;
+        protected LayerCache Layers;
+        /**
+         * The index of each shape replaced, in ascending order, whose entries
+         * are patched into the display list, index and layers of the scene
+         * being played, or null if the scene was built in full.
+         */
+        protected int[] Changed;
+        /**
+         * The frame the shapes are in the state of, before its effects are
+         * applied.
+         */
+        protected int Frame;
+
+        Reload(ArrayList<Shape> Shapes) {
+            this.Shapes = Shapes;
+        }
+
+        /**
+         * Builds everything a load builds from the shapes, in the state of
+         * frame 0, and moves them to a frame, so only the frames played while
+         * the scene is swapped in are left to apply.
+         *
+         * @param CheckpointBudget The largest number of bytes the checkpoints
+         * may use.
+         * @param frame The frame being played.
+         */
+        protected void compile(long CheckpointBudget, int frame) {
+            Events = Timeline.build(Shapes);
+            Seeker = new Checkpoints(Shapes, Events, CheckpointBudget);
+            Display = new DisplayList(Shapes);
+            Index = new SpatialIndex(Shapes);
+            Layers = new LayerCache(Shapes, Events);
+            Frame = Math.max(0, Math.min(frame, Frames));
+            Seeker.restore(Frame, Shapes);
+            for (int shape : Seeker.Members) {
+                Index.update(shape);
+            }
+        }
+    }
+
+    /**
+     * The session the file belongs to.
+     */
+    private final AnimationSession Session;
+    /**
+     * The file being watched.
+     */
+    private final Path File;
+    /**
+     * The hash and length of each block of the file last read, and the number
+     * of shapes read from it, or null if the blocks are not known.
+     */
+    private long[] Hashes;
+    private int[] Lengths;
+    private int[] Counts;
+    /**
+     * Whether each block of the file last read ended between two shapes.
+     */
+    private boolean[] Whole;
+    /**
+     * The number of blocks read by the last reload, and the total number of
+     * blocks.
+     */
+    protected volatile int Reparsed;
+    protected volatile int Blocks;
+    /**
+     * The time taken to build the last reload, in nanoseconds.
+     */
+    protected volatile long LastReloadNanos;
+    /**
+     * Whether the last reload patched the scene being played, rather than
+     * building it again in full.
+     */
+    protected volatile boolean Patched;
+    /**
+     * Why the last change could not be reloaded, or null if it was.
+     */
+    protected volatile Exception LastFailure;
+    /**
+     * Told after each change to the file has been reloaded, or has failed to
+     * be, on the watching thread. May be null.
+     */
+    protected volatile Consumer<HotReloader> Listener;
+
+    /**
+     * The service reporting changes, which is closed to stop watching.
+     */
+    private volatile WatchService Watcher;
+
+    /**
+     * Defines a reloader for the file a session was loaded from.
+     *
+     * @param Session The session the file was loaded into.
+     * @param File The file to watch.
+     */
+    HotReloader(AnimationSession Session, Path File) {
+        this.Session = Session;
+        this.File = File.toAbsolutePath();
+    }
+
+    /**
+     * Starts watching the file on a new daemon thread.
+     *
+     * @throws IOException If the folder holding the file cannot be watched.
+     */
+    protected void start() throws IOException {
+        Watcher = FileSystems.getDefault().newWatchService();
+        // Editors often replace the file rather than writing into it, so new files are watched for as well.
+        File.getParent().register(Watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread thread = new Thread(this, "AnimationWatcher-" + Session.Id);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching the file.
+     */
+    protected void close() {
+        try {
+            Watcher.close();
+        } catch (IOException e) {
+            // The service is being discarded, so there is nothing more to do.
+        }
+    }
+
+    /**
+     * Reloads the file each time it changes, until the reloader is closed.
+     */
+    public void run() {
+        try {
+            // Splits the file as it was loaded, so the first change only reads the blocks it changed.
+            read(ByteBuffer.wrap(Files.readAllBytes(File)), null, null);
+        } catch (IOException | RuntimeException e) {
+            Hashes = null;
+        }
+        try {
+            while (true) {
+                WatchKey key = Watcher.take();
+                boolean changed = false;
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || File.getFileName().equals(event.context());
+                    }
+                    key.reset();
+                    // Waits until the file stops changing.
+                    key = changed ? Watcher.poll(SettleMillis, TimeUnit.MILLISECONDS) : null;
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // The reloader was closed.
+        }
+    }
+
+    /**
+     * Reads the changed file and hands the new scene to the session.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting
+     * for the animation to finish loading.
+     */
+    protected void reload() throws InterruptedException {
+        long begin = System.nanoTime();
+        try {
+            Reload scene = build(ByteBuffer.wrap(Files.readAllBytes(File)));
+            Session.offerReload(scene);
+            LastReloadNanos = System.nanoTime() - begin;
+            LastFailure = null;
+        } catch (IOException | RuntimeException e) {
+            // Error Checking
+            // The file may be only partly written, so the animation plays on until it is next saved.
+            LastFailure = e;
+        }
+        Consumer<HotReloader> listener = Listener;
+        if (listener != null) {
+            listener.accept(this);
+        }
+    }
+
+    /**
+     * Builds the scene of a changed file, reusing the shapes of the blocks
+     * that did not change, and brings it up to the frame being played.
+     *
+     * @param file The contents of the file.
+     * @return The scene.
+     * @throws InterruptedException If the thread is interrupted while waiting
+     * for the animation to finish loading.
+     */
+    private Reload build(ByteBuffer file) throws InterruptedException {
+        Reload scene = new Reload(new ArrayList<>());
+        Reload current = null;
+        if (BinaryScene.isBinary(file)) {
+            try {
+                BinaryScene compiled = BinaryScene.read(file);
+                scene.Shapes.addAll(compiled.Shapes);
+                scene.Frames = compiled.Frames;
+                scene.Fps = compiled.Fps;
+            } catch (IOException e) {
+                throw new IllegalStateException("The compiled animation could not be read", e);
+            }
+            Hashes = null;
+            Reparsed = Blocks = 1;
+        } else {
+            // The shapes of the unchanged blocks are copied from the scene being played.
+            current = Hashes == null ? null : Session.sceneAtFrameZero();
+            read(file, scene, current == null ? null : current.Shapes);
+        }
+
+        // Patches the scene being played, if the new shapes took the place of as many shapes.
+        Patched = false;
+        if (scene.Changed != null && current.Changed != null) {
+            Timeline events = current.Events.patch(scene.Shapes, scene.Changed);
+            if (current.Layers.canReplace(scene.Shapes, events, scene.Changed)) {
+                scene.Events = events;
+                scene.Seeker = new Checkpoints(scene.Shapes, events, Session.CheckpointBudget, current.Seeker,
+                        firstChange(current.Shapes, scene.Shapes, scene.Changed));
+                scene.Layers = current.Layers;
+                scene.Frame = Math.max(0, Math.min(Session.CurrFrame, scene.Frames));
+                // A scene still waiting to be swapped in is replaced, so the shapes it changed are swapped in as well.
+                scene.Changed = union(current.Changed, scene.Changed);
+                Patched = true;
+                return scene;
+            }
+        }
+        scene.Changed = null;
+
+        scene.compile(Session.CheckpointBudget, Session.CurrFrame);
+        return scene;
+    }
+
+    /**
+     * Finds the earliest frame on which shapes replaced by new shapes may be
+     * in a different state, so the checkpoints before it can be kept.
+     *
+     * @param before The shapes before they were replaced, in the state of
+     * frame 0.
+     * @param after The shapes, with the new shapes in place of those
+     * replaced.
+     * @param changed The index of each replaced shape.
+     * @return The earliest start frame of the effects of either shape, or -1
+     * if a new shape starts in a different state.
+     */
+    static private int firstChange(List<Shape> before, List<Shape> after, int[] changed) {
+        int from = Integer.MAX_VALUE;
+        for (int shape : changed) {
+            Shape old = before.get(shape);
+            Shape CurrShape = after.get(shape);
+            // Only the fields kept by a checkpoint matter.
+            if (old.x != CurrShape.x || old.y != CurrShape.y || old.endX != CurrShape.endX || old.endY != CurrShape.endY
+                    || old.visible != CurrShape.visible || !old.color.equals(CurrShape.color)) {
+                return -1;
+            }
+            for (Effect CurrEffect : old.EffectList) {
+                from = Math.min(from, CurrEffect.start);
+            }
+            for (Effect CurrEffect : CurrShape.EffectList) {
+                from = Math.min(from, CurrEffect.start);
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Joins two ascending lists of indexes.
+     *
+     * @param a The first list.
+     * @param b The second list.
+     * @return The indexes in either list, in ascending order, each once.
+     */
+    static private int[] union(int[] a, int[] b) {
+        int[] both = new int[a.length + b.length];
+        int count = 0;
+        for (int i = 0, j = 0; i < a.length || j < b.length;) {
+            int next = j == b.length || (i < a.length && a[i] < b[j]) ? a[i++] : b[j++];
+            if (count == 0 || both[count - 1] != next) {
+                both[count++] = next;
+            }
+        }
+        return Arrays.copyOf(both, count);
+    }
+
+    /**
+     * Splits a file into blocks and records their hashes. If a scene is
+     * given, the header and shapes of the file are stored in it, copying the
+     * shapes of any block whose hash has not changed from the current scene.
+     * If every copied shape keeps its index, the indexes of the shapes read
+     * again are stored in {@link Reload#Changed}.
+     *
+     * @param file The contents of the file.
+     * @param scene Receives the header and shapes, or null to only record the
+     * hashes.
+     * @param current The shapes of the blocks last read, in the state of frame
+     * 0, or null to read every block.
+     */
+    private void read(ByteBuffer file, Reload scene, List<Shape> current) {
+        SceneLexer lexer = new SceneLexer(file);
+        lexer.next();
+        int frames = lexer.Value;
+        lexer.next();
+        int fps = lexer.Value;
+        lexer.next();
+        int ShapeNum = lexer.Value;
+        int start = lexer.position();
+
+        // Finds the blocks. Every block after the first starts at a blank line.
+        List<Integer> bounds = new ArrayList<>();
+        for (int bound = start; bound < file.limit(); bound = ParallelParser.nextBlock(file, bound, file.limit())) {
+            bounds.add(bound);
+        }
+        bounds.add(Math.max(start, file.limit()));
+        int count = bounds.size() - 1;
+        long[] hashes = new long[count];
+        int[] lengths = new int[count];
+        int[] counts = new int[count];
+        boolean[] whole = new boolean[count];
+
+        // Finds the blocks last read by hash, in order, so repeated blocks are matched in turn.
+        Map<Long, ArrayDeque<Integer>> previous = new HashMap<>();
+        int[] firstShape = new int[1];
+        if (current != null) {
+            firstShape = new int[Hashes.length + 1];
+            for (int b = 0; b < Hashes.length; b++) {
+                previous.computeIfAbsent(Hashes[b], h -> new ArrayDeque<>()).add(b);
+                firstShape[b + 1] = firstShape[b] + Counts[b];
+            }
+            // Error Checking
+            // Blocks can only be reused if they match the shapes being played, so every block is read otherwise.
+            if (firstShape[Hashes.length] != current.size()) {
+                previous.clear();
+            }
+        }
+
+        int reparsed = 0;
+        boolean valid = true;
+        // Whether every copied shape keeps its index, and the index of each shape read again.
+        boolean inPlace = current != null;
+        List<Integer> changed = new ArrayList<>();
+        for (int b = 0; b < count; b++) {
+            int from = bounds.get(b);
+            int to = bounds.get(b + 1);
+            hashes[b] = hashOf(file, from, to);
+            lengths[b] = to - from;
+            ArrayDeque<Integer> matches = previous.get(hashes[b]);
+            Integer match = matches == null ? null : matches.poll();
+            if (match != null && Lengths[match] == lengths[b]) {
+                counts[b] = Counts[match];
+                whole[b] = Whole[match];
+                inPlace &= firstShape[match] == scene.Shapes.size();
+                scene.Shapes.addAll(current.subList(firstShape[match], firstShape[match + 1]));
+            } else {
+                ParallelParser.Block block = ParallelParser.readBlock(file, from, to);
+                counts[b] = block.Shapes.size();
+                whole[b] = block.Whole;
+                if (scene != null) {
+                    for (int i = 0; i < block.Shapes.size(); i++) {
+                        changed.add(scene.Shapes.size() + i);
+                    }
+                    scene.Shapes.addAll(block.Shapes);
+                }
+                reparsed++;
+            }
+            // The last block ends with the file, so it does not matter how it ended.
+            valid &= whole[b] || b == count - 1;
+        }
+
+        if (valid) {
+            Hashes = hashes;
+            Lengths = lengths;
+            Counts = counts;
+            Whole = whole;
+        } else {
+            // A block ended in the blank lines after a type, so the file is read in order instead.
+            if (scene != null) {
+                scene.Shapes.clear();
+                scene.Shapes.addAll(ParallelParser.readBlock(file, start, file.limit()).Shapes);
+            }
+            Hashes = null;
+            reparsed = count;
+        }
+        Reparsed = reparsed;
+        Blocks = count;
+        if (scene != null) {
+            scene.Frames = frames;
+            scene.Fps = fps;
+            // Error Checking
+            // A file indicating there are no shapes has none, as when it is loaded.
+            if (ShapeNum <= 0) {
+                scene.Shapes.clear();
+            }
+            scene.Changed = null;
+            if (valid && inPlace && ShapeNum > 0 && scene.Shapes.size() == current.size()) {
+                scene.Changed = changed.stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+    }
+
+    /**
+     * Hashes part of a file with the 64 bit FNV-1a hash.
+     *
+     * @param file The contents of the file.
+     * @param from The position of the first byte.
+     * @param to The position after the last byte.
+     * @return The hash.
+     */
+    static private long hashOf(ByteBuffer file, int from, int to) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            hash = (hash ^ (file.get(i) & 0xFF)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+}
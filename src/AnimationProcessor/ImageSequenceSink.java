@@ -0,0 +1,107 @@
+package AnimationProcessor;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
+
+/**
+ * A {@link FrameSink} that writes each frame to its own numbered file
+ * ("frame_000000.png", "frame_000001.png", etc).
+ * <p>
+ * Frames can be written from several threads and in any order, which allows
+ * the sink to be used by the {@link ParallelRenderer}.
+ */
+public class ImageSequenceSink implements FrameSink {
+
+    /**
+     * The file formats the frames can be written in.
+     */
+    public enum Format {
+        /**
+         * Compressed PNG images.
+         */
+        PNG("png"),
+        /**
+         * Uncompressed 8-bit RGB triplets, row by row, with no header.
+         */
+        RAW("rgb");
+
+        /**
+         * The file extension of the format.
+         */
+        protected final String Extension;
+
+        Format(String Extension) {
+            this.Extension = Extension;
+        }
+    }
+
+    /**
+     * The directory the frames are written to.
+     */
+    private final Path Directory;
+    /**
+     * The format the frames are written in.
+     */
+    private final Format Type;
+
+    /**
+     * Defines a sink writing to the given directory, creating it if needed.
+     *
+     * @param Directory The directory the frames are written to.
+     * @param Type The format the frames are written in.
+     * @throws IOException If the directory could not be created.
+     */
+    ImageSequenceSink(Path Directory, Format Type) throws IOException {
+        this.Directory = Files.createDirectories(Directory);
+        this.Type = Type;
+    }
+
+    /**
+     * Writes the frame to a file named after its frame number.
+     *
+     * @param frame The number of the frame.
+     * @param image The drawn frame.
+     * @throws IOException If the file could not be written.
+     */
+    public void writeFrame(int frame, BufferedImage image) throws IOException {
+        Path file = Directory.resolve(String.format("frame_%06d.%s", frame, Type.Extension));
+        if (Type == Format.PNG) {
+            ImageIO.write(image, "png", file.toFile());
+            return;
+        }
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(toRGB(image));
+        }
+    }
+
+    /**
+     * Converts an image into RGB triplets.
+     *
+     * @param image The image to convert.
+     * @return The red, green and blue value of each pixel, row by row.
+     */
+    static protected byte[] toRGB(BufferedImage image) {
+        byte[] rgb = new byte[image.getWidth() * image.getHeight() * 3];
+        // Reads the pixels directly from the image when possible, rather than one pixel at a time.
+        int[] pixels = image.getType() == BufferedImage.TYPE_INT_RGB
+                ? ((DataBufferInt) image.getRaster().getDataBuffer()).getData()
+                : image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+        for (int i = 0, j = 0; i < pixels.length; i++) {
+            rgb[j++] = (byte) (pixels[i] >> 16);
+            rgb[j++] = (byte) (pixels[i] >> 8);
+            rgb[j++] = (byte) pixels[i];
+        }
+        return rgb;
+    }
+
+    /**
+     * Nothing needs to be closed, as each frame's file is closed once written.
+     */
+    public void close() {
+    }
+}
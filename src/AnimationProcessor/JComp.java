@@ -2,13 +2,17 @@ package AnimationProcessor;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.swing.JComponent;
 
 /**
  * A subclass of the {@link javax.swing.JComponent} class, modified to allow
- * custom drawing to {@link AnimationPlayer#Canvas itself}.
+ * custom drawing to {@link AnimationSession#Canvas itself}.
  */
 public class JComp extends JComponent {
 
@@ -18,27 +22,149 @@ public class JComp extends JComponent {
      */
     static protected final Color Default = Color.black;
 
+    /**
+     * The stroke used to draw lines with the assumed default thickness of 1.
+     */
+    static protected final BasicStroke ThinStroke = new BasicStroke(1);
+
+    /**
+     * The thickest border whose stroke is created in advance.
+     */
+    static protected final int MaxCachedStroke = 64;
+
+    /**
+     * The strokes used to draw borders up to {@link JComp#MaxCachedStroke},
+     * indexed by thickness. They are never changed, so they can be read from
+     * any thread without a lock.
+     */
+    static private final BasicStroke[] Strokes = new BasicStroke[MaxCachedStroke + 1];
+
+    /**
+     * The strokes of thicker borders, created the first time each thickness
+     * is used.
+     */
+    static private final Map<Integer, BasicStroke> ThickStrokes = new ConcurrentHashMap<>();
+
+    static {
+        for (int thickness = 0; thickness <= MaxCachedStroke; thickness++) {
+            Strokes[thickness] = thickness == 1 ? ThinStroke : new BasicStroke(thickness);
+        }
+    }
+
+    /**
+     * The digits 0-9 as strings, used to draw numbers without creating new
+     * strings.
+     */
+    static private final String[] Digits = {"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"};
+
+    /**
+     * Holds the digits of the number being drawn by
+     * {@link JComp#drawNumber drawNumber}, from last to first.
+     */
+    private final int[] DigitBuffer = new int[10];
+    /**
+     * The metrics of the font used to draw the overlay, kept so they are not
+     * looked up on every paint.
+     */
+    private FontMetrics Metrics;
+    /**
+     * Holds the area being repainted, reused on every paint.
+     */
+    private final Rectangle Clip = new Rectangle();
+    /**
+     * The session drawn by this component.
+     */
+    private final AnimationSession Session;
+
+    /**
+     * Defines a component that draws the given session.
+     *
+     * @param Session The session to draw.
+     */
+    JComp(AnimationSession Session) {
+        this.Session = Session;
+    }
+
     /**
      * A custom version of the JComponents
      * {@link javax.swing.JComponent#paint paint} method.<p>
      * Overwriting this method has allowed for the JComponent to be
      * {@link java.awt.Graphics modified} and redrawn by calling
      * {@link java.awt.Component#repaint repaint}.
+     * <p>
+     * Shapes are drawn from the {@link AnimationSession#Display display list},
+     * so painting a frame does not create any objects. Only the shapes found
+     * by the {@link AnimationSession#Index spatial index} inside the area being
+     * repainted are drawn, so hidden shapes and shapes outside the window are
+     * never visited. Shapes that never change are drawn from images kept by
+     * the {@link AnimationSession#Layers layer cache}. The time taken is
+     * recorded in the {@link AnimationSession#Metrics}.
      *
      * @param g The {@link java.awt.Graphics Graphics} object provided by
      * {@link javax.swing swing}. After modification, the contents of the object
      * are copied to the JComponent.
      */
     public void paint(Graphics g) {
-        // Cycles through each shape.
-        for (Shape CurrShape : AnimationPlayer.ShapeList) {
-            // Draws the shape onto the graphics object.
-            drawShape((Graphics2D) g, CurrShape);
+        long begin = Session.Metrics.begin();
+        // Prevents the shapes from being modified while they are drawn.
+        synchronized (Session.ShapeList) {
+            // Finds the area being repainted. The whole component is used if swing did not set a clip.
+            Clip.setBounds(0, 0, getWidth(), getHeight());
+            g.getClipBounds(Clip);
+            // Draws each shape in that area onto the graphics object, with the static shapes drawn from their cached layers.
+            Session.Layers.draw((Graphics2D) g, Session.Display, Session.Index, Clip, getWidth(), getHeight());
+        }
+        // Looks up the font metrics again only if the font has changed.
+        if (Metrics == null || Metrics.getFont() != g.getFont()) {
+            Metrics = g.getFontMetrics();
         }
         // Draws the current fps on the graphics object.
-        g.drawString("Fps: " + AnimationPlayer.Fps, 0, AnimationPlayer.Canvas.getHeight() - 15);
+        drawNumber(g, "Fps: ", Session.Fps, getHeight() - 15);
         // Draws the current frame of the animation on the graphics object.
-        g.drawString("Frame: " + AnimationPlayer.CurrFrame, 0, AnimationPlayer.Canvas.getHeight());
+        drawNumber(g, "Frame: ", Session.CurrFrame, getHeight());
+        Session.Metrics.endPaint(begin);
+    }
+
+    /**
+     * Draws a label followed by a number on the left edge of the component.
+     * The number is drawn one digit at a time, rather than joining it to the
+     * label, so no strings are created.
+     *
+     * @param g The {@link java.awt.Graphics Graphics} object provided by
+     * {@link JComp#paint paint}.
+     * @param label The text drawn before the number.
+     * @param value The number to draw. Must not be negative.
+     * @param y The baseline of the text.
+     */
+    private void drawNumber(Graphics g, String label, int value, int y) {
+        g.drawString(label, 0, y);
+        int x = Metrics.stringWidth(label);
+        // Stores the digits from last to first, then draws them from first to last.
+        int count = 0;
+        do {
+            DigitBuffer[count++] = value % 10;
+            value /= 10;
+        } while (value > 0);
+        while (count > 0) {
+            int digit = DigitBuffer[--count];
+            g.drawString(Digits[digit], x, y);
+            x += Metrics.charWidth('0' + digit);
+        }
+    }
+
+    /**
+     * Finds the stroke for a border thickness. This can be called from any
+     * thread. Strokes thicker than {@link JComp#MaxCachedStroke} are created
+     * the first time they are used.
+     *
+     * @param thickness The thickness of the border in pixels.
+     * @return The stroke.
+     */
+    static protected BasicStroke strokeOf(int thickness) {
+        if (thickness >= 0 && thickness <= MaxCachedStroke) {
+            return Strokes[thickness];
+        }
+        return ThickStrokes.computeIfAbsent(thickness, BasicStroke::new);
     }
 
     /**
@@ -49,58 +175,69 @@ public class JComp extends JComponent {
      * object to allow a
      * {@linkplain java.awt.Graphics2D#setStroke wider array of graphical operations}
      * to be performed.
+     * <p>
+     * This method is called for each command of a {@link DisplayList}, which
+     * is also used by the {@link HeadlessRenderer} to draw shapes into images.
      *
      * @param g The {@link java.awt.Graphics2D graphics} object provided by
      * {@link JComp#paint paint}.
      *
      * @param currShape The {@link Shape} to be drawn to g.
+     *
+     * @param op The kind of the shape, as found by
+     * {@link PackedScene#kindOf kindOf}.
+     *
+     * @param borderStroke The stroke matching the thickness of the shapes
+     * border, as found by {@link JComp#strokeOf strokeOf}.
      */
-    private void drawShape(Graphics2D g, Shape currShape) {
+    static protected void drawShape(Graphics2D g, Shape currShape, byte op, BasicStroke borderStroke) {
         // Checks if the current shape should be drawn on the screen.
         if (currShape.visible == true) {
             // Sets the drawing color to that of the shape.
             g.setColor(currShape.color);
             // Checks the shapes type.
-            switch (currShape.type.toLowerCase()) {
-                case "circle":
+            switch (op) {
+                case PackedScene.CIRCLE:
                     // The input file provides the coordinates for the center of the circle.
                     // The drawing methods take the coordinates of the shape from the top left.
                     // To account for this, the x and y coordinates of all drawn circles are subtracted by the circles radius.
 
+                    // The edges of a filled circle depend on the current stroke, so the thin stroke is set first to draw
+                    // the circle the same way whichever shape was drawn before it.
+                    g.setStroke(ThinStroke);
                     // Fills the circle on the graphics object.
                     g.fillOval(currShape.x - currShape.r, currShape.y - currShape.r, currShape.r * 2, currShape.r * 2);
 
                     // Sets the drawing color to that of the shapes border.
                     g.setColor(currShape.borderColor);
                     // Sets the thickness of the drawn line to that of the shapes border.
-                    g.setStroke(new BasicStroke(currShape.border));
+                    g.setStroke(borderStroke);
                     // Draws the border of the circle on the graphics object ontop of the filled circle.
                     g.drawOval(currShape.x - currShape.r, currShape.y - currShape.r, currShape.r * 2, currShape.r * 2);
                     break;
-                case "rectangle":
-                case "rect":
+                case PackedScene.RECT:
                     // Fills the rectangle on the graphics object.
                     g.fillRect(currShape.x, currShape.y, currShape.length, currShape.width);
 
                     // Sets the drawing color to that of the shapes border.
                     g.setColor(currShape.borderColor);
                     // Sets the thickness of the drawn line to that of the shapes border.
-                    g.setStroke(new BasicStroke(currShape.border));
+                    g.setStroke(borderStroke);
                     // Draws the border of the rectangle on the graphics object ontop of the filled rectangle.
                     g.drawRect(currShape.x, currShape.y, currShape.length, currShape.width);
                     break;
-                case "line":
+                case PackedScene.LINE:
                     // Sets the drawing color to that of the shapes border.
                     g.setColor(currShape.borderColor);
                     // Sets the thickness of the drawn line to that of the shapes border.
-                    g.setStroke(new BasicStroke(currShape.border));
+                    g.setStroke(borderStroke);
                     // To draw the border of the line, a thicker line is drawn underneath with the thickness of the border.
                     g.drawLine(currShape.x, currShape.y, currShape.endX, currShape.endY);
 
                     // Sets the drawing color to that of the shape.
                     g.setColor(currShape.color);
                     // Sets the thickness of the drawn line to 1 as that is the assumed default thickness.
-                    g.setStroke(new BasicStroke(1));
+                    g.setStroke(ThinStroke);
                     // Draws the line ontop of the border.
                     g.drawLine(currShape.x, currShape.y, currShape.endX, currShape.endY);
                     break;
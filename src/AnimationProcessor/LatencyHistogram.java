@@ -0,0 +1,166 @@
+package AnimationProcessor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in buckets whose width grows with the duration, so any
+ * duration from a nanosecond to hundreds of years is recorded to within
+ * 12.5% using a fixed amount of memory.
+ * <p>
+ * Durations below {@link LatencyHistogram#SubBuckets} nanoseconds each have
+ * their own bucket. Every larger power of two is split into
+ * {@link LatencyHistogram#SubBuckets} buckets of equal width.
+ * <p>
+ * Recording a duration only updates atomic counters, without any locks, so
+ * durations can be recorded from several threads while another thread takes
+ * a {@link LatencyHistogram#snapshot snapshot}.
+ */
+public class LatencyHistogram {
+
+    /**
+     * The number of buckets each power of two is split into.
+     */
+    static protected final int SubBits = 3;
+    static protected final int SubBuckets = 1 << SubBits;
+    /**
+     * The number of buckets, enough to hold the largest positive long.
+     */
+    static protected final int Buckets = (63 - SubBits + 1) * SubBuckets;
+
+    /**
+     * The number of durations in each bucket.
+     */
+    private final AtomicLongArray Counts = new AtomicLongArray(Buckets);
+    /**
+     * The sum and the largest of the recorded durations.
+     */
+    private final AtomicLong Total = new AtomicLong();
+    private final AtomicLong Max = new AtomicLong();
+
+    /**
+     * The counts of a histogram at one point in time.
+     */
+    static protected class Snapshot {
+
+        /**
+         * The number of durations in each bucket.
+         */
+        private final long[] Counts;
+        /**
+         * The number of durations recorded, their sum and the largest.
+         */
+        protected final long Count;
+        protected final long Total;
+        protected final long Max;
+
+        private Snapshot(long[] Counts, long Total, long Max) {
+            this.Counts = Counts;
+            long count = 0;
+            for (long bucket : Counts) {
+                count += bucket;
+            }
+            this.Count = count;
+            this.Total = Total;
+            this.Max = Max;
+        }
+
+        /**
+         * Finds the average of the recorded durations.
+         *
+         * @return The average, or 0 if nothing was recorded.
+         */
+        protected double mean() {
+            return Count == 0 ? 0 : (double) Total / Count;
+        }
+
+        /**
+         * Finds a percentile of the recorded durations. The result is the top
+         * of the bucket holding the percentile, so it is never less than the
+         * true value.
+         *
+         * @param percent The percentile, from 0 to 100.
+         * @return The duration, or 0 if nothing was recorded.
+         */
+        protected long percentile(double percent) {
+            long rank = Math.max(1, (long) Math.ceil(percent / 100 * Count));
+            long seen = 0;
+            for (int bucket = 0; bucket < Counts.length; bucket++) {
+                seen += Counts[bucket];
+                if (seen >= rank) {
+                    return Math.min(Max, upperBoundOf(bucket));
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Adds a duration to the histogram. Negative durations are counted as 0.
+     *
+     * @param nanos The duration in nanoseconds.
+     */
+    protected void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        Counts.incrementAndGet(bucketOf(nanos));
+        Total.addAndGet(nanos);
+        if (nanos > Max.get()) {
+            Max.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    /**
+     * Copies the current counts. Durations recorded while the copy is made
+     * may only be partly included.
+     *
+     * @return The copy.
+     */
+    protected Snapshot snapshot() {
+        long[] counts = new long[Buckets];
+        for (int bucket = 0; bucket < Buckets; bucket++) {
+            counts[bucket] = Counts.get(bucket);
+        }
+        return new Snapshot(counts, Total.get(), Max.get());
+    }
+
+    /**
+     * Removes every recorded duration.
+     */
+    protected void reset() {
+        for (int bucket = 0; bucket < Buckets; bucket++) {
+            Counts.set(bucket, 0);
+        }
+        Total.set(0);
+        Max.set(0);
+    }
+
+    /**
+     * Finds the bucket holding a duration.
+     *
+     * @param nanos The duration, which must not be negative.
+     * @return The bucket.
+     */
+    static protected int bucketOf(long nanos) {
+        if (nanos < SubBuckets) {
+            return (int) nanos;
+        }
+        // The highest bit chooses the power of two, and the bits below it the bucket within it.
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        return (exponent - SubBits + 1) * SubBuckets + (int) ((nanos >>> (exponent - SubBits)) & (SubBuckets - 1));
+    }
+
+    /**
+     * Finds the largest duration held by a bucket.
+     *
+     * @param bucket The bucket.
+     * @return The duration in nanoseconds.
+     */
+    static protected long upperBoundOf(int bucket) {
+        if (bucket < SubBuckets) {
+            return bucket;
+        }
+        int exponent = bucket / SubBuckets + SubBits - 1;
+        long lower = (long) (SubBuckets + bucket % SubBuckets) << (exponent - SubBits);
+        return lower + (1L << (exponent - SubBits)) - 1;
+    }
+}
@@ -0,0 +1,511 @@
+package AnimationProcessor;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Draws the shapes that never change from images rendered once, so each
+ * repaint only draws the shapes changed by effects.
+ * <p>
+ * A shape is static if no effect changes it after it first appears, and
+ * animated otherwise. Most shapes start hidden and are shown by an effect, so
+ * effects on or before the frame a shape is first shown do not make it
+ * animated. Shapes with move or fade effects are always animated. The shapes
+ * are drawn in the order of the {@link AnimationSession#ShapeList}, so a
+ * static shape drawn over an animated shape must stay above it. To keep this
+ * order exactly, static shapes are grouped into runs of shapes that are next
+ * to each other in the list, and each of the largest runs is drawn into its
+ * own transparent layer. The layers are then drawn between the animated
+ * shapes, in the same position as the shapes they hold.
+ * <p>
+ * Animated shapes that never pass under a later shape are first moved to the
+ * top of the order, as drawing them last does not change the image. This
+ * joins the static runs on either side of them, so most scenes need only one
+ * or two layers.
+ * <p>
+ * The shapes held by a layer stay in the {@link SpatialIndex}, so they are
+ * still found by hit tests and queries, and are skipped when painting, as
+ * their layer draws them. The layers are drawn again only if the size of the
+ * window changes, an effect changes a shape they hold, such as by showing
+ * it, or {@link LayerCache#invalidate invalidate} is called.
+ */
+public class LayerCache {
+
+    /**
+     * The largest number of layers kept. Each layer is an image the size of
+     * the window.
+     */
+    static protected final int MaxLayers = 4;
+    /**
+     * The smallest number of shapes worth drawing into a layer. Smaller runs
+     * are drawn directly, as doing so is faster than drawing an image.
+     */
+    static protected final int MinLayerShapes = 32;
+
+    /**
+     * The layer holding each shape, or -1 if the shape is drawn directly.
+     */
+    private final int[] LayerOf;
+    /**
+     * Whether or not each shape has been moved to the top of the order.
+     */
+    private final boolean[] OnTop;
+    /**
+     * Whether or not each shape is animated.
+     */
+    private final boolean[] Animated;
+    /**
+     * The area each shape covers across every position it jumps or moves to,
+     * as the left, top, right and bottom edge, stored four values per shape.
+     */
+    private final int[] Areas;
+    /**
+     * Whether or not each shape is of a known type, and so has an area.
+     */
+    private final boolean[] Known;
+    /**
+     * The shapes moved to the top of the order that are drawn, in ascending
+     * order.
+     */
+    private int[] Tops = new int[0];
+    /**
+     * The frames on which an effect changes a shape held by a layer, in
+     * ascending order.
+     */
+    private int[] ChangeFrames;
+    /**
+     * The index of the first shape, and one past the last shape, of each
+     * layer. Layers are sorted by their first shape.
+     */
+    private final int[] LayerStart;
+    private final int[] LayerEnd;
+    /**
+     * The rendered image of each layer.
+     */
+    private final BufferedImage[] Images;
+    /**
+     * Whether or not the images match the shapes they hold.
+     */
+    private boolean Valid;
+
+    /**
+     * Sorts the shapes into layers. The shapes must be in the state of frame
+     * 0.
+     *
+     * @param Shapes The shapes of the animation, in the order they are drawn.
+     * @param Events The effects of the shapes.
+     */
+    LayerCache(List<Shape> Shapes, Timeline Events) {
+        int size = Shapes.size();
+        LayerOf = new int[size];
+        OnTop = new boolean[size];
+
+        // Finds the area of each shape once, as it is needed for every check of the order.
+        Areas = new int[size * 4];
+        Known = new boolean[size];
+        int[] area = new int[4];
+        for (int shape = 0; shape < size; shape++) {
+            Known[shape] = areaOf(Shapes.get(shape), area);
+            System.arraycopy(area, 0, Areas, shape * 4, 4);
+        }
+
+        int[] appear = appearances(Shapes, Events);
+        boolean[] animated = animated(Events, appear);
+        Animated = animated;
+        liftAnimatedShapes(animated, appear);
+
+        // Finds each run of static shapes, skipping over the shapes moved to the top.
+        List<int[]> runs = new ArrayList<>();
+        for (int shape = 0; shape < size; shape++) {
+            if (OnTop[shape] || animated[shape]) {
+                continue;
+            }
+            int start = shape;
+            int count = 0;
+            for (; shape < size && (OnTop[shape] || !animated[shape]); shape++) {
+                if (!OnTop[shape] && Known[shape] && appear[shape] != Integer.MAX_VALUE) {
+                    count++;
+                }
+            }
+            runs.add(new int[]{start, shape, count});
+        }
+
+        // Keeps the largest runs, then puts them back in drawing order.
+        runs.sort((a, b) -> Integer.compare(b[2], a[2]));
+        runs = new ArrayList<>(runs.subList(0, Math.min(MaxLayers, runs.size())));
+        runs.removeIf(run -> run[2] < MinLayerShapes);
+        runs.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+        Arrays.fill(LayerOf, -1);
+        LayerStart = new int[runs.size()];
+        LayerEnd = new int[runs.size()];
+        Images = new BufferedImage[runs.size()];
+        for (int layer = 0; layer < runs.size(); layer++) {
+            LayerStart[layer] = runs.get(layer)[0];
+            LayerEnd[layer] = runs.get(layer)[1];
+            for (int shape = LayerStart[layer]; shape < LayerEnd[layer]; shape++) {
+                if (!OnTop[shape]) {
+                    LayerOf[shape] = layer;
+                }
+            }
+        }
+
+        // Finds the frames the layers change on. The effects of the timeline are already sorted by frame.
+        int[] frames = new int[Events.Effects.length];
+        int count = 0;
+        for (int i = 0; i < Events.Effects.length; i++) {
+            Effect CurrEffect = Events.Effects[i];
+            if (LayerOf[Events.ShapeIndex[i]] >= 0 && PackedScene.effectKindOf(CurrEffect.type) != PackedScene.OTHER
+                    && (count == 0 || frames[count - 1] != CurrEffect.start)) {
+                frames[count++] = CurrEffect.start;
+            }
+        }
+        ChangeFrames = Arrays.copyOf(frames, count);
+    }
+
+    /**
+     * Finds the frame each shape first appears on: frame 0 if it is visible
+     * then, or else the first frame it is shown on.
+     *
+     * @param Shapes The shapes, in the state of frame 0.
+     * @param Events The effects of the shapes.
+     * @return The frame each shape first appears on, or
+     * {@link Integer#MAX_VALUE} if it is never shown.
+     */
+    static private int[] appearances(List<Shape> Shapes, Timeline Events) {
+        int[] appear = new int[Shapes.size()];
+        for (int shape = 0; shape < appear.length; shape++) {
+            appear[shape] = Shapes.get(shape).visible ? 0 : Integer.MAX_VALUE;
+        }
+        for (int i = 0; i < Events.Effects.length; i++) {
+            if (PackedScene.effectKindOf(Events.Effects[i].type) == PackedScene.SHOW) {
+                int shape = Events.ShapeIndex[i];
+                appear[shape] = Math.min(appear[shape], Events.Effects[i].start);
+            }
+        }
+        return appear;
+    }
+
+    /**
+     * Finds the shapes that are animated: those changed by an effect after
+     * the frame they first appear on, and those that move or fade.
+     *
+     * @param Events The effects of the shapes.
+     * @param appear The frame each shape first appears on.
+     * @return Whether or not each shape is animated.
+     */
+    static private boolean[] animated(Timeline Events, int[] appear) {
+        boolean[] animated = new boolean[appear.length];
+        for (int i = 0; i < Events.Effects.length; i++) {
+            int shape = Events.ShapeIndex[i];
+            if (PackedScene.effectKindOf(Events.Effects[i].type) != PackedScene.OTHER && Events.Effects[i].start > appear[shape]) {
+                animated[shape] = true;
+            }
+        }
+        for (int shape : Events.Tweened.ShapeIndex) {
+            animated[shape] = true;
+        }
+        return animated;
+    }
+
+    /**
+     * Finds the area a shape covers across every position it jumps or moves
+     * to.
+     *
+     * @param CurrShape The shape, in the state of frame 0. It is not changed.
+     * @param area Receives the left, top, right and bottom edges of the area.
+     * @return False if the shape is of an unknown type, and so never drawn.
+     */
+    static private boolean areaOf(Shape CurrShape, int[] area) {
+        CurrShape = CurrShape.copy();
+        if (!DirtyRegion.boundsOf(CurrShape, area)) {
+            return false;
+        }
+        int[] bounds = new int[4];
+        for (Effect CurrEffect : CurrShape.EffectList) {
+            // A move passes between the positions before and after it, so it is covered by the area of both.
+            byte kind = PackedScene.effectKindOf(CurrEffect.type);
+            if (kind == PackedScene.JUMP || kind == PackedScene.MOVE) {
+                AnimationPlayer.applyEffect(CurrShape, CurrEffect);
+                DirtyRegion.boundsOf(CurrShape, bounds);
+                area[0] = Math.min(area[0], bounds[0]);
+                area[1] = Math.min(area[1], bounds[1]);
+                area[2] = Math.max(area[2], bounds[2]);
+                area[3] = Math.max(area[3], bounds[3]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves animated shapes to the top of the order where this does not
+     * change the image. An animated shape can be moved if nothing drawn after
+     * it overlaps any position it moves to.
+     *
+     * @param animated Whether or not each shape is animated.
+     * @param appear The frame each shape first appears on.
+     */
+    private void liftAnimatedShapes(boolean[] animated, int[] appear) {
+        // Indexes the area of every static shape that is ever drawn, as most are still hidden on frame 0.
+        boolean[] drawn = new boolean[animated.length];
+        for (int shape = 0; shape < animated.length; shape++) {
+            drawn[shape] = !animated[shape] && Known[shape] && appear[shape] != Integer.MAX_VALUE;
+        }
+        SpatialIndex statics = new SpatialIndex(Areas, drawn);
+
+        // Works from the last animated shape to the first, so the shapes that stay in place are known.
+        List<int[]> staying = new ArrayList<>();
+        int tops = 0;
+        Tops = new int[animated.length];
+        for (int shape = animated.length - 1; shape >= 0; shape--) {
+            if (!animated[shape]) {
+                continue;
+            }
+            // Shapes of unknown types are never drawn, so they can be placed anywhere.
+            if (!Known[shape]) {
+                OnTop[shape] = true;
+                continue;
+            }
+            int[] area = Arrays.copyOfRange(Areas, shape * 4, shape * 4 + 4);
+            // Checks for a later static shape over the area.
+            int count = statics.query(area[0], area[1], area[2], area[3]);
+            boolean covered = count > 0 && statics.Results[count - 1] > shape;
+            // Checks for a later animated shape that stays in place and can pass over the area.
+            for (int k = 0; k < staying.size() && !covered; k++) {
+                covered = overlaps(area, staying.get(k), 0);
+            }
+            if (covered) {
+                staying.add(area);
+            } else {
+                OnTop[shape] = true;
+                Tops[tops++] = shape;
+            }
+        }
+
+        // Keeps the shapes moved to the top in ascending order, so replaced shapes can be checked against them.
+        Tops = Arrays.copyOf(Tops, tops);
+        Arrays.sort(Tops);
+    }
+
+    /**
+     * Checks whether shapes replaced by new shapes, such as by a
+     * {@link HotReloader}, can keep the place of the shapes they replace, so
+     * the layers only need to be drawn again. This is so if each new shape is
+     * animated only if the shape it replaces was, a new shape in the order of
+     * the list never passes under an earlier shape moved to the top, and a
+     * new shape moved to the top never passes under a later shape that was
+     * not.
+     * <p>
+     * The area of each new shape is found once, and compared with the stored
+     * areas of the other shapes.
+     *
+     * @param Shapes The shapes, with the new shapes in place of those
+     * replaced, in the state of frame 0.
+     * @param Events The effects of the shapes.
+     * @param changed The index of each replaced shape.
+     * @return True if every new shape can keep its place.
+     */
+    protected boolean canReplace(List<Shape> Shapes, Timeline Events, int[] changed) {
+        // Error Checking
+        // The layers only hold places for as many shapes as they were built from.
+        if (Shapes.size() != Animated.length) {
+            return false;
+        }
+        boolean[] animated = animated(Events, appearances(Shapes, Events));
+        // Finds the area of each new shape, keeping the stored areas of the others.
+        int[] areas = Areas.clone();
+        boolean[] known = Known.clone();
+        int[] area = new int[4];
+        for (int shape : changed) {
+            if (animated[shape] != Animated[shape]) {
+                return false;
+            }
+            known[shape] = areaOf(Shapes.get(shape), area);
+            System.arraycopy(area, 0, areas, shape * 4, 4);
+        }
+
+        for (int shape : changed) {
+            if (!known[shape]) {
+                continue;
+            }
+            System.arraycopy(areas, shape * 4, area, 0, 4);
+            if (OnTop[shape]) {
+                for (int later = shape + 1; later < known.length; later++) {
+                    if (!OnTop[later] && known[later] && overlaps(area, areas, later * 4)) {
+                        return false;
+                    }
+                }
+                continue;
+            }
+            for (int i = 0; i < Tops.length && Tops[i] < shape; i++) {
+                if (known[Tops[i]] && overlaps(area, areas, Tops[i] * 4)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether two areas overlap.
+     *
+     * @param area The left, top, right and bottom edges of the first area.
+     * @param areas Holds the edges of the second area.
+     * @param at The position of the left edge of the second area.
+     * @return True if the areas overlap.
+     */
+    static private boolean overlaps(int[] area, int[] areas, int at) {
+        return areas[at] <= area[2] && areas[at + 2] >= area[0] && areas[at + 1] <= area[3] && areas[at + 3] >= area[1];
+    }
+
+    /**
+     * Updates the layers after a shape has been replaced by a new shape that
+     * can keep its place, as found by {@link LayerCache#canReplace
+     * canReplace}. The layers are drawn again only if the shape is held by
+     * one, and the frames its effects occur on then change the layers as
+     * well.
+     *
+     * @param shape The index of the shape.
+     * @param CurrShape The new shape, in the state of frame 0.
+     */
+    protected void replaced(int shape, Shape CurrShape) {
+        int[] area = new int[4];
+        Known[shape] = areaOf(CurrShape, area);
+        System.arraycopy(area, 0, Areas, shape * 4, 4);
+        if (LayerOf[shape] < 0) {
+            return;
+        }
+        Valid = false;
+        for (Effect CurrEffect : CurrShape.EffectList) {
+            if (CurrEffect.start > 0 && PackedScene.effectKindOf(CurrEffect.type) != PackedScene.OTHER) {
+                int at = Arrays.binarySearch(ChangeFrames, CurrEffect.start);
+                if (at < 0) {
+                    // Inserts the frame, keeping the frames sorted.
+                    at = -at - 1;
+                    int[] frames = new int[ChangeFrames.length + 1];
+                    System.arraycopy(ChangeFrames, 0, frames, 0, at);
+                    frames[at] = CurrEffect.start;
+                    System.arraycopy(ChangeFrames, at, frames, at + 1, ChangeFrames.length - at);
+                    ChangeFrames = frames;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the layers as needing to be drawn again if the effects of a frame
+     * changed a shape held by a layer, such as by showing it. This must be
+     * called each time the effects of a frame are applied.
+     *
+     * @param frame The frame whose effects were applied.
+     */
+    protected void applied(int frame) {
+        if (Valid && Arrays.binarySearch(ChangeFrames, frame) >= 0) {
+            Valid = false;
+        }
+    }
+
+    /**
+     * Finds the number of layers the static shapes are drawn into.
+     *
+     * @return The number of layers.
+     */
+    protected int layers() {
+        return Images.length;
+    }
+
+    /**
+     * Marks the layers as needing to be drawn again. This must be called if a
+     * cached shape is changed by anything other than an effect.
+     */
+    protected void invalidate() {
+        Valid = false;
+    }
+
+    /**
+     * Draws the shapes that overlap an area, using the layers for the static
+     * shapes they hold. The layers are drawn again first if they are out of
+     * date.
+     *
+     * @param g The graphics object to draw on.
+     * @param Display The shapes compiled into draw commands.
+     * @param Index The spatial index of the shapes.
+     * @param area The area to draw, usually the clip of the graphics object.
+     * @param Width The width of the window.
+     * @param Height The height of the window.
+     */
+    protected void draw(Graphics2D g, DisplayList Display, SpatialIndex Index, Rectangle area, int Width, int Height) {
+        render(Display, Width, Height);
+        int count = Index.query(area.x, area.y, area.x + area.width, area.y + area.height);
+        int[] found = Index.Results;
+        // Draws the shapes in order, drawing each layer in the place of its first shape.
+        int layer = 0;
+        for (int i = 0; i < count; i++) {
+            int shape = found[i];
+            if (OnTop[shape]) {
+                continue;
+            }
+            for (; layer < Images.length && LayerStart[layer] <= shape; layer++) {
+                g.drawImage(Images[layer], 0, 0, null);
+            }
+            // Shapes held by a layer were drawn with it.
+            if (LayerOf[shape] >= 0) {
+                continue;
+            }
+            Display.draw(g, shape);
+        }
+        for (; layer < Images.length; layer++) {
+            g.drawImage(Images[layer], 0, 0, null);
+        }
+        // Draws the shapes moved to the top of the order.
+        for (int i = 0; i < count; i++) {
+            if (OnTop[found[i]]) {
+                Display.draw(g, found[i]);
+            }
+        }
+    }
+
+    /**
+     * Draws the shapes of each layer into its image, if the images are out of
+     * date.
+     *
+     * @param Display The shapes compiled into draw commands.
+     * @param Width The width of the window.
+     * @param Height The height of the window.
+     */
+    private void render(DisplayList Display, int Width, int Height) {
+        // Images cannot be empty, so a window with no area still uses a single pixel.
+        Width = Math.max(1, Width);
+        Height = Math.max(1, Height);
+        if (Images.length == 0 || (Valid && Images[0].getWidth() == Width && Images[0].getHeight() == Height)) {
+            return;
+        }
+        for (int layer = 0; layer < Images.length; layer++) {
+            BufferedImage image = Images[layer];
+            if (image == null || image.getWidth() != Width || image.getHeight() != Height) {
+                image = new BufferedImage(Width, Height, BufferedImage.TYPE_INT_ARGB_PRE);
+                Images[layer] = image;
+            }
+            Graphics2D g = image.createGraphics();
+            try {
+                // Clears the previous contents of the layer to transparent.
+                g.setComposite(AlphaComposite.Clear);
+                g.fillRect(0, 0, image.getWidth(), image.getHeight());
+                g.setComposite(AlphaComposite.SrcOver);
+                for (int shape = LayerStart[layer]; shape < LayerEnd[layer]; shape++) {
+                    if (LayerOf[shape] == layer) {
+                        Display.draw(g, shape);
+                    }
+                }
+            } finally {
+                g.dispose();
+            }
+        }
+        Valid = true;
+    }
+}
@@ -0,0 +1,301 @@
+package AnimationProcessor;
+
+import java.awt.Graphics2D;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact store of the shapes and effects of an animation.
+ * <p>
+ * Rather than one {@link Shape} object per shape, each field is kept in its
+ * own array of primitives, indexed by the position of the shape in the
+ * {@link AnimationSession#ShapeList}. Effects are kept in a similar table,
+ * sorted by frame. This uses much less memory than the objects, and the loops
+ * that apply effects and draw shapes read memory in order.
+ * <p>
+ * The scene can apply effects and draw itself without any {@link Shape} or
+ * {@link Effect} objects, so they can be discarded once the scene is built.
+ */
+public class PackedScene {
+
+    /**
+     * The kinds of shape. Shapes of any other type are not drawn.
+     */
+    static protected final byte OTHER = 0;
+    static protected final byte CIRCLE = 1;
+    static protected final byte RECT = 2;
+    static protected final byte LINE = 3;
+
+    /**
+     * The kinds of effect.
+     */
+    static protected final byte HIDE = 1;
+    static protected final byte SHOW = 2;
+    static protected final byte JUMP = 3;
+    static protected final byte CHANGECOLOR = 4;
+    static protected final byte MOVE = 5;
+    static protected final byte FADE = 6;
+
+    /**
+     * The number of shapes in the scene.
+     */
+    protected final int Size;
+    /**
+     * The kind of each shape.
+     */
+    protected final byte[] kind;
+    /**
+     * Whether or not each shape is visible.
+     */
+    protected final boolean[] visible;
+    /**
+     * The position of each shape.
+     */
+    protected final int[] x;
+    protected final int[] y;
+    /**
+     * The endpoint of each line.
+     */
+    protected final int[] endX;
+    protected final int[] endY;
+    /**
+     * The radius of each circle, and the length and width of each rectangle.
+     */
+    protected final int[] r;
+    protected final int[] length;
+    protected final int[] width;
+    /**
+     * The border thickness of each shape.
+     */
+    protected final int[] border;
+    /**
+     * The color and border color of each shape, as packed ARGB values.
+     */
+    protected final int[] argb;
+    protected final int[] borderArgb;
+
+    /**
+     * The frames on which at least one effect occurs, sorted in ascending
+     * order, and the index of the first effect of each frame. The effects of
+     * {@code EventFrames[i]} span {@code BucketStart[i]} up to (but not
+     * including) {@code BucketStart[i + 1]}.
+     */
+    protected final int[] EventFrames;
+    protected final int[] BucketStart;
+    /**
+     * The shape, kind, coordinates and color of each effect.
+     */
+    protected final int[] effectShape;
+    protected final byte[] effectKind;
+    protected final int[] effectX;
+    protected final int[] effectY;
+    protected final int[] effectArgb;
+    /**
+     * The move and fade effects, which are applied to the arrays after the
+     * instant effects of each frame.
+     */
+    private final Tweens Tweened;
+
+    /**
+     * The colors used when drawing.
+     */
+    private final ColorCache Colors = new ColorCache();
+
+    /**
+     * Packs the given shapes and their effects.
+     *
+     * @param Shapes The shapes of the animation, in their current state.
+     * @param Events The effects of the shapes, as indexed by
+     * {@link Timeline#build build}.
+     */
+    PackedScene(List<Shape> Shapes, Timeline Events) {
+        Size = Shapes.size();
+        kind = new byte[Size];
+        visible = new boolean[Size];
+        x = new int[Size];
+        y = new int[Size];
+        endX = new int[Size];
+        endY = new int[Size];
+        r = new int[Size];
+        length = new int[Size];
+        width = new int[Size];
+        border = new int[Size];
+        argb = new int[Size];
+        borderArgb = new int[Size];
+        for (int i = 0; i < Size; i++) {
+            Shape CurrShape = Shapes.get(i);
+            kind[i] = kindOf(CurrShape.type);
+            visible[i] = CurrShape.visible;
+            x[i] = CurrShape.x;
+            y[i] = CurrShape.y;
+            endX[i] = CurrShape.endX;
+            endY[i] = CurrShape.endY;
+            r[i] = CurrShape.r;
+            length[i] = CurrShape.length;
+            width[i] = CurrShape.width;
+            border[i] = CurrShape.border;
+            argb[i] = CurrShape.color.getRGB();
+            borderArgb[i] = CurrShape.borderColor.getRGB();
+        }
+
+        // Copies the timeline, leaving out effects of unknown types as they do nothing.
+        int count = Events.Effects.length;
+        effectShape = new int[count];
+        effectKind = new byte[count];
+        effectX = new int[count];
+        effectY = new int[count];
+        effectArgb = new int[count];
+        int[] frames = new int[Events.EventFrames.length];
+        int[] starts = new int[Events.EventFrames.length + 1];
+        int buckets = 0;
+        int packed = 0;
+        for (int bucket = 0; bucket < Events.EventFrames.length; bucket++) {
+            int first = packed;
+            for (int i = Events.BucketStart[bucket]; i < Events.BucketStart[bucket + 1]; i++) {
+                Effect CurrEffect = Events.Effects[i];
+                byte op = effectKindOf(CurrEffect.type);
+                if (op != OTHER) {
+                    effectShape[packed] = Events.ShapeIndex[i];
+                    effectKind[packed] = op;
+                    effectX[packed] = CurrEffect.x;
+                    effectY[packed] = CurrEffect.y;
+                    effectArgb[packed] = CurrEffect.newColor.getRGB();
+                    packed++;
+                }
+            }
+            // Only keeps frames that still have effects.
+            if (packed > first) {
+                frames[buckets] = Events.EventFrames[bucket];
+                starts[buckets] = first;
+                buckets++;
+            }
+        }
+        starts[buckets] = packed;
+        EventFrames = Arrays.copyOf(frames, buckets);
+        BucketStart = Arrays.copyOf(starts, buckets + 1);
+        Tweened = Events.Tweened;
+    }
+
+    /**
+     * Finds the kind of a shape from its type.
+     *
+     * @param type The shapes type ("Circle", "Rect", "Line").
+     * @return The kind of the shape.
+     */
+    static protected byte kindOf(String type) {
+        switch (type.toLowerCase()) {
+            case "circle":
+                return CIRCLE;
+            case "rectangle":
+            case "rect":
+                return RECT;
+            case "line":
+                return LINE;
+            default:
+                return OTHER;
+        }
+    }
+
+    /**
+     * Finds the kind of an effect from its type.
+     *
+     * @param type The effect type ("Show", "Hide", "Jump", "ChangeColor",
+     * "Move", "Fade").
+     * @return The kind of the effect, or {@link PackedScene#OTHER} if the type
+     * is not recognized.
+     */
+    static protected byte effectKindOf(String type) {
+        switch (type.toLowerCase()) {
+            case "hide":
+                return HIDE;
+            case "show":
+                return SHOW;
+            case "jump":
+                return JUMP;
+            case "changecolor":
+                return CHANGECOLOR;
+            case "move":
+                return MOVE;
+            case "fade":
+                return FADE;
+            default:
+                return OTHER;
+        }
+    }
+
+    /**
+     * Applies every effect that occurs on the given frame. This has the same
+     * result as {@link AnimationPlayer#applyEffect applyEffect} on the
+     * matching shapes.
+     *
+     * @param frame The frame whose effects should be applied.
+     */
+    protected void applyFrame(int frame) {
+        int bucket = Arrays.binarySearch(EventFrames, frame);
+        for (int i = bucket < 0 ? 0 : BucketStart[bucket]; bucket >= 0 && i < BucketStart[bucket + 1]; i++) {
+            int shape = effectShape[i];
+            switch (effectKind[i]) {
+                case HIDE:
+                    visible[shape] = false;
+                    break;
+                case SHOW:
+                    visible[shape] = true;
+                    break;
+                case JUMP:
+                    // Lines keep their length and direction by moving their endpoint the same distance.
+                    if (kind[shape] == LINE) {
+                        endX[shape] += effectX[i] - x[shape];
+                        endY[shape] += effectY[i] - y[shape];
+                    }
+                    x[shape] = effectX[i];
+                    y[shape] = effectY[i];
+                    break;
+                case CHANGECOLOR:
+                    argb[shape] = effectArgb[i];
+                    break;
+            }
+        }
+        Tweened.apply(frame, this);
+    }
+
+    /**
+     * Draws every visible shape, in order, in the same way as
+     * {@link JComp#drawShape drawShape}.
+     *
+     * @param g The graphics object to draw on.
+     */
+    protected void draw(Graphics2D g) {
+        for (int i = 0; i < Size; i++) {
+            if (!visible[i]) {
+                continue;
+            }
+            switch (kind[i]) {
+                case CIRCLE:
+                    // The coordinates of a circle are its center, so the top left corner is found by subtracting the radius.
+                    g.setColor(Colors.get(argb[i]));
+                    g.setStroke(JComp.ThinStroke);
+                    g.fillOval(x[i] - r[i], y[i] - r[i], r[i] * 2, r[i] * 2);
+                    g.setColor(Colors.get(borderArgb[i]));
+                    g.setStroke(JComp.strokeOf(border[i]));
+                    g.drawOval(x[i] - r[i], y[i] - r[i], r[i] * 2, r[i] * 2);
+                    break;
+                case RECT:
+                    g.setColor(Colors.get(argb[i]));
+                    g.fillRect(x[i], y[i], length[i], width[i]);
+                    g.setColor(Colors.get(borderArgb[i]));
+                    g.setStroke(JComp.strokeOf(border[i]));
+                    g.drawRect(x[i], y[i], length[i], width[i]);
+                    break;
+                case LINE:
+                    // The border is a thicker line drawn underneath the line itself.
+                    g.setColor(Colors.get(borderArgb[i]));
+                    g.setStroke(JComp.strokeOf(border[i]));
+                    g.drawLine(x[i], y[i], endX[i], endY[i]);
+                    g.setColor(Colors.get(argb[i]));
+                    g.setStroke(JComp.ThinStroke);
+                    g.drawLine(x[i], y[i], endX[i], endY[i]);
+                    break;
+            }
+        }
+    }
+}
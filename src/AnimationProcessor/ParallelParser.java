@@ -0,0 +1,172 @@
+package AnimationProcessor;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Reads the shapes of a large input file on several threads at once.
+ * <p>
+ * The shapes after the header are split into blocks of roughly equal size,
+ * each starting at a blank line, which ends the shape before it. Each block
+ * is read by its own {@link SceneLexer} on a {@link ForkJoinPool}, and the
+ * shapes of the blocks are joined in the order of the file, so the
+ * {@link AnimationSession#ShapeList}, and therefore the order the shapes are
+ * drawn in, is the same as when the file is read on one thread.
+ * <p>
+ * A blank line right after a shape or effect type does not end a shape, so
+ * blocks are only started at blank lines after a line holding a number,
+ * which is usually a line of information. If a block still turns out to have
+ * ended in the blank lines after a type, the whole file is read again on one
+ * thread, so the shapes are always the same as if it had been read in order.
+ */
+public class ParallelParser {
+
+    /**
+     * The smallest block read on its own thread. Smaller files are read on
+     * the calling thread, as starting the threads would take longer.
+     */
+    static protected final int MinBlockSize = 1 << 20;
+    /**
+     * The number of blocks per thread, so threads that finish early can take
+     * the blocks of slower ones.
+     */
+    static protected final int BlocksPerThread = 4;
+
+    /**
+     * The threads the blocks are read on.
+     */
+    private final ForkJoinPool Pool;
+
+    /**
+     * Defines a parser reading blocks on the given threads.
+     *
+     * @param Pool The threads the blocks are read on.
+     */
+    ParallelParser(ForkJoinPool Pool) {
+        this.Pool = Pool;
+    }
+
+    /**
+     * The shapes read from one block.
+     */
+    static protected class Block {
+
+        protected final ArrayList<Shape> Shapes = new ArrayList<>();
+        /**
+         * Whether the block ended between two shapes, as it was meant to.
+         */
+        protected boolean Whole;
+    }
+
+    /**
+     * Reads every shape following the header of an input file.
+     *
+     * @param file The contents of the input file.
+     * @param start The position after the header.
+     * @param ShapeNum The number of shapes given in the input file.
+     * @return The shapes, in the order they appear in the file.
+     */
+    protected List<Shape> readShapes(ByteBuffer file, int start, int ShapeNum) {
+        int limit = file.limit();
+        // Error Checking
+        // A file indicating there are no shapes has none, as when it is read on one thread.
+        if (ShapeNum <= 0 || start >= limit) {
+            return new ArrayList<>();
+        }
+        int blocks = (int) Math.min((long) Pool.getParallelism() * BlocksPerThread, (limit - start) / MinBlockSize);
+        if (blocks <= 1) {
+            return readBlock(file, start, limit).Shapes;
+        }
+
+        // Finds the start of each block, skipping any that would be empty.
+        int[] bounds = new int[blocks + 1];
+        int count = 0;
+        bounds[0] = start;
+        for (int i = 1; i < blocks; i++) {
+            int bound = nextBlock(file, start + (int) ((long) (limit - start) * i / blocks), limit);
+            if (bound > bounds[count] && bound < limit) {
+                bounds[++count] = bound;
+            }
+        }
+        bounds[++count] = limit;
+
+        // Reads the blocks on the pool, then joins them in order.
+        List<ForkJoinTask<Block>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int from = bounds[i];
+            int to = bounds[i + 1];
+            tasks.add(Pool.submit(() -> readBlock(file, from, to)));
+        }
+        ArrayList<Shape> Shapes = new ArrayList<>();
+        boolean whole = true;
+        for (int i = 0; i < count; i++) {
+            Block block = tasks.get(i).join();
+            // The last block ends with the file, so it does not matter how it ended.
+            whole &= block.Whole || i == count - 1;
+            Shapes.addAll(block.Shapes);
+        }
+        if (!whole) {
+            return readBlock(file, start, limit).Shapes;
+        }
+        return Shapes;
+    }
+
+    /**
+     * Reads the shapes in part of an input file.
+     *
+     * @param file The contents of the input file.
+     * @param from The position of the start of the block, which is the start
+     * of a line between two shapes.
+     * @param to The position of the end of the block.
+     * @return The shapes of the block.
+     */
+    static protected Block readBlock(ByteBuffer file, int from, int to) {
+        ByteBuffer part = file.duplicate();
+        part.limit(to).position(from);
+        SceneLexer lexer = new SceneLexer(part, false);
+        Block block = new Block();
+        FileLoader.readShapes(lexer, 1, block.Shapes::add);
+        block.Whole = lexer.endedBetweenShapes();
+        return block;
+    }
+
+    /**
+     * Finds the first blank line starting after a position whose previous
+     * line holds a digit.
+     *
+     * @param file The contents of the input file.
+     * @param from The position to search from.
+     * @param limit The position of the end of the file.
+     * @return The position of the start of the blank line, or the limit if
+     * there is none.
+     */
+    static protected int nextBlock(ByteBuffer file, int from, int limit) {
+        // Moves to the start of the next line.
+        int i = from;
+        while (i < limit && file.get(i) != '\n') {
+            i++;
+        }
+        i++;
+        boolean digit = false;
+        while (i < limit) {
+            // Checks the line for a digit, and whether it is blank. Carriage returns are ignored, as by the lexer.
+            int end = i;
+            boolean blank = true;
+            boolean digits = false;
+            for (; end < limit && file.get(end) != '\n'; end++) {
+                byte b = file.get(end);
+                blank &= b == '\r';
+                digits |= b >= '0' && b <= '9';
+            }
+            if (blank && digit) {
+                return i;
+            }
+            digit = digits;
+            i = end + 1;
+        }
+        return limit;
+    }
+}
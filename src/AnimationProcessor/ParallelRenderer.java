@@ -0,0 +1,159 @@
+package AnimationProcessor;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Draws the frames of an animation on several threads at once.
+ * <p>
+ * Effects always occur on fixed frames, so the state of the shapes at any
+ * frame can be calculated without drawing the frames before it. The frames
+ * are divided into chunks, and a {@link SceneSnapshot} is taken at the start
+ * of each chunk in a single pass over the {@link Timeline}. Each chunk is
+ * then drawn on a {@link ForkJoinPool} worker using its own copies of the
+ * shapes.
+ * <p>
+ * Frames are passed to the {@link FrameSink} from several threads and not
+ * in order, so the sink must be safe to use from several threads. Each frame
+ * keeps its frame number, so sinks such as the {@link ImageSequenceSink}
+ * still produce their output in order.
+ */
+public class ParallelRenderer {
+
+    /**
+     * The number of chunks given to each thread. Using several chunks per
+     * thread keeps threads busy when some chunks take longer than others.
+     */
+    static protected final int ChunksPerThread = 4;
+
+    /**
+     * The shapes being drawn, in the state of frame 0. These are not modified.
+     */
+    private final List<Shape> Shapes;
+    /**
+     * The effects applied to the shapes.
+     */
+    private final Timeline Events;
+    /**
+     * The number of frames to draw.
+     */
+    private final int Frames;
+    /**
+     * The pool the chunks are drawn on.
+     */
+    private final ForkJoinPool Pool;
+
+    /**
+     * The width of the drawn frames in pixels.
+     */
+    protected int Width = HeadlessRenderer.DefaultWidth;
+    /**
+     * The height of the drawn frames in pixels.
+     */
+    protected int Height = HeadlessRenderer.DefaultHeight;
+
+    /**
+     * Defines a renderer for the given animation.
+     *
+     * @param Shapes The shapes being drawn, in the state of frame 0.
+     * @param Events The effects applied to the shapes.
+     * @param Frames The number of frames to draw.
+     * @param Pool The pool the frames are drawn on.
+     */
+    ParallelRenderer(List<Shape> Shapes, Timeline Events, int Frames, ForkJoinPool Pool) {
+        this.Shapes = Shapes;
+        this.Events = Events;
+        this.Frames = Frames;
+        this.Pool = Pool;
+    }
+
+    /**
+     * Draws every frame of the animation and passes it to the sink. Frame
+     * {@code n} shows the same image as it would with the
+     * {@link HeadlessRenderer}.
+     *
+     * @param sink Where the frames are written. Must be safe to use from
+     * several threads.
+     * @return The number of frames drawn per second.
+     * @throws IOException If the sink could not write a frame.
+     */
+    protected double render(FrameSink sink) throws IOException {
+        long begin = System.nanoTime();
+
+        // Divides the frames into chunks of equal size.
+        int chunks = Math.max(1, Math.min(Frames, Pool.getParallelism() * ChunksPerThread));
+        int chunkSize = (Frames + chunks - 1) / Math.max(1, chunks);
+
+        // Takes a snapshot at the start of each chunk. The effects of each frame are only applied once,
+        // to a single set of copies that is moved forward from one chunk to the next.
+        List<Callable<Void>> tasks = new ArrayList<>();
+        ArrayList<Shape> state = SceneSnapshot.copyOf(Shapes);
+        for (int start = 0; start < Frames; start += chunkSize) {
+            Events.applyRange(start - chunkSize, start, state);
+            SceneSnapshot snapshot = new SceneSnapshot(state);
+            final int from = start;
+            final int to = Math.min(Frames, start + chunkSize);
+            tasks.add(() -> {
+                renderChunk(snapshot, from, to, sink);
+                return null;
+            });
+        }
+
+        // Draws the chunks on the pool and waits for all of them to finish.
+        try {
+            for (Future<Void> task : Pool.invokeAll(tasks)) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Rendering was interrupted.", e);
+        } catch (ExecutionException e) {
+            // Error Checking
+            // Passes on the error of the first chunk that failed.
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("A frame could not be rendered.", e.getCause());
+        }
+        // Converts the time taken into frames per second.
+        return Frames / Math.max(1e-9, (System.nanoTime() - begin) / 1e9);
+    }
+
+    /**
+     * Draws a range of frames, starting from the snapshot taken at the first
+     * frame of the range.
+     *
+     * @param snapshot The state of the shapes before the effects of the first
+     * frame are applied.
+     * @param from The first frame to draw.
+     * @param to The frame to stop at.
+     * @param sink Where the frames are written.
+     * @throws IOException If the sink could not write a frame.
+     */
+    private void renderChunk(SceneSnapshot snapshot, int from, int to, FrameSink sink) throws IOException {
+        // Each chunk works on its own copies of the shapes.
+        ArrayList<Shape> state = SceneSnapshot.copyOf(Shapes);
+        snapshot.restore(state);
+        DisplayList commands = new DisplayList(state);
+
+        BufferedImage image = new BufferedImage(Width, Height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            for (int frame = from; frame < to; frame++) {
+                // Applies the effects that occur on this frame.
+                Events.apply(frame, state);
+                HeadlessRenderer.drawFrame(g, commands, Width, Height);
+                sink.writeFrame(frame, image);
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package AnimationProcessor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * The events recorded by Java Flight Recorder during playback.
+ * <p>
+ * Events are only written while a recording with them enabled is running.
+ * Creating the first event starts up the recorder, which takes a noticeable
+ * time, so no events are created until a recording has been started, either
+ * from the command line or later with {@code jcmd <pid> JFR.start}. The
+ * methods below return or accept null in that case.
+ */
+public class PlaybackEvents {
+
+    /**
+     * The time taken to load an animation and prepare it for playback.
+     */
+    @Name("AnimationProcessor.Load")
+    @Label("Animation Load")
+    @Category("Animation Player")
+    static class Load extends Event {
+
+        @Label("Shapes")
+        int shapes;
+    }
+
+    /**
+     * A frame run by the {@link FrameScheduler}, from when it was due until
+     * its effects were applied and it was drawn or dropped.
+     */
+    @Name("AnimationProcessor.Frame")
+    @Label("Animation Frame")
+    @Category("Animation Player")
+    static class Frame extends Event {
+
+        @Label("Frame")
+        int frame;
+
+        @Label("Lateness")
+        @Description("How long after its deadline the frame was started")
+        @Timespan(Timespan.NANOSECONDS)
+        long lateness;
+
+        @Label("Dropped")
+        @Description("Whether the frame was not drawn because it was late")
+        boolean dropped;
+    }
+
+    /**
+     * The effects applied on a single frame.
+     */
+    @Name("AnimationProcessor.Effects")
+    @Label("Animation Effects")
+    @Category("Animation Player")
+    static class Effects extends Event {
+
+        @Label("Frame")
+        int frame;
+    }
+
+    /**
+     * Checks if Flight Recorder has been started, so events can be created.
+     *
+     * @return Whether events can be recorded.
+     */
+    static protected boolean recording() {
+        return FlightRecorder.isInitialized();
+    }
+
+    /**
+     * Starts timing the load of an animation.
+     *
+     * @return The event, or null if nothing is being recorded.
+     */
+    static protected Load beginLoad() {
+        if (!recording()) {
+            return null;
+        }
+        Load event = new Load();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Finishes timing the load of an animation, and commits the event if it
+     * is enabled.
+     *
+     * @param event The event returned by {@link PlaybackEvents#beginLoad}.
+     * @param shapes The number of shapes loaded.
+     */
+    static protected void endLoad(Load event, int shapes) {
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.shapes = shapes;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Starts timing a frame run by the {@link FrameScheduler}.
+     *
+     * @return The event, or null if nothing is being recorded.
+     */
+    static protected Frame beginFrame() {
+        if (!recording()) {
+            return null;
+        }
+        Frame event = new Frame();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Finishes timing a frame, and commits the event if it is enabled.
+     *
+     * @param event The event returned by {@link PlaybackEvents#beginFrame}.
+     * @param frame The number of the frame.
+     * @param lateness How long after its deadline the frame was started, in
+     * nanoseconds.
+     * @param dropped Whether the frame was not drawn because it was late.
+     */
+    static protected void endFrame(Frame event, int frame, long lateness, boolean dropped) {
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.frame = frame;
+                event.lateness = lateness;
+                event.dropped = dropped;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Starts timing the effects of a frame.
+     *
+     * @return The event, or null if nothing is being recorded.
+     */
+    static protected Effects beginEffects() {
+        if (!recording()) {
+            return null;
+        }
+        Effects event = new Effects();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Finishes timing the effects of a frame, and commits the event if it is
+     * enabled.
+     *
+     * @param event The event returned by {@link PlaybackEvents#beginEffects}.
+     * @param frame The frame whose effects were applied.
+     */
+    static protected void endEffects(Effects event, int frame) {
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.frame = frame;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package AnimationProcessor;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Records how long each part of playback takes, so stutters can be traced
+ * to loading, applying effects, painting, or frames starting late.
+ * <p>
+ * Durations are recorded in {@link LatencyHistogram histograms} and counts in
+ * {@link LongAdder adders}, neither of which use locks, so the thread running
+ * the animation and the swing thread painting it never wait on each other.
+ * The metrics can be read through JMX once {@link PlaybackMetrics#register}
+ * has been called, or copied with {@link PlaybackMetrics#snapshot}.
+ * <p>
+ * Metrics are off until they are {@link PlaybackMetrics#setEnabled enabled}.
+ * While they are off, {@link PlaybackMetrics#begin begin} returns 0 without
+ * reading the clock and nothing is recorded, so each instrumented point costs
+ * a single read of a volatile field.
+ */
+public class PlaybackMetrics implements PlaybackMetricsMBean {
+
+    /**
+     * The name the metrics are registered under in JMX, followed by the
+     * session they belong to.
+     */
+    static protected final String Name = "AnimationProcessor:type=PlaybackMetrics";
+
+    /**
+     * Whether or not metrics are being recorded.
+     */
+    private volatile boolean Enabled;
+
+    /**
+     * The time taken to load each animation.
+     */
+    protected final LatencyHistogram Loads = new LatencyHistogram();
+    /**
+     * The time taken to apply the effects of each event frame.
+     */
+    protected final LatencyHistogram Effects = new LatencyHistogram();
+    /**
+     * The time taken by each paint of the window.
+     */
+    protected final LatencyHistogram Paints = new LatencyHistogram();
+    /**
+     * How long after its deadline each frame was started.
+     */
+    protected final LatencyHistogram Lateness = new LatencyHistogram();
+    /**
+     * The number of frames stepped, and the number not drawn because they
+     * were late.
+     */
+    private final LongAdder Frames = new LongAdder();
+    private final LongAdder DroppedFrames = new LongAdder();
+    /**
+     * The time taken by the last animation loaded, in nanoseconds.
+     */
+    private volatile long LastLoad;
+
+    /**
+     * The metrics at one point in time.
+     */
+    static protected class Snapshot {
+
+        protected final long Frames;
+        protected final long DroppedFrames;
+        protected final LatencyHistogram.Snapshot Loads;
+        protected final LatencyHistogram.Snapshot Effects;
+        protected final LatencyHistogram.Snapshot Paints;
+        protected final LatencyHistogram.Snapshot Lateness;
+
+        private Snapshot(PlaybackMetrics Metrics) {
+            Frames = Metrics.Frames.sum();
+            DroppedFrames = Metrics.DroppedFrames.sum();
+            Loads = Metrics.Loads.snapshot();
+            Effects = Metrics.Effects.snapshot();
+            Paints = Metrics.Paints.snapshot();
+            Lateness = Metrics.Lateness.snapshot();
+        }
+    }
+
+    /**
+     * Starts timing a span.
+     *
+     * @return The current time, or 0 if metrics are off.
+     */
+    protected long begin() {
+        return Enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time taken to load an animation.
+     *
+     * @param begin The value returned by {@link PlaybackMetrics#begin begin}
+     * when loading started.
+     */
+    protected void endLoad(long begin) {
+        if (begin != 0) {
+            LastLoad = System.nanoTime() - begin;
+            Loads.record(LastLoad);
+        }
+    }
+
+    /**
+     * Records the time taken to apply the effects of a frame.
+     *
+     * @param begin The value returned by {@link PlaybackMetrics#begin begin}
+     * before the effects were applied.
+     */
+    protected void endEffects(long begin) {
+        if (begin != 0) {
+            Effects.record(System.nanoTime() - begin);
+        }
+    }
+
+    /**
+     * Records the time taken to paint the window.
+     *
+     * @param begin The value returned by {@link PlaybackMetrics#begin begin}
+     * when painting started.
+     */
+    protected void endPaint(long begin) {
+        if (begin != 0) {
+            Paints.record(System.nanoTime() - begin);
+        }
+    }
+
+    /**
+     * Records a frame stepped by the {@link FrameScheduler}.
+     *
+     * @param lateness How long after its deadline the frame was started, in
+     * nanoseconds.
+     * @param dropped Whether the frame was not drawn because it was late.
+     */
+    protected void frame(long lateness, boolean dropped) {
+        if (Enabled) {
+            Frames.increment();
+            Lateness.record(lateness);
+            if (dropped) {
+                DroppedFrames.increment();
+            }
+        }
+    }
+
+    /**
+     * Copies the current metrics.
+     *
+     * @return The copy.
+     */
+    protected Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Makes the metrics readable through the platform MBean server. Calling
+     * this more than once has no effect.
+     *
+     * @param session The {@link AnimationSession#Id id} of the session the
+     * metrics belong to, which tells the metrics of each session apart.
+     */
+    protected synchronized void register(int session) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(Name + ",session=" + session);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("The playback metrics could not be registered", e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return Enabled;
+    }
+
+    public void setEnabled(boolean Enabled) {
+        this.Enabled = Enabled;
+    }
+
+    public double getLastLoadMillis() {
+        return LastLoad / 1e6;
+    }
+
+    public long getFrames() {
+        return Frames.sum();
+    }
+
+    public long getDroppedFrames() {
+        return DroppedFrames.sum();
+    }
+
+    public double getEffectMeanMicros() {
+        return Effects.snapshot().mean() / 1e3;
+    }
+
+    public double getEffectP99Micros() {
+        return Effects.snapshot().percentile(99) / 1e3;
+    }
+
+    public double getEffectMaxMicros() {
+        return Effects.snapshot().Max / 1e3;
+    }
+
+    public double getPaintMeanMicros() {
+        return Paints.snapshot().mean() / 1e3;
+    }
+
+    public double getPaintP99Micros() {
+        return Paints.snapshot().percentile(99) / 1e3;
+    }
+
+    public double getPaintMaxMicros() {
+        return Paints.snapshot().Max / 1e3;
+    }
+
+    public double getLatenessP50Micros() {
+        return Lateness.snapshot().percentile(50) / 1e3;
+    }
+
+    public double getLatenessP99Micros() {
+        return Lateness.snapshot().percentile(99) / 1e3;
+    }
+
+    public double getLatenessMaxMicros() {
+        return Lateness.snapshot().Max / 1e3;
+    }
+
+    public void reset() {
+        Frames.reset();
+        DroppedFrames.reset();
+        Loads.reset();
+        Effects.reset();
+        Paints.reset();
+        Lateness.reset();
+        LastLoad = 0;
+    }
+}
@@ -0,0 +1,72 @@
+package AnimationProcessor;
+
+/**
+ * The attributes and operations of the {@link PlaybackMetrics} shown through
+ * JMX, for example in JConsole or Java Mission Control. Durations are given
+ * in microseconds.
+ */
+public interface PlaybackMetricsMBean {
+
+    /**
+     * @return Whether or not metrics are being recorded.
+     */
+    boolean isEnabled();
+
+    /**
+     * Starts or stops recording metrics.
+     *
+     * @param Enabled Whether metrics should be recorded.
+     */
+    void setEnabled(boolean Enabled);
+
+    /**
+     * @return The time taken by the last animation loaded, in milliseconds.
+     */
+    double getLastLoadMillis();
+
+    /**
+     * @return The number of frames stepped.
+     */
+    long getFrames();
+
+    /**
+     * @return The number of frames that were not drawn because they were
+     * late.
+     */
+    long getDroppedFrames();
+
+    /**
+     * The average, 99th percentile and longest time taken to apply the
+     * effects of a frame.
+     */
+    double getEffectMeanMicros();
+
+    double getEffectP99Micros();
+
+    double getEffectMaxMicros();
+
+    /**
+     * The average, 99th percentile and longest time taken to paint the
+     * window.
+     */
+    double getPaintMeanMicros();
+
+    double getPaintP99Micros();
+
+    double getPaintMaxMicros();
+
+    /**
+     * The median, 99th percentile and longest time frames were started after
+     * their deadline.
+     */
+    double getLatenessP50Micros();
+
+    double getLatenessP99Micros();
+
+    double getLatenessMaxMicros();
+
+    /**
+     * Removes every recorded metric.
+     */
+    void reset();
+}
@@ -0,0 +1,161 @@
+package AnimationProcessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Reads the shapes of an input file on a background thread, so an
+ * {@link AnimationSession} can start playing before the whole file has been
+ * parsed.
+ * <p>
+ * Shapes are handed over in chunks of {@link ProgressiveLoader#ChunkSize} as
+ * they are read, in the order they appear in the file. The loading thread
+ * only ever touches the shapes it has not handed over yet, so the thread
+ * playing the animation can take each chunk without any locking.
+ * <p>
+ * The shapes in the file are in no particular order of time, so until every
+ * shape has been read, any frame may be missing effects. The
+ * {@link ProgressiveLoader.Behind policy} of the session decides whether
+ * playback waits for the loader or plays the shapes read so far.
+ */
+public class ProgressiveLoader implements Runnable {
+
+    /**
+     * Decides what playback does before every shape has been read.
+     */
+    public enum Behind {
+        /**
+         * Waits for every shape to be read before playing past frame 0, on
+         * which no shape is visible yet, so every frame drawn is complete.
+         */
+        WAIT,
+        /**
+         * Plays the shapes read so far. Shapes read later appear in the state
+         * they would have had on the current frame, as if they had been
+         * playing from the start.
+         */
+        PLAY_LOADED
+    }
+
+    /**
+     * The number of shapes handed over at once.
+     */
+    static protected final int ChunkSize = 1024;
+
+    /**
+     * The lexer reading the input file, positioned after its header.
+     */
+    private final SceneLexer Lexer;
+    /**
+     * The number of shapes given in the input file.
+     */
+    private final int ShapeNum;
+    /**
+     * The chunks read but not yet taken.
+     */
+    private final ConcurrentLinkedQueue<ArrayList<Shape>> Chunks = new ConcurrentLinkedQueue<>();
+    /**
+     * The chunk being filled. Only used by the loading thread.
+     */
+    private ArrayList<Shape> Chunk = new ArrayList<>(ChunkSize);
+    /**
+     * Released once the loading thread has stopped.
+     */
+    private final CountDownLatch Finished = new CountDownLatch(1);
+    /**
+     * Why the file could not be read, or null if it was read.
+     */
+    private volatile RuntimeException Failure;
+
+    /**
+     * Defines a loader reading the rest of an input file.
+     *
+     * @param Lexer The {@link SceneLexer} reading the input file, whose last
+     * token was the number of shapes.
+     * @param ShapeNum The number of shapes given in the input file.
+     */
+    ProgressiveLoader(SceneLexer Lexer, int ShapeNum) {
+        this.Lexer = Lexer;
+        this.ShapeNum = ShapeNum;
+    }
+
+    /**
+     * Starts reading the shapes on a new daemon thread.
+     *
+     * @param name The name of the thread.
+     */
+    protected void start(String name) {
+        Thread thread = new Thread(this, name);
+        // The program should not wait for a file no one is playing any more.
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Reads every shape, handing each chunk over once it is full.
+     */
+    public void run() {
+        try {
+            FileLoader.readShapes(Lexer, ShapeNum, CurrShape -> {
+                Chunk.add(CurrShape);
+                if (Chunk.size() == ChunkSize) {
+                    Chunks.add(Chunk);
+                    Chunk = new ArrayList<>(ChunkSize);
+                }
+            });
+            if (!Chunk.isEmpty()) {
+                Chunks.add(Chunk);
+            }
+        } catch (RuntimeException e) {
+            Failure = e;
+        } finally {
+            Chunk = null;
+            Finished.countDown();
+        }
+    }
+
+    /**
+     * Moves every shape read so far, and not yet taken, to the end of a list.
+     *
+     * @param Shapes The list receiving the shapes.
+     * @return The number of shapes moved.
+     */
+    protected int take(List<Shape> Shapes) {
+        int count = 0;
+        for (ArrayList<Shape> chunk = Chunks.poll(); chunk != null; chunk = Chunks.poll()) {
+            Shapes.addAll(chunk);
+            count += chunk.size();
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether the loading thread has stopped. Once it has, every shape
+     * it read can be {@link ProgressiveLoader#take taken}.
+     *
+     * @return True if every shape has been read, or reading failed.
+     */
+    protected boolean isFinished() {
+        return Finished.getCount() == 0;
+    }
+
+    /**
+     * Waits for the loading thread to stop.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    protected void await() throws InterruptedException {
+        Finished.await();
+    }
+
+    /**
+     * Finds why the file could not be read.
+     *
+     * @return The exception thrown while reading, or null if there was none.
+     */
+    protected RuntimeException failure() {
+        return Failure;
+    }
+}
@@ -0,0 +1,328 @@
+package AnimationProcessor;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Draws every frame of an animation and passes it to a {@link FrameSink},
+ * with applying effects, drawing and writing each done by a stage on its own
+ * thread, so all three run at once on different processors.
+ * <ul>
+ * <li>The simulation stage applies the effects of each frame to the shapes of
+ * the session, then records the shapes that have effects into a
+ * {@link SceneSnapshot}.</li>
+ * <li>The render stage restores each snapshot into its own copies of the
+ * shapes, and draws them into a frame buffer.</li>
+ * <li>The sink stage, on the calling thread, writes each frame buffer to the
+ * sink, in order.</li>
+ * </ul>
+ * <p>
+ * The stages hand snapshots and frame buffers to each other through
+ * {@link SpscQueue lock-free queues}. A fixed number of each is made at the
+ * start and handed back once used, so no memory is allocated per frame, and
+ * the memory used does not depend on the length of the animation. A stage
+ * that gets ahead waits for the next stage to hand back a snapshot or frame
+ * buffer, so the whole pipeline runs at the speed of its slowest stage.
+ * <p>
+ * The frames are passed to the sink in order, so any sink can be used,
+ * including a {@link VideoSink}, and they are the same as those drawn by the
+ * {@link HeadlessRenderer}.
+ */
+public class RenderPipeline {
+
+    /**
+     * The number of snapshots and frame buffers each made by default.
+     */
+    static protected final int DefaultBuffers = 4;
+    /**
+     * The number of times a waiting stage checks again before yielding the
+     * processor. Spinning only helps when the other stages are running on
+     * other processors.
+     */
+    static private final int SpinLimit = Runtime.getRuntime().availableProcessors() > 1 ? 64 : 0;
+    /**
+     * The number of times a waiting stage yields the processor before
+     * sleeping, and how long it then sleeps each time, in nanoseconds.
+     */
+    static private final int YieldLimit = 64;
+    static private final long ParkNanos = 50_000;
+
+    /**
+     * A frame buffer, with the graphics object drawing into it, and the
+     * software rasterizer drawing into it if one is used.
+     */
+    static private class FrameBuffer {
+
+        private final BufferedImage Image;
+        private final Graphics2D Graphics;
+        private final SoftwareRasterizer Rasterizer;
+
+        FrameBuffer(int Width, int Height, boolean Software) {
+            Image = new BufferedImage(Width, Height, BufferedImage.TYPE_INT_RGB);
+            Graphics = Image.createGraphics();
+            Rasterizer = Software ? new SoftwareRasterizer(Image) : null;
+        }
+    }
+
+    /**
+     * Thrown inside a stage to stop it once another stage has failed.
+     */
+    static private class Stopped extends RuntimeException {
+
+        static private final long serialVersionUID = 1L;
+
+        Stopped() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final List<Shape> Shapes;
+    private final Timeline Events;
+    private final Checkpoints Seeker;
+    private final int Frames;
+
+    /**
+     * The size of each frame.
+     */
+    protected int Width = HeadlessRenderer.DefaultWidth;
+    protected int Height = HeadlessRenderer.DefaultHeight;
+    /**
+     * The number of snapshots and frame buffers made, which bounds how far
+     * each stage can get ahead of the next.
+     */
+    protected int Buffers = DefaultBuffers;
+    /**
+     * Whether the shapes are drawn by a {@link SoftwareRasterizer} rather
+     * than through Java2D.
+     */
+    protected boolean Software = false;
+
+    /**
+     * The number of times each stage found nothing to do and had to wait, by
+     * the last render. The slowest stage waits least.
+     */
+    protected volatile long SimulationWaits;
+    protected volatile long RenderWaits;
+    protected volatile long SinkWaits;
+
+    /**
+     * Why a stage failed, or null if none has.
+     */
+    private volatile Throwable Failure;
+
+    /**
+     * Defines a pipeline drawing the animation of a session, which should not
+     * have been played yet.
+     *
+     * @param Session The session holding the animation.
+     */
+    RenderPipeline(AnimationSession Session) {
+        this.Shapes = Session.ShapeList;
+        this.Events = Session.EffectTimeline;
+        this.Seeker = Session.Seeker;
+        this.Frames = Session.Frames;
+    }
+
+    /**
+     * Draws every frame of the animation from a frame to its end, and passes
+     * each to the sink in order.
+     *
+     * @param sink Where the frames are written.
+     * @param from The first frame drawn.
+     * @return The number of frames drawn per second.
+     * @throws IOException If the sink could not write a frame.
+     */
+    protected double render(FrameSink sink, int from) throws IOException {
+        from = Math.max(0, from);
+        int count = Math.max(0, Frames - from);
+        // Moves the shapes to the first frame, from the nearest checkpoint.
+        if (from > 0) {
+            Seeker.restore(from, Shapes);
+        }
+        // Only the shapes with effects change, so only they are recorded each frame.
+        int[] members = Seeker.Members;
+        ArrayList<Shape> copies = SceneSnapshot.copyOf(Shapes);
+        DisplayList Display = new DisplayList(copies);
+
+        int buffers = Math.max(1, Buffers);
+        SpscQueue<SceneSnapshot> scenes = new SpscQueue<>(buffers);
+        SpscQueue<SceneSnapshot> freeScenes = new SpscQueue<>(buffers);
+        SpscQueue<FrameBuffer> drawn = new SpscQueue<>(buffers);
+        SpscQueue<FrameBuffer> freeFrames = new SpscQueue<>(buffers);
+        List<FrameBuffer> ring = new ArrayList<>();
+        for (int i = 0; i < buffers; i++) {
+            freeScenes.offer(new SceneSnapshot(Shapes, members));
+            FrameBuffer buffer = new FrameBuffer(Width, Height, Software);
+            ring.add(buffer);
+            freeFrames.offer(buffer);
+        }
+        Failure = null;
+        long[] waits = new long[3];
+        int first = from;
+
+        Thread simulation = new Thread(() -> {
+            for (int frame = first; frame < first + count; frame++) {
+                // Applies the effects that occur on this frame.
+                Events.apply(frame, Shapes);
+                SceneSnapshot scene = take(freeScenes, waits, 0);
+                scene.capture(Shapes);
+                put(scenes, scene, waits, 0);
+            }
+        }, "Pipeline-Simulation");
+        Thread render = new Thread(() -> {
+            for (int frame = first; frame < first + count; frame++) {
+                SceneSnapshot scene = take(scenes, waits, 1);
+                scene.restore(copies);
+                put(freeScenes, scene, waits, 1);
+                FrameBuffer buffer = take(freeFrames, waits, 1);
+                if (buffer.Rasterizer != null) {
+                    buffer.Rasterizer.drawFrame(Display);
+                } else {
+                    HeadlessRenderer.drawFrame(buffer.Graphics, Display, Width, Height);
+                }
+                put(drawn, buffer, waits, 1);
+            }
+        }, "Pipeline-Render");
+
+        long begin = System.nanoTime();
+        start(simulation);
+        start(render);
+        try {
+            for (int frame = first; frame < first + count; frame++) {
+                FrameBuffer buffer = take(drawn, waits, 2);
+                try {
+                    sink.writeFrame(frame, buffer.Image);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                put(freeFrames, buffer, waits, 2);
+            }
+        } catch (Stopped e) {
+            // Error Checking
+            // A stage failed, so the reason is thrown on the calling thread.
+            Throwable cause = Failure;
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (RuntimeException) cause;
+        } catch (UncheckedIOException e) {
+            Failure = e;
+            throw e.getCause();
+        } catch (RuntimeException | Error e) {
+            Failure = e;
+            throw e;
+        } finally {
+            join(simulation);
+            join(render);
+            for (FrameBuffer buffer : ring) {
+                buffer.Graphics.dispose();
+            }
+            SimulationWaits = waits[0];
+            RenderWaits = waits[1];
+            SinkWaits = waits[2];
+        }
+        // Converts the time taken into frames per second.
+        return count / Math.max(1e-9, (System.nanoTime() - begin) / 1e9);
+    }
+
+    /**
+     * Starts a stage on a new thread, recording any failure so the other
+     * stages stop.
+     *
+     * @param stage The thread running the stage.
+     */
+    private void start(Thread stage) {
+        stage.setDaemon(true);
+        stage.setUncaughtExceptionHandler((thread, e) -> {
+            if (!(e instanceof Stopped) && Failure == null) {
+                Failure = e;
+            }
+        });
+        stage.start();
+    }
+
+    /**
+     * Waits for a stage to stop, even if the calling thread is interrupted.
+     *
+     * @param stage The thread running the stage.
+     */
+    static private void join(Thread stage) {
+        boolean interrupted = false;
+        while (stage.isAlive()) {
+            try {
+                stage.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Removes the next item from a queue, waiting until there is one.
+     *
+     * @param queue The queue.
+     * @param waits The number of waits of each stage.
+     * @param stage The stage removing the item.
+     * @return The item.
+     */
+    private <T> T take(SpscQueue<T> queue, long[] waits, int stage) {
+        T item = queue.poll();
+        for (int idle = 0; item == null; idle++) {
+            if (idle == 0) {
+                waits[stage]++;
+            }
+            idle(idle);
+            item = queue.poll();
+        }
+        return item;
+    }
+
+    /**
+     * Adds an item to a queue, waiting until there is room.
+     *
+     * @param queue The queue.
+     * @param item The item.
+     * @param waits The number of waits of each stage.
+     * @param stage The stage adding the item.
+     */
+    private <T> void put(SpscQueue<T> queue, T item, long[] waits, int stage) {
+        for (int idle = 0; !queue.offer(item); idle++) {
+            if (idle == 0) {
+                waits[stage]++;
+            }
+            idle(idle);
+        }
+    }
+
+    /**
+     * Waits a little for another stage, spinning at first, as the wait is
+     * usually short, then yielding the processor and finally sleeping.
+     *
+     * @param idle The number of times the stage has already waited for the
+     * same item.
+     * @throws Stopped If another stage has failed.
+     */
+    private void idle(int idle) {
+        if (Failure != null) {
+            throw new Stopped();
+        }
+        if (idle < SpinLimit) {
+            Thread.onSpinWait();
+        } else if (idle < SpinLimit + YieldLimit) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(ParkNanos);
+        }
+    }
+}
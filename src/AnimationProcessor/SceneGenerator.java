@@ -0,0 +1,227 @@
+package AnimationProcessor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Creates random animations of any size, used to measure how the player
+ * copes with large scenes.
+ * <p>
+ * The animations are made from a seed, so the same seed, settings and number
+ * of shapes always give the same animation. Every shape is shown on frame 1,
+ * then given on average {@link SceneGenerator#EffectsPerShape} more effects
+ * of every type, spread evenly over the frames of the animation. The shapes
+ * are placed inside an area of {@link SceneGenerator#Width} by
+ * {@link SceneGenerator#Height} pixels.
+ * <p>
+ * Generated animations can be used directly, or written as an input file so
+ * the time taken to load them can be measured as well.
+ */
+public class SceneGenerator {
+
+    /**
+     * The shape types created, as written in an input file.
+     */
+    static protected final String[] ShapeTypes = {"Circle", "Rect", "Line"};
+    /**
+     * The effect types created, as written in an input file.
+     */
+    static protected final String[] EffectTypes = {"Show", "Hide", "Jump", "ChangeColor", "Move", "Fade"};
+
+    /**
+     * The seed the animations are made from.
+     */
+    private final long Seed;
+    /**
+     * The number of frames in the animation.
+     */
+    protected int Frames = 1000;
+    /**
+     * The frame rate of the animation.
+     */
+    protected int Fps = 30;
+    /**
+     * The average number of effects given to each shape, not counting the
+     * effect that first shows it. May be a fraction.
+     */
+    protected double EffectsPerShape = 2;
+    /**
+     * The size of the area the shapes are placed in.
+     */
+    protected int Width = HeadlessRenderer.DefaultWidth;
+    protected int Height = HeadlessRenderer.DefaultHeight;
+
+    /**
+     * Defines a generator for the given seed.
+     *
+     * @param Seed The seed the animations are made from.
+     */
+    SceneGenerator(long Seed) {
+        this.Seed = Seed;
+    }
+
+    /**
+     * Creates an animation with the given number of shapes.
+     *
+     * @param count The number of shapes.
+     * @return The shapes of the animation, in the state of frame 0, with their
+     * effects.
+     */
+    protected ArrayList<Shape> generate(int count) {
+        // The seed is combined with the size, so scenes of different sizes do not start with the same shapes.
+        Random random = new Random(Seed * 31 + count);
+        // Colors are reused, as most scenes use only a few.
+        ColorCache colors = new ColorCache();
+        ArrayList<Shape> Shapes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Shape CurrShape = new Shape();
+            CurrShape.type = ShapeTypes[random.nextInt(ShapeTypes.length)];
+            CurrShape.x = random.nextInt(Width);
+            CurrShape.y = random.nextInt(Height);
+            CurrShape.border = random.nextInt(4);
+            CurrShape.color = colors.get(randomColor(random));
+            CurrShape.borderColor = colors.get(randomColor(random));
+            switch (CurrShape.type) {
+                case "Circle":
+                    CurrShape.r = 2 + random.nextInt(20);
+                    break;
+                case "Rect":
+                    CurrShape.length = 2 + random.nextInt(40);
+                    CurrShape.width = 2 + random.nextInt(40);
+                    break;
+                case "Line":
+                    CurrShape.endX = random.nextInt(Width);
+                    CurrShape.endY = random.nextInt(Height);
+                    break;
+            }
+
+            // Every shape is shown first, so the scene is not empty.
+            Effect show = new Effect();
+            show.type = "Show";
+            show.start = 1;
+            CurrShape.EffectList.add(show);
+            // Rounds the average number of effects up or down at random, so fractions are kept on average.
+            int effects = (int) EffectsPerShape + (random.nextDouble() < EffectsPerShape % 1 ? 1 : 0);
+            for (int j = 0; j < effects; j++) {
+                CurrShape.EffectList.add(randomEffect(random, colors));
+            }
+            Shapes.add(CurrShape);
+        }
+        return Shapes;
+    }
+
+    /**
+     * Creates an effect of a random type on a random frame.
+     *
+     * @param random The source of random numbers.
+     * @param colors The colors already used by the scene.
+     * @return The effect.
+     */
+    private Effect randomEffect(Random random, ColorCache colors) {
+        Effect CurrEffect = new Effect();
+        CurrEffect.type = EffectTypes[random.nextInt(EffectTypes.length)];
+        // Effects on frame 0 never occur, so the first frame used is 1.
+        CurrEffect.start = 1 + random.nextInt(Math.max(1, Frames - 1));
+        CurrEffect.end = CurrEffect.start + random.nextInt(Math.max(1, Frames / 10));
+        CurrEffect.ease = random.nextInt(4);
+        CurrEffect.x = random.nextInt(Width);
+        CurrEffect.y = random.nextInt(Height);
+        CurrEffect.newColor = colors.get(randomColor(random));
+        return CurrEffect;
+    }
+
+    /**
+     * Picks a random opaque color.
+     *
+     * @param random The source of random numbers.
+     * @return The color as a packed ARGB value.
+     */
+    static private int randomColor(Random random) {
+        return 0xFF000000 | random.nextInt(0x1000000);
+    }
+
+    /**
+     * Writes an animation as an input file that can be loaded by the
+     * {@link AnimationSession}.
+     *
+     * @param file The file to write.
+     * @param Shapes The shapes of the animation, with their effects.
+     * @throws IOException If the file could not be written.
+     */
+    protected void write(Path file, List<Shape> Shapes) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            out.write("frames: " + Frames + "\nspeed: " + Fps + "\nshapes: " + Shapes.size() + "\n");
+            for (Shape CurrShape : Shapes) {
+                out.write("\n" + CurrShape.type + "\n");
+                writeProperty(out, "x", CurrShape.x);
+                writeProperty(out, "y", CurrShape.y);
+                writeProperty(out, "border", CurrShape.border);
+                writeColor(out, "color", CurrShape.color.getRGB());
+                writeColor(out, "borderColor", CurrShape.borderColor.getRGB());
+                switch (CurrShape.type) {
+                    case "Circle":
+                        writeProperty(out, "r", CurrShape.r);
+                        break;
+                    case "Rect":
+                        writeProperty(out, "length", CurrShape.length);
+                        writeProperty(out, "width", CurrShape.width);
+                        break;
+                    case "Line":
+                        writeProperty(out, "endX", CurrShape.endX);
+                        writeProperty(out, "endY", CurrShape.endY);
+                        break;
+                }
+                for (Effect CurrEffect : CurrShape.EffectList) {
+                    out.write("effect\n" + CurrEffect.type + "\n");
+                    writeProperty(out, "start", CurrEffect.start);
+                    switch (CurrEffect.type) {
+                        case "Jump":
+                        case "Move":
+                            writeProperty(out, "x", CurrEffect.x);
+                            writeProperty(out, "y", CurrEffect.y);
+                            break;
+                        case "ChangeColor":
+                        case "Fade":
+                            writeColor(out, "color", CurrEffect.newColor.getRGB());
+                            break;
+                    }
+                    if (Tweens.isTween(CurrEffect)) {
+                        writeProperty(out, "end", CurrEffect.end);
+                        writeProperty(out, "ease", CurrEffect.ease);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a line of information holding a number.
+     *
+     * @param out Where the line is written.
+     * @param label The label of the line.
+     * @param value The number.
+     * @throws IOException If the line could not be written.
+     */
+    static private void writeProperty(BufferedWriter out, String label, int value) throws IOException {
+        out.write(label + ": " + value + "\n");
+    }
+
+    /**
+     * Writes a line of information holding a color, as its red, green and
+     * blue values.
+     *
+     * @param out Where the line is written.
+     * @param label The label of the line.
+     * @param rgb The color as a packed RGB value.
+     * @throws IOException If the line could not be written.
+     */
+    static private void writeColor(BufferedWriter out, String label, int rgb) throws IOException {
+        out.write(label + ": " + ((rgb >> 16) & 0xFF) + ", " + ((rgb >> 8) & 0xFF) + ", " + (rgb & 0xFF) + "\n");
+    }
+}
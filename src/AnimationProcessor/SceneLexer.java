@@ -0,0 +1,551 @@
+package AnimationProcessor;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits the contents of an input file into tokens in a single pass.
+ * <p>
+ * The input file starts with three numbers (the number of frames, the frame
+ * rate and the number of shapes), each read as every digit on its line. This
+ * is followed by blocks of shapes separated by blank lines. Each block starts
+ * with the shape type, followed by lines of information ("label": "data").
+ * Any other line starts a new effect: either an optional "effect" label
+ * followed by the effect type, or just the effect type. The lines of
+ * information that follow belong to that effect.
+ * <p>
+ * The lexer reads bytes directly from a {@link ByteBuffer} rather than
+ * matching regular expressions, and only creates objects for shape and effect
+ * types it has not seen before.
+ */
+public class SceneLexer {
+
+    /**
+     * Returned once the end of the input has been reached.
+     */
+    static protected final int END = 0;
+    /**
+     * One of the three numbers at the start of the file, stored in
+     * {@link SceneLexer#Value}.
+     */
+    static protected final int HEADER = 1;
+    /**
+     * The start of a new shape, whose type is stored in
+     * {@link SceneLexer#Text}.
+     */
+    static protected final int SHAPE = 2;
+    /**
+     * The start of a new effect, whose type is stored in
+     * {@link SceneLexer#Text}.
+     */
+    static protected final int EFFECT = 3;
+    /**
+     * A line of information. The label is stored in {@link SceneLexer#Key}
+     * and the data in {@link SceneLexer#Value}, or in
+     * {@link SceneLexer#Red}, {@link SceneLexer#Green} and
+     * {@link SceneLexer#Blue} for colors.
+     */
+    static protected final int PROPERTY = 4;
+
+    /**
+     * Labels that are not recognized.
+     */
+    static protected final int KEY_OTHER = 0;
+    static protected final int KEY_X = 1;
+    static protected final int KEY_Y = 2;
+    static protected final int KEY_BORDER = 3;
+    static protected final int KEY_COLOR = 4;
+    static protected final int KEY_BORDERCOLOR = 5;
+    static protected final int KEY_R = 6;
+    static protected final int KEY_LENGTH = 7;
+    static protected final int KEY_WIDTH = 8;
+    static protected final int KEY_ENDX = 9;
+    static protected final int KEY_ENDY = 10;
+    static protected final int KEY_START = 11;
+    static protected final int KEY_END = 12;
+    static protected final int KEY_EASE = 13;
+
+    /**
+     * The recognized labels, in lower case, indexed by their key.
+     */
+    static private final byte[][] KeyNames = {
+        {}, "x".getBytes(), "y".getBytes(), "border".getBytes(), "color".getBytes(), "bordercolor".getBytes(),
+        "r".getBytes(), "length".getBytes(), "width".getBytes(), "endx".getBytes(), "endy".getBytes(), "start".getBytes(),
+        "end".getBytes(), "ease".getBytes()
+    };
+    /**
+     * The label that may come before the type of an effect.
+     */
+    static private final byte[] EffectLabel = "effect".getBytes();
+
+    /**
+     * The bytes being read.
+     */
+    private final ByteBuffer Input;
+    /**
+     * The position after the last byte of the input.
+     */
+    private final int Limit;
+    /**
+     * The position of the next byte to read.
+     */
+    private int Position;
+    /**
+     * The number of header values that have not been read yet.
+     */
+    private int HeaderLeft;
+    /**
+     * Whether the next line with letters on it is the type of a new shape.
+     */
+    private boolean ExpectShape = true;
+    /**
+     * Whether the input ended while skipping the blank lines after a type,
+     * which do not end a shape.
+     */
+    private boolean EndedInType = false;
+
+    /**
+     * Holds the bytes of the type being read, with whitespace removed.
+     */
+    private byte[] Scratch = new byte[32];
+    /**
+     * The bytes of each type that has been read, and the matching strings.
+     * Types repeat often, so each is only converted to a string once.
+     */
+    private byte[][] SeenTypes = new byte[0][];
+    private String[] SeenNames = new String[0];
+
+    /**
+     * The type of the last shape or effect.
+     */
+    protected String Text = "";
+    /**
+     * The label of the last line of information.
+     */
+    protected int Key = KEY_OTHER;
+    /**
+     * The number of the last header or line of information.
+     */
+    protected int Value = 0;
+    /**
+     * The color components of the last line of information.
+     */
+    protected int Red = 0;
+    protected int Green = 0;
+    protected int Blue = 0;
+
+    /**
+     * Defines a lexer reading from the position of the buffer up to its limit.
+     *
+     * @param Input The contents of the input file.
+     */
+    SceneLexer(ByteBuffer Input) {
+        this(Input, true);
+    }
+
+    /**
+     * Defines a lexer reading from the position of the buffer up to its limit,
+     * which may start at a block of shapes rather than at the header.
+     *
+     * @param Input The contents of the input file.
+     * @param Header Whether the input starts with the header. If not, it must
+     * start at the beginning of a line between two shapes.
+     */
+    SceneLexer(ByteBuffer Input, boolean Header) {
+        this.Input = Input;
+        this.Position = Input.position();
+        this.Limit = Input.limit();
+        this.HeaderLeft = Header ? 3 : 0;
+    }
+
+    /**
+     * Finds the position of the next byte to read.
+     *
+     * @return The position in the buffer.
+     */
+    protected int position() {
+        return Position;
+    }
+
+    /**
+     * Checks whether the input ended between two shapes, once
+     * {@link SceneLexer#END} has been returned. If it did, reading on past the
+     * limit would start a new shape. If not, the input ended in the blank
+     * lines after a shape or effect type, which reading on would skip.
+     *
+     * @return True if the input ended between two shapes.
+     */
+    protected boolean endedBetweenShapes() {
+        return !EndedInType;
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return The type of the token ({@link SceneLexer#HEADER},
+     * {@link SceneLexer#SHAPE}, {@link SceneLexer#EFFECT},
+     * {@link SceneLexer#PROPERTY} or {@link SceneLexer#END}).
+     */
+    protected int next() {
+        // Reads the numbers at the start of the file.
+        if (HeaderLeft > 0) {
+            HeaderLeft--;
+            readHeader();
+            return HEADER;
+        }
+
+        while (true) {
+            // The first line with letters after a blank line is the type of the next shape.
+            if (ExpectShape) {
+                int letter = skipToLetter(Position);
+                if (letter >= Limit) {
+                    Position = Limit;
+                    return END;
+                }
+                ExpectShape = false;
+                readType(letter);
+                return SHAPE;
+            }
+
+            if (Position >= Limit) {
+                return END;
+            }
+            // Finds the bounds of the next line and moves past it.
+            int start = Position;
+            int end = endOfLine(start);
+            Position = Math.min(end + 1, Limit);
+
+            // A blank line marks the end of the shape.
+            if (isBlank(start, end)) {
+                ExpectShape = true;
+            } else if (isInfo(start, end)) {
+                readProperty(start, end);
+                return PROPERTY;
+            } else {
+                // Any other line is the start of an effect.
+                // Error Checking
+                // Lines without any letters, such as lines of whitespace, are ignored.
+                int letter = firstLetter(start, end);
+                if (letter >= 0) {
+                    // Skips the "effect" label if it is present. The type follows on the next line with letters.
+                    if (isLabel(letter, end)) {
+                        letter = skipToLetter(end);
+                        if (letter >= Limit) {
+                            Position = Limit;
+                            EndedInType = true;
+                            return END;
+                        }
+                    }
+                    readType(letter);
+                    return EFFECT;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads one of the numbers at the start of the file.
+     * <p>
+     * Error Checking: Any non-numeric characters before the number, or on the
+     * same line as it, are ignored.
+     */
+    private void readHeader() {
+        // Skips to the next digit.
+        int start = Position;
+        while (start < Limit && !isDigit(Input.get(start))) {
+            start++;
+        }
+        if (start >= Limit) {
+            throw new NoSuchElementException("The input file ended before its header.");
+        }
+        int end = endOfLine(start);
+        Value = readDigits(start, end);
+        Position = end;
+        ExpectShape = true;
+    }
+
+    /**
+     * Reads a shape or effect type, which continues to the end of the line.
+     * The lexer then skips to the next letter, so any blank lines after a type
+     * are ignored.
+     *
+     * @param start The position of the first letter of the type.
+     */
+    private void readType(int start) {
+        int end = endOfLine(start);
+        // Error Checking
+        // Removes any whitespace characters to avoid unintended behaviour when checking types.
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            byte b = Input.get(i);
+            if (!isSpace(b)) {
+                if (length == Scratch.length) {
+                    Scratch = Arrays.copyOf(Scratch, length * 2);
+                }
+                Scratch[length++] = b;
+            }
+        }
+        Text = nameOf(length);
+        Position = skipToLetter(end);
+        EndedInType = Position >= Limit;
+    }
+
+    /**
+     * Finds the string matching the type held in the scratch buffer, creating
+     * it if the type has not been seen before.
+     *
+     * @param length The length of the type.
+     * @return The type as a string.
+     */
+    private String nameOf(int length) {
+        for (int i = 0; i < SeenTypes.length; i++) {
+            if (Arrays.equals(SeenTypes[i], 0, SeenTypes[i].length, Scratch, 0, length)) {
+                return SeenNames[i];
+            }
+        }
+        String name = new String(Scratch, 0, length, StandardCharsets.UTF_8);
+        // Only a handful of types are expected, so the cache stops growing if a file uses many.
+        if (SeenTypes.length < 64) {
+            SeenTypes = Arrays.copyOf(SeenTypes, SeenTypes.length + 1);
+            SeenNames = Arrays.copyOf(SeenNames, SeenNames.length + 1);
+            SeenTypes[SeenTypes.length - 1] = Arrays.copyOf(Scratch, length);
+            SeenNames[SeenNames.length - 1] = name;
+        }
+        return name;
+    }
+
+    /**
+     * Reads the label and data of a line of information.
+     * <p>
+     * Error Checking: Only the digits of the data are read, so symbols and
+     * spaces mixed into numbers are ignored.
+     *
+     * @param start The position of the start of the line.
+     * @param end The position of the end of the line.
+     */
+    private void readProperty(int start, int end) {
+        // The label is the first run of letters on the line.
+        int label = firstLetter(start, end);
+        int labelEnd = label;
+        while (labelEnd >= 0 && labelEnd < end && isLetter(Input.get(labelEnd))) {
+            labelEnd++;
+        }
+        Key = label < 0 ? KEY_OTHER : keyOf(label, labelEnd);
+
+        // The data starts at the first digit after the label.
+        int data = Math.max(start, labelEnd);
+        while (data < end && !isDigit(Input.get(data))) {
+            data++;
+        }
+        if (Key == KEY_COLOR || Key == KEY_BORDERCOLOR) {
+            // Colors are three numbers separated by commas. The last number takes the rest of the line.
+            int comma = indexOf(',', data, end);
+            Red = readDigits(data, comma);
+            int second = Math.min(comma + 1, end);
+            comma = indexOf(',', second, end);
+            Green = readDigits(second, comma);
+            Blue = readDigits(Math.min(comma + 1, end), end);
+        } else {
+            Value = readDigits(data, end);
+        }
+    }
+
+    /**
+     * Finds the key of a label, ignoring case.
+     *
+     * @param start The position of the first letter of the label.
+     * @param end The position after the last letter of the label.
+     * @return The key of the label, or {@link SceneLexer#KEY_OTHER}.
+     */
+    private int keyOf(int start, int end) {
+        for (int key = 1; key < KeyNames.length; key++) {
+            if (matchesIgnoreCase(KeyNames[key], start, end)) {
+                return key;
+            }
+        }
+        return KEY_OTHER;
+    }
+
+    /**
+     * Checks if a line only holds the "effect" label (ignoring case and
+     * whitespace).
+     *
+     * @param start The position of the first letter of the line.
+     * @param end The position of the end of the line.
+     * @return If the line is the label.
+     */
+    private boolean isLabel(int start, int end) {
+        while (end > start && isSpace(Input.get(end - 1))) {
+            end--;
+        }
+        return matchesIgnoreCase(EffectLabel, start, end);
+    }
+
+    /**
+     * Compares part of the input to a lower case word, ignoring case.
+     *
+     * @param word The word, in lower case.
+     * @param start The position of the start of the input to compare.
+     * @param end The position of the end of the input to compare.
+     * @return If the input matches the word.
+     */
+    private boolean matchesIgnoreCase(byte[] word, int start, int end) {
+        if (end - start != word.length) {
+            return false;
+        }
+        for (int i = 0; i < word.length; i++) {
+            // Setting the 0x20 bit converts ASCII letters to lower case.
+            if ((Input.get(start + i) | 0x20) != word[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a line is in a format that corresponds to readable data
+     * ("label": "data"). The line must start with at least one non-numeric
+     * character, followed by data made up only of digits, commas, spaces,
+     * '*' and '+', and may end with whitespace.
+     *
+     * @param start The position of the start of the line.
+     * @param end The position of the end of the line.
+     * @return If the line follows the correct format.
+     */
+    private boolean isInfo(int start, int end) {
+        // Ignores any whitespace at the end of the line.
+        while (end > start && isSpace(Input.get(end - 1))) {
+            end--;
+        }
+        // Skips the label, which must not be empty.
+        int i = start;
+        while (i < end && !isDigit(Input.get(i))) {
+            i++;
+        }
+        if (i == start || i == end) {
+            return false;
+        }
+        // Checks that the data only holds the allowed characters.
+        for (; i < end; i++) {
+            byte b = Input.get(i);
+            if (!isDigit(b) && b != ',' && b != ' ' && b != '*' && b != '+') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a line is blank. Carriage returns are ignored so files with
+     * Windows line endings are read the same way.
+     *
+     * @param start The position of the start of the line.
+     * @param end The position of the end of the line.
+     * @return If the line is blank.
+     */
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (Input.get(i) != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads every digit in part of the input as a single number.
+     *
+     * @param start The position of the start of the number.
+     * @param end The position of the end of the number.
+     * @return The number, or 0 if there are no digits.
+     */
+    private int readDigits(int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            byte b = Input.get(i);
+            if (isDigit(b)) {
+                value = value * 10 + (b - '0');
+                // Error Checking
+                // Numbers too large to be stored are rejected in the same way Integer.parseInt would.
+                if (value > Integer.MAX_VALUE) {
+                    throw new NumberFormatException("Number too large at byte " + start + " of the input file.");
+                }
+            }
+        }
+        return (int) value;
+    }
+
+    /**
+     * Finds the end of the line starting at the given position.
+     *
+     * @param start The position to search from.
+     * @return The position of the next newline, or the limit of the input.
+     */
+    private int endOfLine(int start) {
+        int i = start;
+        while (i < Limit && Input.get(i) != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Finds the next letter, which may be on a later line.
+     *
+     * @param start The position to search from.
+     * @return The position of the letter, or the limit of the input.
+     */
+    private int skipToLetter(int start) {
+        int i = start;
+        while (i < Limit && !isLetter(Input.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Finds the first letter in part of a line.
+     *
+     * @param start The position of the start of the line.
+     * @param end The position of the end of the line.
+     * @return The position of the letter, or -1 if there are no letters.
+     */
+    private int firstLetter(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (isLetter(Input.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds a character in part of a line.
+     *
+     * @param c The character to find.
+     * @param start The position to search from.
+     * @param end The position of the end of the line.
+     * @return The position of the character, or the end of the line.
+     */
+    private int indexOf(char c, int start, int end) {
+        int i = start;
+        while (i < end && Input.get(i) != c) {
+            i++;
+        }
+        return i;
+    }
+
+    static private boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    static private boolean isLetter(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    static private boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+}
@@ -0,0 +1,125 @@
+package AnimationProcessor;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The state of every {@link Shape} at a single frame.
+ * <p>
+ * Effects only change the position, visibility and color of a shape, so
+ * only those fields are stored. A snapshot can be restored into the shapes it
+ * was taken from or into copies of them.
+ * <p>
+ * A snapshot can also hold only some of the shapes, such as those that have
+ * effects, leaving the others unchanged when it is restored.
+ */
+public class SceneSnapshot {
+
+    /**
+     * The x-coordinate of each shape.
+     */
+    private final int[] x;
+    /**
+     * The y-coordinate of each shape.
+     */
+    private final int[] y;
+    /**
+     * The x-coordinate of the endpoint of each line.
+     */
+    private final int[] endX;
+    /**
+     * The y-coordinate of the endpoint of each line.
+     */
+    private final int[] endY;
+    /**
+     * Whether or not each shape is visible.
+     */
+    private final boolean[] visible;
+    /**
+     * The color of each shape.
+     */
+    private final Color[] color;
+    /**
+     * The index of each recorded shape, or null if every shape is recorded.
+     */
+    private final int[] Members;
+
+    /**
+     * Records the current state of the given shapes.
+     *
+     * @param Shapes The shapes to record.
+     */
+    SceneSnapshot(List<Shape> Shapes) {
+        this(Shapes, null);
+    }
+
+    /**
+     * Records the current state of some of the given shapes.
+     *
+     * @param Shapes The shapes to record.
+     * @param Members The index of each shape to record, or null to record
+     * every shape.
+     */
+    SceneSnapshot(List<Shape> Shapes, int[] Members) {
+        this.Members = Members;
+        int size = Members == null ? Shapes.size() : Members.length;
+        x = new int[size];
+        y = new int[size];
+        endX = new int[size];
+        endY = new int[size];
+        visible = new boolean[size];
+        color = new Color[size];
+        capture(Shapes);
+    }
+
+    /**
+     * Records the current state of the same shapes again, replacing the
+     * state recorded before, so a snapshot can be reused for many frames.
+     *
+     * @param Shapes The shapes the snapshot was taken from, or copies of them.
+     */
+    protected void capture(List<Shape> Shapes) {
+        for (int i = 0; i < x.length; i++) {
+            Shape CurrShape = Shapes.get(Members == null ? i : Members[i]);
+            x[i] = CurrShape.x;
+            y[i] = CurrShape.y;
+            endX[i] = CurrShape.endX;
+            endY[i] = CurrShape.endY;
+            visible[i] = CurrShape.visible;
+            color[i] = CurrShape.color;
+        }
+    }
+
+    /**
+     * Returns the given shapes to the recorded state.
+     *
+     * @param Shapes The shapes the snapshot was taken from, or copies of them.
+     */
+    protected void restore(List<Shape> Shapes) {
+        for (int i = 0; i < x.length; i++) {
+            Shape CurrShape = Shapes.get(Members == null ? i : Members[i]);
+            CurrShape.x = x[i];
+            CurrShape.y = y[i];
+            CurrShape.endX = endX[i];
+            CurrShape.endY = endY[i];
+            CurrShape.visible = visible[i];
+            CurrShape.color = color[i];
+        }
+    }
+
+    /**
+     * Copies the given shapes so they can be modified without affecting the
+     * originals.
+     *
+     * @param Shapes The shapes to copy.
+     * @return The copies, in the same order.
+     */
+    static protected ArrayList<Shape> copyOf(List<Shape> Shapes) {
+        ArrayList<Shape> copies = new ArrayList<>(Shapes.size());
+        for (Shape CurrShape : Shapes) {
+            copies.add(CurrShape.copy());
+        }
+        return copies;
+    }
+}
@@ -64,4 +64,29 @@ public class Shape {
      */
     protected int endY = 0;
 
+    /**
+     * Creates a copy of the shape that can be modified independently.
+     * <p>
+     * The {@link Shape#EffectList} is shared with the original, as effects are
+     * never modified once loaded.
+     *
+     * @return The copied shape.
+     */
+    protected Shape copy() {
+        Shape copy = new Shape();
+        copy.x = x;
+        copy.y = y;
+        copy.border = border;
+        copy.visible = visible;
+        copy.type = type;
+        copy.color = color;
+        copy.borderColor = borderColor;
+        copy.EffectList = EffectList;
+        copy.r = r;
+        copy.length = length;
+        copy.width = width;
+        copy.endX = endX;
+        copy.endY = endY;
+        return copy;
+    }
 }
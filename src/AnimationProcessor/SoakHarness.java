@@ -0,0 +1,329 @@
+package AnimationProcessor;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Plays animations of increasing size from start to finish without a
+ * display, and reports how long each part of playback took, to find the
+ * size at which the player stops keeping up.
+ * <p>
+ * For each size, a scene is made by a {@link SceneGenerator}, written as an
+ * input file, loaded into an {@link AnimationSession} and drawn frame by frame
+ * by the {@link HeadlessRenderer}. The report gives, for each size:
+ * <ul>
+ * <li>the time taken to load the file, and until the first frame was
+ * drawn;</li>
+ * <li>the 50th, 90th and 99th percentile and the longest time taken to apply
+ * the effects of a frame and draw it;</li>
+ * <li>the frame rate achieved, and the frame rate of the animation;</li>
+ * <li>the most heap memory used, and the number and total length of garbage
+ * collections.</li>
+ * </ul>
+ * <p>
+ * The arguments are {@code [--sizes <count>,<count>,...] [--frames <count>] [--effects <per shape>] [--seed <seed>]
+ * [--max-seconds <seconds>] [--report <file>] [--gate <fraction>]}. Sizes are played in order until one takes longer
+ * than {@code --max-seconds}. The report is printed, and also written as CSV to the {@code --report} file if one is
+ * given. With {@code --gate}, the harness exits with status 1 if any size achieves less than that fraction of the
+ * frame rate of the animation, so it can be used to catch slowdowns.
+ */
+public class SoakHarness {
+
+    /**
+     * The sizes played when none are given.
+     */
+    static protected final int[] DefaultSizes = {100, 1000, 10000, 100000};
+    /**
+     * The number of frames played when none is given. This is fewer than a
+     * generated scene has by default, so the largest sizes finish in minutes.
+     */
+    static protected final int DefaultFrames = 300;
+
+    /**
+     * The measurements taken while playing one size.
+     */
+    static protected class Result {
+
+        protected int Shapes;
+        protected int Frames;
+        protected double LoadMillis;
+        protected double FirstFrameMillis;
+        protected double P50Millis;
+        protected double P90Millis;
+        protected double P99Millis;
+        protected double MaxMillis;
+        protected double AchievedFps;
+        protected int TargetFps;
+        protected long PeakHeapBytes;
+        protected long GcCount;
+        protected long GcMillis;
+        protected double TotalSeconds;
+    }
+
+    /**
+     * Records the time each frame is finished at, rather than writing it
+     * anywhere.
+     */
+    static private class TimingSink implements FrameSink {
+
+        private final long[] Finished;
+
+        TimingSink(int Frames) {
+            Finished = new long[Frames];
+        }
+
+        public void writeFrame(int frame, BufferedImage image) {
+            Finished[frame] = System.nanoTime();
+        }
+
+        public void close() {
+        }
+    }
+
+    /**
+     * Creates the scenes that are played.
+     */
+    private final SceneGenerator Generator;
+
+    /**
+     * Defines a harness playing scenes made by the given generator.
+     *
+     * @param Generator Creates the scenes. Its number of frames is the number
+     * played for each size.
+     */
+    SoakHarness(SceneGenerator Generator) {
+        this.Generator = Generator;
+    }
+
+    /**
+     * Plays a scene of the given size from start to finish.
+     *
+     * @param count The number of shapes in the scene.
+     * @return The measurements taken.
+     * @throws IOException If the scene could not be written or read.
+     */
+    protected Result run(int count) throws IOException {
+        Result result = new Result();
+        result.Shapes = count;
+        Path file = Files.createTempFile("soak", ".txt");
+        try {
+            Generator.write(file, Generator.generate(count));
+            // Starts from an empty heap, so the memory of the previous size is not counted.
+            System.gc();
+            List<MemoryPoolMXBean> pools = heapPools();
+            for (MemoryPoolMXBean pool : pools) {
+                pool.resetPeakUsage();
+            }
+            long gcCount = gcCount();
+            long gcMillis = gcMillis();
+
+            long begin = System.nanoTime();
+            AnimationSession session = new AnimationSession();
+            session.loadAnimationFromFile(file.toString());
+            long loaded = System.nanoTime();
+            result.Frames = session.Frames;
+            result.TargetFps = session.Fps;
+            TimingSink sink = new TimingSink(result.Frames);
+            result.AchievedFps = new HeadlessRenderer(session).render(sink);
+            long end = System.nanoTime();
+
+            result.LoadMillis = (loaded - begin) / 1e6;
+            result.TotalSeconds = (end - begin) / 1e9;
+            if (result.Frames > 0) {
+                result.FirstFrameMillis = (sink.Finished[0] - begin) / 1e6;
+                // Each frame took from when the previous frame was finished, or from when loading finished.
+                double[] times = new double[result.Frames];
+                for (int frame = 0; frame < result.Frames; frame++) {
+                    times[frame] = (sink.Finished[frame] - (frame == 0 ? loaded : sink.Finished[frame - 1])) / 1e6;
+                }
+                Arrays.sort(times);
+                result.P50Millis = percentile(times, 50);
+                result.P90Millis = percentile(times, 90);
+                result.P99Millis = percentile(times, 99);
+                result.MaxMillis = times[times.length - 1];
+            }
+            for (MemoryPoolMXBean pool : pools) {
+                result.PeakHeapBytes += pool.getPeakUsage().getUsed();
+            }
+            result.GcCount = gcCount() - gcCount;
+            result.GcMillis = gcMillis() - gcMillis;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        return result;
+    }
+
+    /**
+     * Finds a percentile of sorted values, using the nearest rank.
+     *
+     * @param sorted The values, in ascending order. Must not be empty.
+     * @param percent The percentile, from 0 to 100.
+     * @return The smallest value that at least that percent of the values are
+     * no greater than.
+     */
+    static protected double percentile(double[] sorted, double percent) {
+        int rank = (int) Math.ceil(percent / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    /**
+     * Finds the memory pools that make up the heap.
+     *
+     * @return The heap memory pools.
+     */
+    static private List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+
+    /**
+     * Counts the garbage collections since the program started.
+     *
+     * @return The number of collections.
+     */
+    static private long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Adds up the time spent on garbage collection since the program started.
+     *
+     * @return The time in milliseconds.
+     */
+    static private long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * Prints the results as a table.
+     *
+     * @param out Where the table is printed.
+     * @param results The results, one row per size.
+     */
+    static protected void printReport(PrintStream out, List<Result> results) {
+        out.printf("%10s %8s %10s %10s %9s %9s %9s %9s %9s %7s %10s %6s %8s%n", "shapes", "frames", "load ms",
+                "first ms", "p50 ms", "p90 ms", "p99 ms", "max ms", "fps", "target", "peak MB", "gcs", "gc ms");
+        for (Result r : results) {
+            out.printf("%10d %8d %10.1f %10.1f %9.2f %9.2f %9.2f %9.2f %9.1f %7d %10.1f %6d %8d%n", r.Shapes, r.Frames,
+                    r.LoadMillis, r.FirstFrameMillis, r.P50Millis, r.P90Millis, r.P99Millis, r.MaxMillis, r.AchievedFps,
+                    r.TargetFps, r.PeakHeapBytes / 1048576.0, r.GcCount, r.GcMillis);
+        }
+    }
+
+    /**
+     * Writes the results as CSV, with a header row.
+     *
+     * @param file The file to write.
+     * @param results The results, one row per size.
+     * @throws IOException If the file could not be written.
+     */
+    static protected void writeReport(Path file, List<Result> results) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, "US-ASCII")) {
+            out.println("shapes,frames,load_ms,first_frame_ms,p50_ms,p90_ms,p99_ms,max_ms,achieved_fps,target_fps,"
+                    + "peak_heap_bytes,gc_count,gc_ms");
+            for (Result r : results) {
+                out.printf("%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.2f,%d,%d,%d,%d%n", r.Shapes, r.Frames, r.LoadMillis,
+                        r.FirstFrameMillis, r.P50Millis, r.P90Millis, r.P99Millis, r.MaxMillis, r.AchievedFps,
+                        r.TargetFps, r.PeakHeapBytes, r.GcCount, r.GcMillis);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Prevents AWT from looking for a display.
+        System.setProperty("java.awt.headless", "true");
+        int[] sizes = DefaultSizes;
+        int frames = DefaultFrames;
+        double effects = -1;
+        long seed = 42;
+        double maxSeconds = 120;
+        String report = null;
+        double gate = -1;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--sizes":
+                    sizes = Arrays.stream(args[i + 1].split(",")).mapToInt(size -> Integer.parseInt(size.trim())).toArray();
+                    break;
+                case "--frames":
+                    frames = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--effects":
+                    effects = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "--max-seconds":
+                    maxSeconds = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--report":
+                    report = args[i + 1];
+                    break;
+                case "--gate":
+                    gate = Double.parseDouble(args[i + 1]);
+                    break;
+                default:
+                    // Error Checking
+                    System.out.println("Usage: SoakHarness [--sizes <count>,<count>,...] [--frames <count>] [--effects <per shape>] "
+                            + "[--seed <seed>] [--max-seconds <seconds>] [--report <file>] [--gate <fraction>]");
+                    return;
+            }
+        }
+
+        SceneGenerator generator = new SceneGenerator(seed);
+        generator.Frames = frames;
+        if (effects >= 0) {
+            generator.EffectsPerShape = effects;
+        }
+        SoakHarness harness = new SoakHarness(generator);
+        List<Result> results = new ArrayList<>();
+        for (int size : sizes) {
+            Result result = harness.run(size);
+            results.add(result);
+            System.out.printf("Played %d shapes in %.1f seconds.%n", size, result.TotalSeconds);
+            // Larger sizes would only take longer, so the search stops once the limit is passed.
+            if (result.TotalSeconds > maxSeconds) {
+                System.out.printf("Stopped after %d shapes, which took longer than %.0f seconds.%n", size, maxSeconds);
+                break;
+            }
+        }
+        printReport(System.out, results);
+        if (report != null) {
+            writeReport(Paths.get(report), results);
+        }
+
+        if (gate >= 0) {
+            for (Result r : results) {
+                if (r.AchievedFps < gate * r.TargetFps) {
+                    System.out.printf("%d shapes achieved %.1f fps, below %.0f%% of the target of %d fps.%n", r.Shapes,
+                            r.AchievedFps, gate * 100, r.TargetFps);
+                    System.exit(1);
+                }
+            }
+        }
+    }
+}
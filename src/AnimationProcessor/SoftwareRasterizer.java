@@ -0,0 +1,580 @@
+package AnimationProcessor;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Draws shapes straight into an array of packed ARGB pixels, without going
+ * through Java2D.
+ * <p>
+ * Every shape is filled one row at a time: the part of each row covered by
+ * the shape is worked out directly from its geometry and filled with
+ * {@link Arrays#fill}, so there is no per-call setup as there is when drawing
+ * through a {@link java.awt.Graphics2D}. Colors are used as packed ints.
+ * <p>
+ * The shapes are drawn the way Java2D draws them without antialiasing, as
+ * {@link JComp#drawShape} does, covering the pixels whose centers are inside
+ * them. Circles and their thick borders are filled as rings, from where the
+ * center line of each row crosses the inner and outer circle, and thick lines
+ * as the rectangle around the line. Thin lines and thin borders of circles
+ * are stepped along one pixel at a time. Java2D flattens curves and steps
+ * along them in its own way, so an edge may land up to
+ * {@link SoftwareRasterizer#Tolerance} pixels from where Java2D puts it.
+ * Rectangles and lines cover the same pixels as Java2D.
+ * <p>
+ * A border thicker than the radius of its circle is filled as a full disc.
+ * Java2D leaves holes in such a border, where the inner edge of the stroke
+ * folds over itself, which this rasterizer does not copy.
+ */
+public class SoftwareRasterizer {
+
+    /**
+     * How far, in pixels, an edge drawn by this rasterizer may be from the
+     * same edge drawn by Java2D. Each pixel must match a pixel of the Java2D
+     * image no further away than this, in each direction, and the reverse.
+     */
+    static protected final int Tolerance = 1;
+    /**
+     * The share of the pixels of an image that may differ from Java2D by more
+     * than the {@link SoftwareRasterizer#Tolerance}. An edge moved by a pixel
+     * can show where Java2D hid the edge under a later shape, which no
+     * distance allows for.
+     */
+    static protected final double MismatchShare = 0.001;
+    /**
+     * How far Java2D moves a shape before it strokes or fills it, so that
+     * curves land on the same pixels as straight edges.
+     */
+    static private final double Nudge = 0.25;
+    /**
+     * The number of bits below the point of positions stepped in fixed
+     * point.
+     */
+    static private final int FractionBits = 24;
+
+    /**
+     * The pixels drawn into, row by row.
+     */
+    protected final int[] Pixels;
+    /**
+     * The size of the image in pixels.
+     */
+    protected final int Width;
+    protected final int Height;
+
+    /**
+     * Defines a rasterizer drawing into an array of pixels.
+     *
+     * @param Pixels The pixels, row by row.
+     * @param Width The width of the image.
+     * @param Height The height of the image.
+     */
+    SoftwareRasterizer(int[] Pixels, int Width, int Height) {
+        // Error Checking
+        // The array must hold every pixel of the image.
+        if (Pixels.length < Width * Height) {
+            throw new IllegalArgumentException("The pixels do not fill a " + Width + "x" + Height + " image");
+        }
+        this.Pixels = Pixels;
+        this.Width = Width;
+        this.Height = Height;
+    }
+
+    /**
+     * Defines a rasterizer drawing into an image that stores each pixel as an
+     * int.
+     *
+     * @param image The image, of type {@code TYPE_INT_RGB} or
+     * {@code TYPE_INT_ARGB}.
+     */
+    SoftwareRasterizer(BufferedImage image) {
+        this(((DataBufferInt) image.getRaster().getDataBuffer()).getData(), image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Clears the image and draws each shape onto it, as
+     * {@link HeadlessRenderer#drawFrame} does.
+     *
+     * @param Commands The shapes to draw, compiled into draw commands.
+     */
+    protected void drawFrame(DisplayList Commands) {
+        clear(HeadlessRenderer.Background.getRGB());
+        Commands.draw(this);
+    }
+
+    /**
+     * Fills the whole image with one color.
+     *
+     * @param argb The packed color.
+     */
+    protected void clear(int argb) {
+        Arrays.fill(Pixels, 0, Width * Height, argb);
+    }
+
+    /**
+     * Draws a shape, if it is visible, as {@link JComp#drawShape} does.
+     *
+     * @param CurrShape The shape to draw.
+     * @param op The kind of the shape, as found by
+     * {@link PackedScene#kindOf kindOf}.
+     * @param color The packed color of the shape.
+     * @param border The packed color of its border.
+     */
+    protected void drawShape(Shape CurrShape, byte op, int color, int border) {
+        if (!CurrShape.visible) {
+            return;
+        }
+        switch (op) {
+            case PackedScene.CIRCLE:
+                // The circle is given by its center, but drawn from the top left of its bounds, as by Java2D.
+                int left = CurrShape.x - CurrShape.r;
+                int top = CurrShape.y - CurrShape.r;
+                fillOval(left, top, CurrShape.r * 2, color);
+                drawOval(left, top, CurrShape.r * 2, CurrShape.border, border);
+                break;
+            case PackedScene.RECT:
+                fillRect(CurrShape.x, CurrShape.y, CurrShape.x + CurrShape.length, CurrShape.y + CurrShape.width, color);
+                drawRect(CurrShape.x, CurrShape.y, CurrShape.length, CurrShape.width, CurrShape.border, border);
+                break;
+            case PackedScene.LINE:
+                // The border is drawn as a thicker line underneath the line. A thin border is covered by the line itself.
+                if (CurrShape.border > 1) {
+                    drawLine(CurrShape.x, CurrShape.y, CurrShape.endX, CurrShape.endY, CurrShape.border, border);
+                }
+                drawLine(CurrShape.x, CurrShape.y, CurrShape.endX, CurrShape.endY, 1, color);
+                break;
+        }
+    }
+
+    /**
+     * Fills the pixels from one corner up to, but not including, another.
+     *
+     * @param x1 The left edge.
+     * @param y1 The top edge.
+     * @param x2 The column after the right edge.
+     * @param y2 The row after the bottom edge.
+     * @param pixel The packed color.
+     */
+    private void fillRect(int x1, int y1, int x2, int y2, int pixel) {
+        x1 = Math.max(x1, 0);
+        y1 = Math.max(y1, 0);
+        x2 = Math.min(x2, Width);
+        y2 = Math.min(y2, Height);
+        if (x1 >= x2) {
+            return;
+        }
+        for (int y = y1; y < y2; y++) {
+            Arrays.fill(Pixels, y * Width + x1, y * Width + x2, pixel);
+        }
+    }
+
+    /**
+     * Fills the pixels of a row whose centers are from one position up to,
+     * but not including, another.
+     *
+     * @param y The row.
+     * @param from The left edge of the span.
+     * @param to The right edge of the span.
+     * @param pixel The packed color.
+     */
+    private void fillSpan(int y, double from, double to, int pixel) {
+        int x1 = Math.max(firstCenter(from), 0);
+        int x2 = Math.min(firstCenter(to), Width);
+        if (x1 < x2) {
+            Arrays.fill(Pixels, y * Width + x1, y * Width + x2, pixel);
+        }
+    }
+
+    /**
+     * Fills the pixels of a row whose centers are from one position up to,
+     * but not including, another, with the positions in fixed point.
+     *
+     * @param y The row.
+     * @param from The left edge of the span.
+     * @param to The right edge of the span.
+     * @param pixel The packed color.
+     */
+    private void fillSpan(int y, long from, long to, int pixel) {
+        int x1 = (int) Math.max(firstCenter(from), 0);
+        int x2 = (int) Math.min(firstCenter(to), Width);
+        if (x1 < x2) {
+            Arrays.fill(Pixels, y * Width + x1, y * Width + x2, pixel);
+        }
+    }
+
+    /**
+     * Converts a position to fixed point, with {@link SoftwareRasterizer#FractionBits}
+     * bits below the point.
+     *
+     * @param position The position.
+     * @return The position in fixed point.
+     */
+    static private long fixed(double position) {
+        return (long) Math.floor(position * (1L << FractionBits));
+    }
+
+    /**
+     * Finds the first pixel whose center is not before a position in fixed
+     * point.
+     *
+     * @param position The position in fixed point.
+     * @return The pixel.
+     */
+    static private long firstCenter(long position) {
+        return (position + (1L << (FractionBits - 1)) - 1) >> FractionBits;
+    }
+
+    /**
+     * Finds the first pixel whose center is not before a position.
+     *
+     * @param position The position.
+     * @return The pixel.
+     */
+    static private int firstCenter(double position) {
+        return (int) Math.ceil(position - 0.5);
+    }
+
+    /**
+     * Fills a circle from the top left of its bounds, as
+     * {@link java.awt.Graphics#fillOval fillOval} does.
+     *
+     * @param x The left edge of the bounds.
+     * @param y The top edge of the bounds.
+     * @param size The diameter.
+     * @param pixel The packed color.
+     */
+    private void fillOval(int x, int y, int size, int pixel) {
+        if (size <= 0) {
+            return;
+        }
+        double half = size / 2.0;
+        fillRing(x + half + Nudge, y + half + Nudge, 0, half, pixel);
+    }
+
+    /**
+     * Draws the border of a circle from the top left of its bounds, as
+     * {@link java.awt.Graphics#drawOval drawOval} does with a stroke of the
+     * given thickness. Thin borders are stepped around one pixel at a time,
+     * and thicker borders are filled as a ring centered on the edge of the
+     * circle.
+     *
+     * @param x The left edge of the bounds.
+     * @param y The top edge of the bounds.
+     * @param size The diameter.
+     * @param thickness The thickness of the border.
+     * @param pixel The packed color.
+     */
+    private void drawOval(int x, int y, int size, int thickness, int pixel) {
+        // Java2D strokes nothing around a thick border of an empty circle.
+        if (size < 0 || (size == 0 && thickness > 1)) {
+            return;
+        }
+        if (thickness <= 1) {
+            drawThinOval(x + size / 2, y + size / 2, size / 2, pixel);
+            return;
+        }
+        double half = size / 2.0;
+        double width = thickness / 2.0;
+        fillRing(x + half + Nudge, y + half + Nudge, half - width, half + width, pixel);
+    }
+
+    /**
+     * Draws a circle one pixel thick, stepping around each eighth of it one
+     * row or column at a time and keeping the pixel closest to the circle, as
+     * Java2D does for thin borders. The circle passes through the pixels at
+     * the edges of its bounds.
+     *
+     * @param cx The x-coordinate of the center.
+     * @param cy The y-coordinate of the center.
+     * @param r The radius.
+     * @param pixel The packed color.
+     */
+    private void drawThinOval(int cx, int cy, int r, int pixel) {
+        int dx = r;
+        int dy = 0;
+        // The error is positive once the next step along the eighth would leave the circle.
+        int error = 1 - r;
+        while (dx >= dy) {
+            plot(cx + dx, cy + dy, pixel);
+            plot(cx - dx, cy + dy, pixel);
+            plot(cx + dx, cy - dy, pixel);
+            plot(cx - dx, cy - dy, pixel);
+            plot(cx + dy, cy + dx, pixel);
+            plot(cx - dy, cy + dx, pixel);
+            plot(cx + dy, cy - dx, pixel);
+            plot(cx - dy, cy - dx, pixel);
+            dy++;
+            if (error < 0) {
+                error += 2 * dy + 1;
+            } else {
+                dx--;
+                error += 2 * (dy - dx) + 1;
+            }
+        }
+    }
+
+    /**
+     * Sets one pixel, if it is inside the image.
+     *
+     * @param x The column.
+     * @param y The row.
+     * @param pixel The packed color.
+     */
+    private void plot(int x, int y, int pixel) {
+        if (x >= 0 && x < Width && y >= 0 && y < Height) {
+            Pixels[y * Width + x] = pixel;
+        }
+    }
+
+    /**
+     * Fills the pixels whose centers are between two circles around the same
+     * center. Each row is filled as the span inside the outer circle, less
+     * the span inside the inner circle.
+     *
+     * @param cx The x-coordinate of the center.
+     * @param cy The y-coordinate of the center.
+     * @param inner The radius of the inner circle, which is not filled.
+     * Circles with no area inside them are filled in full.
+     * @param outer The radius of the outer circle.
+     * @param pixel The packed color.
+     */
+    private void fillRing(double cx, double cy, double inner, double outer, int pixel) {
+        int y1 = Math.max(firstCenter(cy - outer), 0);
+        int y2 = Math.min(firstCenter(cy + outer), Height);
+        for (int y = y1; y < y2; y++) {
+            double dy = y + 0.5 - cy;
+            double reach = Math.sqrt(Math.max(0, outer * outer - dy * dy));
+            double gap = inner * inner - dy * dy;
+            if (inner <= 0 || gap <= 0) {
+                fillSpan(y, cx - reach, cx + reach, pixel);
+                continue;
+            }
+            gap = Math.sqrt(gap);
+            fillSpan(y, cx - reach, cx - gap, pixel);
+            fillSpan(y, cx + gap, cx + reach, pixel);
+        }
+    }
+
+    /**
+     * Draws the border of a rectangle, as
+     * {@link java.awt.Graphics#drawRect drawRect} does with a stroke of the
+     * given thickness.
+     *
+     * @param x The left edge.
+     * @param y The top edge.
+     * @param length The distance to the right edge.
+     * @param width The distance to the bottom edge.
+     * @param thickness The thickness of the border.
+     * @param pixel The packed color.
+     */
+    private void drawRect(int x, int y, int length, int width, int thickness, int pixel) {
+        if (length < 0 || width < 0) {
+            return;
+        }
+        if (thickness <= 1) {
+            // Thin borders cover the pixels on each edge, including the right and bottom edges.
+            fillRect(x, y, x + length + 1, y + 1, pixel);
+            fillRect(x, y + width, x + length + 1, y + width + 1, pixel);
+            fillRect(x, y + 1, x + 1, y + width, pixel);
+            fillRect(x + length, y + 1, x + length + 1, y + width, pixel);
+            return;
+        }
+        // The edges of the border, on either side of the edges of the rectangle.
+        double half = thickness / 2.0;
+        int outerX1 = firstCenter(x + Nudge - half);
+        int outerY1 = firstCenter(y + Nudge - half);
+        int outerX2 = firstCenter(x + length + Nudge + half);
+        int outerY2 = firstCenter(y + width + Nudge + half);
+        int innerX1 = firstCenter(x + Nudge + half);
+        int innerY1 = firstCenter(y + Nudge + half);
+        int innerX2 = firstCenter(x + length + Nudge - half);
+        int innerY2 = firstCenter(y + width + Nudge - half);
+        if (innerX1 >= innerX2 || innerY1 >= innerY2) {
+            fillRect(outerX1, outerY1, outerX2, outerY2, pixel);
+            return;
+        }
+        fillRect(outerX1, outerY1, outerX2, innerY1, pixel);
+        fillRect(outerX1, innerY2, outerX2, outerY2, pixel);
+        fillRect(outerX1, innerY1, innerX1, innerY2, pixel);
+        fillRect(innerX2, innerY1, outerX2, innerY2, pixel);
+    }
+
+    /**
+     * Draws a line, as {@link java.awt.Graphics#drawLine drawLine} does with
+     * a stroke of the given thickness.
+     *
+     * @param x1 The x-coordinate of the start.
+     * @param y1 The y-coordinate of the start.
+     * @param x2 The x-coordinate of the end.
+     * @param y2 The y-coordinate of the end.
+     * @param thickness The thickness of the line.
+     * @param pixel The packed color.
+     */
+    private void drawLine(int x1, int y1, int x2, int y2, int thickness, int pixel) {
+        if (thickness <= 1) {
+            drawThinLine(x1, y1, x2, y2, pixel);
+            return;
+        }
+        // A thick line is a rectangle around the line, extended by half the thickness past each end.
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double length = Math.sqrt(dx * dx + dy * dy);
+        // A line of no length is drawn as a square.
+        double ux = length == 0 ? 1 : dx / length;
+        double uy = length == 0 ? 0 : dy / length;
+        double half = thickness / 2.0;
+        double along = length / 2 + half;
+        double cx = (x1 + x2) / 2.0 + Nudge;
+        double cy = (y1 + y2) / 2.0 + Nudge;
+        double reach = along * Math.abs(uy) + half * Math.abs(ux);
+        int top = Math.max(firstCenter(cy - reach), 0);
+        int bottom = Math.min(firstCenter(cy + reach), Height);
+        // Each row is filled where its pixel centers are within reach of the center both along and across the line.
+        // Both limits move by the same amount from one row to the next, so they are found once for the first row,
+        // and then stepped in fixed point.
+        double q = top + 0.5 - cy;
+        long alongStep = ux == 0 ? 0 : fixed(-uy / ux);
+        long acrossStep = uy == 0 ? 0 : fixed(ux / uy);
+        long alongFrom = ux == 0 ? Long.MIN_VALUE / 2 : fixed(cx - along / Math.abs(ux) - q * uy / ux);
+        long alongTo = ux == 0 ? Long.MAX_VALUE / 2 : fixed(cx + along / Math.abs(ux) - q * uy / ux);
+        long acrossFrom = uy == 0 ? Long.MIN_VALUE / 2 : fixed(cx - half / Math.abs(uy) + q * ux / uy);
+        long acrossTo = uy == 0 ? Long.MAX_VALUE / 2 : fixed(cx + half / Math.abs(uy) + q * ux / uy);
+        for (int y = top; y < bottom; y++, q++) {
+            // A line along a row or column has no limit in one direction, and only the other is checked.
+            if (ux == 0 && Math.abs(q * uy) > along || uy == 0 && Math.abs(q * ux) > half) {
+                continue;
+            }
+            fillSpan(y, Math.max(alongFrom, acrossFrom), Math.min(alongTo, acrossTo), pixel);
+            alongFrom += alongStep;
+            alongTo += alongStep;
+            acrossFrom += acrossStep;
+            acrossTo += acrossStep;
+        }
+    }
+
+    /**
+     * Draws a line one pixel thick, stepping one pixel at a time along the
+     * longer direction and rounding the other, as Java2D does. Only the steps
+     * inside the image are taken.
+     *
+     * @param x1 The x-coordinate of the start.
+     * @param y1 The y-coordinate of the start.
+     * @param x2 The x-coordinate of the end.
+     * @param y2 The y-coordinate of the end.
+     * @param pixel The packed color.
+     */
+    private void drawThinLine(int x1, int y1, int x2, int y2, int pixel) {
+        if (y1 == y2) {
+            fillRect(Math.min(x1, x2), y1, Math.max(x1, x2) + 1, y1 + 1, pixel);
+        } else if (x1 == x2) {
+            fillRect(x1, Math.min(y1, y2), x1 + 1, Math.max(y1, y2) + 1, pixel);
+        } else if (Math.abs((long) x2 - x1) >= Math.abs((long) y2 - y1)) {
+            step(x1, y1, x2, y2, Width, Height, 1, Width, pixel);
+        } else {
+            step(y1, x1, y2, x2, Height, Width, Width, 1, pixel);
+        }
+    }
+
+    /**
+     * Steps along a line one pixel at a time in its longer direction, moving
+     * one pixel in the shorter direction whenever the line passes halfway to
+     * the next pixel.
+     *
+     * @param major1 The start, in the longer direction.
+     * @param minor1 The start, in the shorter direction.
+     * @param major2 The end, in the longer direction.
+     * @param minor2 The end, in the shorter direction.
+     * @param majorSize The size of the image in the longer direction.
+     * @param minorSize The size of the image in the shorter direction.
+     * @param majorStride The distance between pixels in the longer direction.
+     * @param minorStride The distance between pixels in the shorter direction.
+     * @param pixel The packed color.
+     */
+    private void step(int major1, int minor1, int major2, int minor2, int majorSize, int minorSize, int majorStride,
+            int minorStride, int pixel) {
+        int majorStep = major2 > major1 ? 1 : -1;
+        int minorStep = minor2 > minor1 ? 1 : -1;
+        long steps = Math.abs((long) major2 - major1);
+        long rise = 2 * Math.abs((long) minor2 - minor1);
+        long run = 2 * steps;
+        // Skips the steps before the line enters the image, and stops where it leaves.
+        long first = majorStep > 0 ? Math.max(0, -(long) major1) : Math.max(0, (long) major1 - (majorSize - 1));
+        long last = majorStep > 0 ? Math.min(steps, majorSize - 1 - (long) major1) : Math.min(steps, major1);
+        if (first > last) {
+            return;
+        }
+        // The error is how far the line is past the pixel, in units of twice the steps, starting half a pixel on.
+        long error = first * rise + steps;
+        int major = (int) (major1 + first * majorStep);
+        int minor = (int) (minor1 + error / run * minorStep);
+        error %= run;
+        // The position of the pixel is stepped along with the line, and only used while the line is inside the image.
+        long index = (long) major * majorStride + (long) minor * minorStride;
+        int majorDelta = majorStep * majorStride;
+        int minorDelta = minorStep * minorStride;
+        for (int i = (int) (last - first); i >= 0; i--) {
+            if (minor >= 0 && minor < minorSize) {
+                Pixels[(int) index] = pixel;
+            }
+            index += majorDelta;
+            error += rise;
+            if (error >= run) {
+                error -= run;
+                minor += minorStep;
+                index += minorDelta;
+            }
+        }
+    }
+
+    /**
+     * Counts the pixels that differ between two images of the same size by
+     * more than the {@link SoftwareRasterizer#Tolerance}. A pixel matches if
+     * a pixel of the same color is found in the other image no more than
+     * that many pixels away, checking both images against each other. An
+     * image drawn by this rasterizer matches the image drawn by Java2D when
+     * none differ.
+     *
+     * @param expected The pixels of the image drawn by Java2D.
+     * @param actual The pixels of the image drawn by this rasterizer.
+     * @param Width The width of the images.
+     * @param Height The height of the images.
+     * @return The number of pixels that do not match.
+     */
+    static protected int countMismatches(int[] expected, int[] actual, int Width, int Height) {
+        int mismatches = 0;
+        for (int y = 0; y < Height; y++) {
+            for (int x = 0; x < Width; x++) {
+                int i = y * Width + x;
+                if (expected[i] != actual[i]
+                        && (!isNear(expected, actual[i], x, y, Width, Height) || !isNear(actual, expected[i], x, y, Width, Height))) {
+                    mismatches++;
+                }
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * Checks whether a color is used by a pixel of an image within the
+     * {@link SoftwareRasterizer#Tolerance} of a position.
+     *
+     * @param pixels The pixels of the image.
+     * @param pixel The packed color.
+     * @param x The column of the position.
+     * @param y The row of the position.
+     * @param Width The width of the image.
+     * @param Height The height of the image.
+     * @return True if a pixel near the position has the color.
+     */
+    static private boolean isNear(int[] pixels, int pixel, int x, int y, int Width, int Height) {
+        for (int row = Math.max(0, y - Tolerance); row <= Math.min(Height - 1, y + Tolerance); row++) {
+            for (int column = Math.max(0, x - Tolerance); column <= Math.min(Width - 1, x + Tolerance); column++) {
+                if (pixels[row * Width + column] == pixel) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,322 @@
+package AnimationProcessor;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A uniform grid over the area covered by the visible shapes of an
+ * animation, used to find the shapes in part of the screen without visiting
+ * every shape.
+ * <p>
+ * Each cell of the grid lists the shapes whose bounds overlap it. The bounds
+ * of a shape are the same as those added to a {@link DirtyRegion}, so they
+ * include the border. Hidden shapes and shapes of unknown types are not
+ * listed, as they are never drawn.
+ * <p>
+ * Shapes are identified by their index in the list the grid was built from.
+ * When an effect changes a shape, {@link SpatialIndex#update update} must be
+ * called so the shape is moved to its new cells. Shapes moved outside the
+ * area the grid was built for are kept in the cells along its edge.
+ * <p>
+ * The grid is not safe to use from several threads. The
+ * {@link AnimationSession} only uses it while holding the lock on the
+ * {@link AnimationSession#ShapeList}.
+ */
+public class SpatialIndex {
+
+    /**
+     * The smallest size of a cell in pixels.
+     */
+    static protected final int MinCellSize = 32;
+    /**
+     * The largest number of cells along either side of the grid. Cells are
+     * made larger for scenes spread over a large area.
+     */
+    static protected final int MaxCells = 256;
+
+    /**
+     * The shapes being indexed.
+     */
+    private final List<Shape> Shapes;
+    /**
+     * The position of the top left cell, and the size of every cell.
+     */
+    private final int OriginX;
+    private final int OriginY;
+    private final int CellSize;
+    /**
+     * The number of cells in each row and column of the grid.
+     */
+    private final int Columns;
+    private final int Rows;
+    /**
+     * The shapes listed in each cell, and how many there are. Cells are
+     * stored row by row, and are only created once a shape is added to them.
+     */
+    private final int[][] Cells;
+    private final int[] CellSizes;
+
+    /**
+     * The bounds of each listed shape, as the left, top, right and bottom
+     * edge, stored four values per shape.
+     */
+    private final int[] Bounds;
+    /**
+     * Whether or not each shape is currently listed in the grid.
+     */
+    private final boolean[] Listed;
+
+    /**
+     * Marks the shapes found by a query, one bit per shape, so shapes
+     * overlapping several cells are only found once.
+     */
+    private final long[] Found;
+    /**
+     * The shapes found by the last {@link SpatialIndex#query query}, in the
+     * order they are drawn.
+     */
+    protected int[] Results = new int[64];
+
+    /**
+     * Holds the bounds of a shape while it is being added.
+     */
+    private final int[] Scratch = new int[4];
+
+    /**
+     * Builds a grid holding every visible shape.
+     *
+     * @param Shapes The shapes to index, in the order they are drawn.
+     */
+    SpatialIndex(List<Shape> Shapes) {
+        this(Shapes, null, null);
+    }
+
+    /**
+     * Builds a grid holding fixed areas instead of shapes, such as the area a
+     * shape covers across every position it moves to. Such a grid can only
+     * be queried, as it has no shapes to {@link SpatialIndex#update update}.
+     *
+     * @param Areas The left, top, right and bottom edges of each area, stored
+     * four values per area, in the order they are drawn.
+     * @param listed Whether or not each area is listed in the grid.
+     */
+    SpatialIndex(int[] Areas, boolean[] listed) {
+        this(null, Areas, listed);
+    }
+
+    /**
+     * Builds a grid from either shapes or fixed areas.
+     *
+     * @param Shapes The shapes to index, or null if the areas are given.
+     * @param Areas The areas to index, if there are no shapes.
+     * @param listed Whether or not each area is listed, if there are no
+     * shapes.
+     */
+    private SpatialIndex(List<Shape> Shapes, int[] Areas, boolean[] listed) {
+        this.Shapes = Shapes;
+        int size = Shapes != null ? Shapes.size() : listed.length;
+        Bounds = new int[size * 4];
+        Listed = new boolean[size];
+        Found = new long[(size + 63) / 64];
+
+        // Finds the area covered by the shapes, including the default size of the window.
+        long minX = 0, minY = 0;
+        long maxX = HeadlessRenderer.DefaultWidth, maxY = HeadlessRenderer.DefaultHeight;
+        for (int shape = 0; shape < size; shape++) {
+            if (Shapes != null ? DirtyRegion.boundsOf(Shapes.get(shape), Scratch) : listed[shape]) {
+                if (Shapes == null) {
+                    System.arraycopy(Areas, shape * 4, Scratch, 0, 4);
+                }
+                minX = Math.min(minX, Scratch[0]);
+                minY = Math.min(minY, Scratch[1]);
+                maxX = Math.max(maxX, Scratch[2]);
+                maxY = Math.max(maxY, Scratch[3]);
+            }
+        }
+        long extent = Math.max(maxX - minX, maxY - minY) + 1;
+        OriginX = (int) minX;
+        OriginY = (int) minY;
+        CellSize = (int) Math.max(MinCellSize, (extent + MaxCells - 1) / MaxCells);
+        Columns = (int) Math.min(MaxCells, (maxX - minX) / CellSize + 1);
+        Rows = (int) Math.min(MaxCells, (maxY - minY) / CellSize + 1);
+        Cells = new int[Columns * Rows][];
+        CellSizes = new int[Columns * Rows];
+
+        for (int shape = 0; shape < size; shape++) {
+            if (Shapes != null) {
+                update(shape);
+            } else if (listed[shape]) {
+                int b = shape * 4;
+                System.arraycopy(Areas, b, Bounds, b, 4);
+                Listed[shape] = true;
+                forEachCell(Bounds[b], Bounds[b + 1], Bounds[b + 2], Bounds[b + 3], shape, true);
+            }
+        }
+    }
+
+    /**
+     * Moves a shape to the cells matching its current bounds and visibility.
+     * This must be called whenever an effect changes the shape.
+     *
+     * @param shape The index of the shape.
+     */
+    protected void update(int shape) {
+        Shape CurrShape = Shapes.get(shape);
+        boolean listed = CurrShape.visible && DirtyRegion.boundsOf(CurrShape, Scratch);
+        int b = shape * 4;
+        if (Listed[shape]) {
+            // Nothing needs to change if the shape still covers the same cells.
+            if (listed && sameCells(b, Scratch)) {
+                System.arraycopy(Scratch, 0, Bounds, b, 4);
+                return;
+            }
+            forEachCell(Bounds[b], Bounds[b + 1], Bounds[b + 2], Bounds[b + 3], shape, false);
+        }
+        Listed[shape] = listed;
+        if (listed) {
+            System.arraycopy(Scratch, 0, Bounds, b, 4);
+            forEachCell(Bounds[b], Bounds[b + 1], Bounds[b + 2], Bounds[b + 3], shape, true);
+        }
+    }
+
+    /**
+     * Puts a new shape in the place of a shape, such as one replaced by a
+     * {@link HotReloader}, and moves it to the cells matching it.
+     *
+     * @param shape The index of the shape.
+     * @param CurrShape The new shape.
+     */
+    protected void replace(int shape, Shape CurrShape) {
+        Shapes.set(shape, CurrShape);
+        update(shape);
+    }
+
+    /**
+     * Finds every listed shape whose bounds overlap an area. The shapes are
+     * stored in {@link SpatialIndex#Results} in the order they are drawn.
+     *
+     * @param x1 The left edge of the area.
+     * @param y1 The top edge of the area.
+     * @param x2 The right edge of the area.
+     * @param y2 The bottom edge of the area.
+     * @return The number of shapes found.
+     */
+    protected int query(int x1, int y1, int x2, int y2) {
+        int first = Integer.MAX_VALUE;
+        int last = -1;
+        for (int row = rowOf(y1); row <= rowOf(y2); row++) {
+            for (int column = columnOf(x1); column <= columnOf(x2); column++) {
+                int cell = row * Columns + column;
+                int[] shapes = Cells[cell];
+                for (int i = 0; i < CellSizes[cell]; i++) {
+                    int shape = shapes[i];
+                    int b = shape * 4;
+                    // Cells are larger than most shapes, so the bounds of the shape itself are checked as well.
+                    if (Bounds[b] <= x2 && Bounds[b + 2] >= x1 && Bounds[b + 1] <= y2 && Bounds[b + 3] >= y1) {
+                        Found[shape >>> 6] |= 1L << shape;
+                        first = Math.min(first, shape);
+                        last = Math.max(last, shape);
+                    }
+                }
+            }
+        }
+
+        // Reads the marked shapes back in order, clearing the marks for the next query.
+        int count = 0;
+        for (int word = first >>> 6; word <= last >> 6; word++) {
+            long bits = Found[word];
+            Found[word] = 0;
+            while (bits != 0) {
+                if (count == Results.length) {
+                    Results = Arrays.copyOf(Results, count * 2);
+                }
+                Results[count++] = (word << 6) | Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finds the shape drawn on top at a point, using the bounds of each shape.
+     *
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @return The index of the last shape drawn over the point, or -1 if there
+     * is none.
+     */
+    protected int shapeAt(int x, int y) {
+        int count = query(x, y, x, y);
+        return count > 0 ? Results[count - 1] : -1;
+    }
+
+    /**
+     * Checks if new bounds cover the same cells as the stored bounds of a
+     * shape.
+     *
+     * @param b The position of the shape's stored bounds.
+     * @param bounds The new bounds.
+     * @return If the cells are the same.
+     */
+    private boolean sameCells(int b, int[] bounds) {
+        return columnOf(Bounds[b]) == columnOf(bounds[0]) && rowOf(Bounds[b + 1]) == rowOf(bounds[1])
+                && columnOf(Bounds[b + 2]) == columnOf(bounds[2]) && rowOf(Bounds[b + 3]) == rowOf(bounds[3]);
+    }
+
+    /**
+     * Adds a shape to, or removes it from, every cell overlapping an area.
+     *
+     * @param x1 The left edge of the area.
+     * @param y1 The top edge of the area.
+     * @param x2 The right edge of the area.
+     * @param y2 The bottom edge of the area.
+     * @param shape The index of the shape.
+     * @param add Whether the shape is added or removed.
+     */
+    private void forEachCell(int x1, int y1, int x2, int y2, int shape, boolean add) {
+        for (int row = rowOf(y1); row <= rowOf(y2); row++) {
+            for (int column = columnOf(x1); column <= columnOf(x2); column++) {
+                int cell = row * Columns + column;
+                if (add) {
+                    if (Cells[cell] == null) {
+                        Cells[cell] = new int[4];
+                    } else if (CellSizes[cell] == Cells[cell].length) {
+                        Cells[cell] = Arrays.copyOf(Cells[cell], CellSizes[cell] * 2);
+                    }
+                    Cells[cell][CellSizes[cell]++] = shape;
+                } else {
+                    // The order of shapes within a cell does not matter, so the last shape takes the removed shapes place.
+                    int[] shapes = Cells[cell];
+                    for (int i = 0; i < CellSizes[cell]; i++) {
+                        if (shapes[i] == shape) {
+                            shapes[i] = shapes[--CellSizes[cell]];
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the column holding an x-coordinate. Coordinates outside the grid
+     * are placed in the first or last column.
+     *
+     * @param x The x-coordinate.
+     * @return The column.
+     */
+    private int columnOf(int x) {
+        return (int) Math.max(0, Math.min(Columns - 1, Math.floorDiv((long) x - OriginX, CellSize)));
+    }
+
+    /**
+     * Finds the row holding a y-coordinate. Coordinates outside the grid are
+     * placed in the first or last row.
+     *
+     * @param y The y-coordinate.
+     * @return The row.
+     */
+    private int rowOf(int y) {
+        return (int) Math.max(0, Math.min(Rows - 1, Math.floorDiv((long) y - OriginY, CellSize)));
+    }
+}
@@ -0,0 +1,102 @@
+package AnimationProcessor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded queue passing items from one thread to another without locking.
+ * <p>
+ * Exactly one thread may add items and exactly one other thread may remove
+ * them. The items are held in a ring whose size is a power of two. Each side
+ * only writes its own position, and reads the position of the other side
+ * again only when the ring looks full or empty, so the two threads rarely
+ * touch the same memory.
+ * <p>
+ * Neither method waits. A full queue refuses new items, which is how the
+ * {@link RenderPipeline} holds back a stage that gets ahead of the next one.
+ *
+ * @param <T> The type of the items.
+ */
+public class SpscQueue<T> {
+
+    /**
+     * The ring holding the items, and the mask giving the slot of a position.
+     */
+    private final Object[] Items;
+    private final int Mask;
+    /**
+     * The position of the next item to remove, written only by the removing
+     * thread, and of the next item to add, written only by the adding thread.
+     */
+    private final AtomicLong Head = new AtomicLong();
+    private final AtomicLong Tail = new AtomicLong();
+    /**
+     * The position of the other side, as last read by each side.
+     */
+    private long CachedHead;
+    private long CachedTail;
+
+    /**
+     * Defines an empty queue.
+     *
+     * @param Capacity The number of items the queue can hold, which is
+     * rounded up to a power of two.
+     */
+    SpscQueue(int Capacity) {
+        int size = Integer.highestOneBit(Math.max(1, Capacity - 1)) << 1;
+        Items = new Object[Math.max(2, size)];
+        Mask = Items.length - 1;
+    }
+
+    /**
+     * Adds an item to the end of the queue, if there is room. Must only be
+     * called by the adding thread.
+     *
+     * @param item The item to add.
+     * @return False if the queue is full.
+     */
+    protected boolean offer(T item) {
+        long tail = Tail.get();
+        if (tail - CachedHead >= Items.length) {
+            CachedHead = Head.get();
+            if (tail - CachedHead >= Items.length) {
+                return false;
+            }
+        }
+        Items[(int) tail & Mask] = item;
+        // Publishes the item to the removing thread.
+        Tail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Removes the item at the front of the queue. Must only be called by the
+     * removing thread.
+     *
+     * @return The item, or null if the queue is empty.
+     */
+    @SuppressWarnings("unchecked")
+    protected T poll() {
+        long head = Head.get();
+        if (head >= CachedTail) {
+            CachedTail = Tail.get();
+            if (head >= CachedTail) {
+                return null;
+            }
+        }
+        int slot = (int) head & Mask;
+        T item = (T) Items[slot];
+        Items[slot] = null;
+        // Hands the slot back to the adding thread.
+        Head.lazySet(head + 1);
+        return item;
+    }
+
+    /**
+     * Finds the number of items the queue can hold.
+     *
+     * @return The capacity.
+     */
+    protected int capacity() {
+        return Items.length;
+    }
+}
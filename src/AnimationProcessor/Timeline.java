@@ -0,0 +1,363 @@
+package AnimationProcessor;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A frame-indexed view of every {@link Effect} stored in the
+ * {@link AnimationSession#ShapeList}.
+ * <p>
+ * Effects are grouped into buckets by their {@link Effect#start start} frame.
+ * This allows the program to find the next event with a binary search and to
+ * only visit the effects that occur on the current frame, rather than
+ * querying the effects of every shape.
+ * <p>
+ * Move and fade effects, which last for several frames, are kept separately
+ * in {@link Timeline#Tweened}. Frames on which they are active count as
+ * events, and they are applied after the instant effects of each frame.
+ */
+public class Timeline {
+
+    /**
+     * The frames on which at least one effect occurs, sorted in ascending
+     * order.
+     */
+    protected final int[] EventFrames;
+    /**
+     * The index of the first entry of each event frame's bucket. The bucket of
+     * {@code EventFrames[i]} spans {@code BucketStart[i]} up to (but not
+     * including) {@code BucketStart[i + 1]}.
+     */
+    protected final int[] BucketStart;
+    /**
+     * The index in the {@link AnimationSession#ShapeList} of the shape each
+     * entry belongs to.
+     */
+    protected final int[] ShapeIndex;
+    /**
+     * The effect of each entry.
+     */
+    protected final Effect[] Effects;
+    /**
+     * The move and fade effects.
+     */
+    protected final Tweens Tweened;
+
+    /**
+     * Stores the arrays making up the timeline. Timelines are created with
+     * {@link Timeline#build build}.
+     */
+    private Timeline(int[] EventFrames, int[] BucketStart, int[] ShapeIndex, Effect[] Effects, Tweens Tweened) {
+        this.EventFrames = EventFrames;
+        this.BucketStart = BucketStart;
+        this.ShapeIndex = ShapeIndex;
+        this.Effects = Effects;
+        this.Tweened = Tweened;
+    }
+
+    /**
+     * Compiles the effects of each shape into a timeline.
+     * <p>
+     * Effects that start on the same frame keep the order they were read in
+     * (shape by shape, then effect by effect), so they are applied in the
+     * same order as before.
+     *
+     * @param Shapes The shapes whose effects should be indexed.
+     * @return The compiled timeline.
+     */
+    static protected Timeline build(List<Shape> Shapes) {
+        // Counts the effects that can occur and finds the latest start frame. The animation only looks for events
+        // after the current frame, so effects starting on frame 0 have never been applied and are left out of the timeline.
+        // Move and fade effects are compiled separately.
+        int count = 0;
+        int last = 0;
+        for (Shape CurrShape : Shapes) {
+            for (Effect CurrEffect : CurrShape.EffectList) {
+                if (CurrEffect.start > 0 && !Tweens.isTween(CurrEffect)) {
+                    count++;
+                    last = Math.max(last, CurrEffect.start);
+                }
+            }
+        }
+
+        int[] ShapeIndex = new int[count];
+        Effect[] Effects = new Effect[count];
+        // Sorts the effects by start frame. Both sorts are stable, so effects on the same frame keep the order they were read in.
+        if (last <= 4L * count + 1024) {
+            countingSort(Shapes, last, ShapeIndex, Effects);
+        } else {
+            keySort(null, Shapes, count, ShapeIndex, Effects);
+        }
+
+        // Records where each frame's bucket begins.
+        int[] frames = new int[count];
+        int[] starts = new int[count + 1];
+        int buckets = 0;
+        for (int i = 0; i < count; i++) {
+            int frame = Effects[i].start;
+            // Starts a new bucket whenever the start frame changes.
+            if (buckets == 0 || frames[buckets - 1] != frame) {
+                frames[buckets] = frame;
+                starts[buckets] = i;
+                buckets++;
+            }
+        }
+        starts[buckets] = count;
+
+        return new Timeline(Arrays.copyOf(frames, buckets), Arrays.copyOf(starts, buckets + 1), ShapeIndex, Effects, new Tweens(Shapes));
+    }
+
+    /**
+     * Builds the timeline of the same shapes after some of them have been
+     * replaced, such as by a {@link HotReloader}. The entries of the replaced
+     * shapes are swapped for the effects of the new shapes in the buckets of
+     * this timeline, and every other entry keeps its place, so the effects
+     * are not sorted again. This timeline is left unchanged, as it may still
+     * be in use.
+     * <p>
+     * The move and fade effects are only compiled again if a replaced shape
+     * has any.
+     *
+     * @param Shapes The shapes, with the new shapes in place of those
+     * replaced. There must be as many as the timeline was built from.
+     * @param changed The index of each replaced shape, in ascending order.
+     * @return The timeline of the shapes.
+     */
+    protected Timeline patch(List<Shape> Shapes, int[] changed) {
+        // Sorts the effects of the new shapes by start frame, keeping the order they were read in.
+        int added = 0;
+        for (int shape : changed) {
+            for (Effect CurrEffect : Shapes.get(shape).EffectList) {
+                if (CurrEffect.start > 0 && !Tweens.isTween(CurrEffect)) {
+                    added++;
+                }
+            }
+        }
+        int[] addedShape = new int[added];
+        Effect[] addedEffects = new Effect[added];
+        keySort(changed, Shapes, added, addedShape, addedEffects);
+
+        // Merges the new entries into the entries kept. Entries on the same frame are in the order of their shapes.
+        int kept = 0;
+        for (int shape : ShapeIndex) {
+            if (Arrays.binarySearch(changed, shape) < 0) {
+                kept++;
+            }
+        }
+        int count = kept + added;
+        int[] shapeIndex = new int[count];
+        Effect[] effects = new Effect[count];
+        int[] frames = new int[count];
+        int[] starts = new int[count + 1];
+        int buckets = 0;
+        for (int i = 0, old = 0, next = 0; i < count; i++) {
+            // Skips the entries of the replaced shapes.
+            while (old < ShapeIndex.length && Arrays.binarySearch(changed, ShapeIndex[old]) >= 0) {
+                old++;
+            }
+            boolean takeOld = next == added || (old < ShapeIndex.length && (Effects[old].start < addedEffects[next].start
+                    || (Effects[old].start == addedEffects[next].start && ShapeIndex[old] < addedShape[next])));
+            if (takeOld) {
+                shapeIndex[i] = ShapeIndex[old];
+                effects[i] = Effects[old++];
+            } else {
+                shapeIndex[i] = addedShape[next];
+                effects[i] = addedEffects[next++];
+            }
+            // Starts a new bucket whenever the start frame changes.
+            int frame = effects[i].start;
+            if (buckets == 0 || frames[buckets - 1] != frame) {
+                frames[buckets] = frame;
+                starts[buckets] = i;
+                buckets++;
+            }
+        }
+        starts[buckets] = count;
+
+        // The moves and fades of the other shapes do not depend on the replaced shapes.
+        boolean tweened = false;
+        for (int shape : Tweened.ShapeIndex) {
+            tweened |= Arrays.binarySearch(changed, shape) >= 0;
+        }
+        for (int shape : changed) {
+            for (Effect CurrEffect : Shapes.get(shape).EffectList) {
+                tweened |= Tweens.isTween(CurrEffect);
+            }
+        }
+        Tweens tweens = tweened ? new Tweens(Shapes) : Tweened;
+        return new Timeline(Arrays.copyOf(frames, buckets), Arrays.copyOf(starts, buckets + 1), shapeIndex, effects, tweens);
+    }
+
+    /**
+     * Sorts the effects by counting how many start on each frame. This is used
+     * when the start frames are not much larger than the number of effects.
+     *
+     * @param Shapes The shapes whose effects should be sorted.
+     * @param last The latest start frame.
+     * @param ShapeIndex Receives the shape index of each sorted effect.
+     * @param Effects Receives the sorted effects.
+     */
+    static private void countingSort(List<Shape> Shapes, int last, int[] ShapeIndex, Effect[] Effects) {
+        // Counts the effects on each frame, then converts the counts into the position of each frame's first effect.
+        int[] position = new int[last + 2];
+        for (Shape CurrShape : Shapes) {
+            for (Effect CurrEffect : CurrShape.EffectList) {
+                if (CurrEffect.start > 0 && !Tweens.isTween(CurrEffect)) {
+                    position[CurrEffect.start + 1]++;
+                }
+            }
+        }
+        for (int frame = 1; frame < position.length; frame++) {
+            position[frame] += position[frame - 1];
+        }
+        // Places each effect after the effects on the same frame that were read before it.
+        for (int shape = 0; shape < Shapes.size(); shape++) {
+            for (Effect CurrEffect : Shapes.get(shape).EffectList) {
+                if (CurrEffect.start > 0 && !Tweens.isTween(CurrEffect)) {
+                    int i = position[CurrEffect.start]++;
+                    ShapeIndex[i] = shape;
+                    Effects[i] = CurrEffect;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorts the effects by combining each start frame with the order the
+     * effect was read in. This is used when the start frames are spread too
+     * far apart to count them.
+     *
+     * @param only The index of each shape whose effects should be sorted, in
+     * ascending order, or null to sort the effects of every shape.
+     * @param Shapes The shapes whose effects should be sorted.
+     * @param count The number of effects to sort.
+     * @param ShapeIndex Receives the shape index of each sorted effect.
+     * @param Effects Receives the sorted effects.
+     */
+    static private void keySort(int[] only, List<Shape> Shapes, int count, int[] ShapeIndex, Effect[] Effects) {
+        // Each key holds the start frame in the upper 32 bits and the order the effect was read in the lower 32 bits.
+        long[] keys = new long[count];
+        int[] shapeOf = new int[count];
+        Effect[] effectOf = new Effect[count];
+        int size = only == null ? Shapes.size() : only.length;
+        for (int i = 0, seq = 0; i < size; i++) {
+            int shape = only == null ? i : only[i];
+            for (Effect CurrEffect : Shapes.get(shape).EffectList) {
+                if (CurrEffect.start > 0 && !Tweens.isTween(CurrEffect)) {
+                    keys[seq] = ((long) CurrEffect.start << 32) | seq;
+                    shapeOf[seq] = shape;
+                    effectOf[seq] = CurrEffect;
+                    seq++;
+                }
+            }
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < count; i++) {
+            int seq = (int) keys[i];
+            ShapeIndex[i] = shapeOf[seq];
+            Effects[i] = effectOf[seq];
+        }
+    }
+
+    /**
+     * Determines the first frame after the given frame on which an event will
+     * occur.
+     *
+     * @param frame The current frame.
+     * @return The next event frame, or {@link Integer#MAX_VALUE} if no events
+     * occur after the given frame.
+     */
+    protected int nextEvent(int frame) {
+        // Finds the first event frame that is greater than the given frame.
+        int bucket = Arrays.binarySearch(EventFrames, frame);
+        bucket = bucket < 0 ? -bucket - 1 : bucket + 1;
+        int next = bucket < EventFrames.length ? EventFrames[bucket] : Integer.MAX_VALUE;
+        // Frames on which a move or fade effect is active are events as well.
+        return Math.min(next, Tweened.nextActive(frame));
+    }
+
+    /**
+     * Finds the bucket holding the effects that occur on the given frame.
+     *
+     * @param frame The frame to look up.
+     * @return The index of the bucket in {@link Timeline#EventFrames}, or -1
+     * if no effects occur on the frame.
+     */
+    protected int bucketOf(int frame) {
+        int bucket = Arrays.binarySearch(EventFrames, frame);
+        return bucket < 0 ? -1 : bucket;
+    }
+
+    /**
+     * Applies every effect that occurs on the given frame to its shape.
+     *
+     * @param frame The frame whose effects should be applied.
+     * @param Shapes The shapes the timeline was built from.
+     */
+    protected void apply(int frame, List<Shape> Shapes) {
+        apply(frame, Shapes, null, null);
+    }
+
+    /**
+     * Applies every effect that occurs on the given frame to its shape,
+     * records the area of the screen each effect changes, and keeps the
+     * spatial index of the shapes up to date.
+     *
+     * @param frame The frame whose effects should be applied.
+     * @param Shapes The shapes the timeline was built from.
+     * @param dirty Receives the area covered by each changed shape before and
+     * after its effect, or null if the area is not needed.
+     * @param index The spatial index of the shapes, updated as each shape
+     * changes, or null if there is none.
+     */
+    protected void apply(int frame, List<Shape> Shapes, DirtyRegion dirty, SpatialIndex index) {
+        // Finds the effects that occur on this frame.
+        int bucket = bucketOf(frame);
+        // Cycles through each effect occurring on this frame.
+        for (int i = bucket < 0 ? 0 : BucketStart[bucket]; bucket >= 0 && i < BucketStart[bucket + 1]; i++) {
+            Shape CurrShape = Shapes.get(ShapeIndex[i]);
+            if (dirty != null) {
+                dirty.add(CurrShape);
+            }
+            AnimationPlayer.applyEffect(CurrShape, Effects[i]);
+            if (dirty != null) {
+                dirty.add(CurrShape);
+            }
+            if (index != null) {
+                index.update(ShapeIndex[i]);
+            }
+        }
+        // Moves and fades are applied after the instant effects.
+        Tweened.apply(frame, Shapes, dirty, index);
+    }
+
+    /**
+     * Applies every effect that occurs from one frame up to (but not
+     * including) another, in the order they would be applied during playback.
+     *
+     * @param from The first frame whose effects should be applied.
+     * @param to The frame to stop at.
+     * @param Shapes The shapes the timeline was built from.
+     */
+    protected void applyRange(int from, int to, List<Shape> Shapes) {
+        // Finds the first event frame that is not before the starting frame.
+        int bucket = Arrays.binarySearch(EventFrames, from);
+        bucket = bucket < 0 ? -bucket - 1 : bucket;
+        // Only the last change each move or fade makes within the range needs to be applied.
+        long[] changes = Tweened.lastChanges(from, to);
+        int change = 0;
+        // Cycles through each event frame before the frame to stop at, along with the move and fade changes in frame order.
+        // Instant effects are applied before moves and fades on the same frame.
+        while ((bucket < EventFrames.length && EventFrames[bucket] < to) || change < changes.length) {
+            if (change == changes.length || (bucket < EventFrames.length && EventFrames[bucket] < to && EventFrames[bucket] <= (int) (changes[change] >> 32))) {
+                for (int i = BucketStart[bucket]; i < BucketStart[bucket + 1]; i++) {
+                    AnimationPlayer.applyEffect(Shapes.get(ShapeIndex[i]), Effects[i]);
+                }
+                bucket++;
+            } else {
+                Tweened.applyEffect((int) changes[change], (int) (changes[change] >> 32), Shapes);
+                change++;
+            }
+        }
+    }
+}
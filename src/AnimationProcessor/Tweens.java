@@ -0,0 +1,664 @@
+package AnimationProcessor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The move and fade effects of an animation, which change a shape gradually
+ * between their start and end frames rather than all at once.
+ * <p>
+ * A move effect takes a shape from wherever it is on its start frame to its
+ * {@link Effect#x x} and {@link Effect#y y} coordinates on its end frame, and
+ * a fade effect changes its color to the {@link Effect#newColor new color}
+ * in the same way. The progress between the frames is linear, or follows one
+ * of the easing curves chosen by {@link Effect#ease ease}.
+ * <p>
+ * The value each effect starts from is worked out once, when the animation
+ * is loaded, so the value of every effect on any frame can be calculated
+ * without playing the frames before it. This lets tweens be used while
+ * seeking and by the {@link ParallelRenderer}.
+ * <p>
+ * The effects active on a frame are evaluated together in a single loop over
+ * arrays of primitives, with one array for each value needed to evaluate an
+ * effect. When the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}, the loop is run by
+ * {@link VectorTweens} with the vector API, several effects at a time, and
+ * otherwise one effect at a time. Both give exactly the same values. Each
+ * effect is stored once. The frames are split into blocks of
+ * {@link Tweens#BlockSize} frames, and each block only lists the effects
+ * active during it, so a frame only evaluates the effects of its block and
+ * an effect spanning many blocks costs one index in each.
+ * <p>
+ * A timeline of tweens is safe to use from several threads, as each thread
+ * evaluates effects into its own buffers.
+ */
+public class Tweens {
+
+    /**
+     * The easing curves, which control how quickly an effect progresses.
+     */
+    static protected final int LINEAR = 0;
+    static protected final int EASE_IN = 1;
+    static protected final int EASE_OUT = 2;
+    static protected final int EASE_IN_OUT = 3;
+    /**
+     * Each easing curve as the coefficients a, b and c of
+     * {@code a*t + b*t^2 + c*t^3}, indexed by curve.
+     */
+    static private final float[][] Curves = {{1, 0, 0}, {0, 1, 0}, {2, -1, 0}, {0, 3, -2}};
+
+    /**
+     * The number of frames covered by each block of effects.
+     */
+    static protected final int BlockSize = 256;
+
+    /**
+     * Evaluates the entries of a block with the vector API, or null if the
+     * vector API is not available.
+     */
+    static private final Evaluator Vectorized = loadVectorized();
+
+    /**
+     * Evaluates the entries of a block of effects on a frame, as
+     * {@link Tweens#evaluateScalar evaluateScalar} does.
+     */
+    interface Evaluator {
+
+        /**
+         * Evaluates the entries of a block on a frame.
+         *
+         * @param Effects The effects the block belongs to.
+         * @param first The first entry of the block.
+         * @param last The entry after the last entry of the block.
+         * @param frame The frame.
+         * @param out0 Receives the first value of each entry.
+         * @param out1 Receives the second value of each entry.
+         * @param out2 Receives the third value of each entry.
+         */
+        void evaluate(Tweens Effects, int first, int last, int frame, int[] out0, int[] out1, int[] out2);
+    }
+
+    /**
+     * The number of effects.
+     */
+    protected final int Size;
+    /**
+     * The index in the {@link AnimationSession#ShapeList} of the shape each
+     * effect changes. Effects are sorted by start frame, and effects that
+     * start on the same frame keep the order they were read in.
+     */
+    protected final int[] ShapeIndex;
+    /**
+     * The kind of each effect, {@link PackedScene#MOVE} or
+     * {@link PackedScene#FADE}.
+     */
+    private final byte[] Kind;
+    /**
+     * Whether or not the shape of each effect is a line, whose endpoint moves
+     * with it.
+     */
+    private final boolean[] Line;
+    /**
+     * The first and last frame on which each effect changes its shape.
+     */
+    private final int[] Start;
+    private final int[] End;
+    /**
+     * The frame on which each effect has made no progress, and the progress
+     * it makes each frame.
+     */
+    final float[] Origin;
+    final float[] Rate;
+    /**
+     * The easing curve of each effect.
+     */
+    private final byte[] Ease;
+    /**
+     * The values each effect changes from and to, stored three per effect:
+     * the x and y coordinates of a move, or the red, green and blue
+     * components of a fade.
+     */
+    private final int[] From;
+    private final int[] To;
+
+    /**
+     * The frames on which at least one effect is active, as pairs of first
+     * and last frames, sorted and without overlaps.
+     */
+    private final int[] Active;
+
+    /**
+     * The coefficients of the easing curve of each effect, and the values it
+     * changes from and the distance to the values it changes to, in the form
+     * used to evaluate it.
+     */
+    final float[] A;
+    final float[] B;
+    final float[] C;
+    final float[] From0;
+    final float[] From1;
+    final float[] From2;
+    final float[] Delta0;
+    final float[] Delta1;
+    final float[] Delta2;
+
+    /**
+     * The position of the first entry of each block. The entries of block
+     * {@code b} span {@code BlockStart[b]} up to (but not including)
+     * {@code BlockStart[b + 1]}.
+     */
+    final int[] BlockStart;
+    /**
+     * The effect of each entry, in order.
+     */
+    final int[] BlockEffect;
+
+    /**
+     * The buffers each thread evaluates effects into.
+     */
+    private final ThreadLocal<Batch> Batches;
+
+    /**
+     * The buffers a single thread evaluates effects into.
+     */
+    static private class Batch {
+
+        /**
+         * The values of each entry of a block, in the order of
+         * {@link Tweens#From}.
+         */
+        final int[] Out0;
+        final int[] Out1;
+        final int[] Out2;
+        /**
+         * The colors created by fades.
+         */
+        final ColorCache Colors = new ColorCache();
+
+        Batch(int size) {
+            Out0 = new int[size];
+            Out1 = new int[size];
+            Out2 = new int[size];
+        }
+    }
+
+    /**
+     * Checks if an effect is a move or fade effect.
+     *
+     * @param CurrEffect The effect to check.
+     * @return If the effect is handled by {@link Tweens} rather than a
+     * {@link Timeline}.
+     */
+    static protected boolean isTween(Effect CurrEffect) {
+        byte kind = PackedScene.effectKindOf(CurrEffect.type);
+        return kind == PackedScene.MOVE || kind == PackedScene.FADE;
+    }
+
+    /**
+     * Compiles the move and fade effects of each shape.
+     *
+     * @param Shapes The shapes whose effects should be compiled, in the state
+     * of frame 0.
+     */
+    Tweens(List<Shape> Shapes) {
+        // Finds every tween, keyed by start frame and then the order it was read in.
+        List<Effect> effects = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        for (int shape = 0; shape < Shapes.size(); shape++) {
+            for (Effect CurrEffect : Shapes.get(shape).EffectList) {
+                // Effects on frame 0 are never applied, as by the Timeline.
+                if (isTween(CurrEffect) && CurrEffect.start > 0) {
+                    effects.add(CurrEffect);
+                    owners.add(shape);
+                }
+            }
+        }
+        Size = effects.size();
+        long[] keys = new long[Size];
+        for (int i = 0; i < Size; i++) {
+            keys[i] = ((long) effects.get(i).start << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        ShapeIndex = new int[Size];
+        Kind = new byte[Size];
+        Line = new boolean[Size];
+        Start = new int[Size];
+        End = new int[Size];
+        Origin = new float[Size];
+        Rate = new float[Size];
+        Ease = new byte[Size];
+        From = new int[Size * 3];
+        To = new int[Size * 3];
+        for (int k = 0; k < Size; k++) {
+            int i = (int) keys[k];
+            Effect CurrEffect = effects.get(i);
+            ShapeIndex[k] = owners.get(i);
+            Kind[k] = PackedScene.effectKindOf(CurrEffect.type);
+            Line[k] = PackedScene.kindOf(Shapes.get(ShapeIndex[k]).type) == PackedScene.LINE;
+            Start[k] = CurrEffect.start;
+            // Error Checking
+            // An effect that ends before it starts is finished on its start frame.
+            End[k] = Math.max(CurrEffect.start, CurrEffect.end);
+            int span = End[k] - Start[k];
+            Origin[k] = span > 0 ? Start[k] : Start[k] - 1;
+            Rate[k] = 1f / Math.max(1, span);
+            Ease[k] = (byte) (CurrEffect.ease >= 0 && CurrEffect.ease < Curves.length ? CurrEffect.ease : LINEAR);
+            if (Kind[k] == PackedScene.MOVE) {
+                To[k * 3] = CurrEffect.x;
+                To[k * 3 + 1] = CurrEffect.y;
+            } else {
+                To[k * 3] = CurrEffect.newColor.getRed();
+                To[k * 3 + 1] = CurrEffect.newColor.getGreen();
+                To[k * 3 + 2] = CurrEffect.newColor.getBlue();
+            }
+        }
+        findStartingValues(Shapes);
+
+        // Merges the frames each effect is active on.
+        int[] active = new int[Size * 2];
+        int pairs = 0;
+        for (int k = 0; k < Size; k++) {
+            if (pairs > 0 && Start[k] <= active[pairs * 2 - 1] + 1) {
+                active[pairs * 2 - 1] = Math.max(active[pairs * 2 - 1], End[k]);
+            } else {
+                active[pairs * 2] = Start[k];
+                active[pairs * 2 + 1] = End[k];
+                pairs++;
+            }
+        }
+        Active = Arrays.copyOf(active, pairs * 2);
+
+        // Stores the values each effect is evaluated from.
+        A = new float[Size];
+        B = new float[Size];
+        C = new float[Size];
+        From0 = new float[Size];
+        From1 = new float[Size];
+        From2 = new float[Size];
+        Delta0 = new float[Size];
+        Delta1 = new float[Size];
+        Delta2 = new float[Size];
+        for (int k = 0; k < Size; k++) {
+            float[] curve = Curves[Ease[k]];
+            A[k] = curve[0];
+            B[k] = curve[1];
+            C[k] = curve[2];
+            From0[k] = From[k * 3];
+            From1[k] = From[k * 3 + 1];
+            From2[k] = From[k * 3 + 2];
+            Delta0[k] = To[k * 3] - From[k * 3];
+            Delta1[k] = To[k * 3 + 1] - From[k * 3 + 1];
+            Delta2[k] = To[k * 3 + 2] - From[k * 3 + 2];
+        }
+
+        // Counts the entries of each block, then lists each effect in every block it is active during.
+        int last = 0;
+        for (int k = 0; k < Size; k++) {
+            last = Math.max(last, End[k]);
+        }
+        int blocks = Size == 0 ? 0 : last / BlockSize + 1;
+        BlockStart = new int[blocks + 1];
+        for (int k = 0; k < Size; k++) {
+            for (int b = Start[k] / BlockSize; b <= End[k] / BlockSize; b++) {
+                BlockStart[b + 1]++;
+            }
+        }
+        int largest = 0;
+        for (int b = 0; b < blocks; b++) {
+            largest = Math.max(largest, BlockStart[b + 1]);
+            BlockStart[b + 1] += BlockStart[b];
+        }
+        BlockEffect = new int[BlockStart[blocks]];
+        int[] next = Arrays.copyOf(BlockStart, blocks);
+        for (int k = 0; k < Size; k++) {
+            for (int b = Start[k] / BlockSize; b <= End[k] / BlockSize; b++) {
+                BlockEffect[next[b]++] = k;
+            }
+        }
+        final int size = largest;
+        Batches = ThreadLocal.withInitial(() -> new Batch(size));
+    }
+
+    /**
+     * Works out the value each effect starts from: the position or color of
+     * its shape on its start frame.
+     * <p>
+     * On every frame, the instant effects of the frame are applied first, then
+     * every active tween in order. The starting value of an effect is
+     * therefore set by whichever of these last changed the same part of the
+     * shape before it: the shape itself, a jump or color change, or an
+     * earlier tween.
+     *
+     * @param Shapes The shapes of the effects, in the state of frame 0.
+     */
+    private void findStartingValues(List<Shape> Shapes) {
+        // Groups the effects by shape, keeping their order.
+        int[] count = new int[Shapes.size() + 1];
+        for (int k = 0; k < Size; k++) {
+            count[ShapeIndex[k] + 1]++;
+        }
+        for (int shape = 0; shape < Shapes.size(); shape++) {
+            count[shape + 1] += count[shape];
+        }
+        int[] byShape = new int[Size];
+        int[] next = Arrays.copyOf(count, Shapes.size());
+        for (int k = 0; k < Size; k++) {
+            byShape[next[ShapeIndex[k]]++] = k;
+        }
+
+        int[] value = new int[3];
+        for (int shape = 0; shape < Shapes.size(); shape++) {
+            Shape CurrShape = Shapes.get(shape);
+            for (int i = count[shape]; i < count[shape + 1]; i++) {
+                int k = byShape[i];
+                boolean move = Kind[k] == PackedScene.MOVE;
+                // Starts from the shape itself, which changes before frame 0.
+                long latest = Long.MIN_VALUE;
+                if (move) {
+                    From[k * 3] = CurrShape.x;
+                    From[k * 3 + 1] = CurrShape.y;
+                } else {
+                    From[k * 3] = CurrShape.color.getRed();
+                    From[k * 3 + 1] = CurrShape.color.getGreen();
+                    From[k * 3 + 2] = CurrShape.color.getBlue();
+                }
+                // Instant effects are ordered by frame, then the order they were read in.
+                int seq = 0;
+                for (Effect CurrEffect : CurrShape.EffectList) {
+                    byte kind = PackedScene.effectKindOf(CurrEffect.type);
+                    boolean matches = move ? kind == PackedScene.JUMP : kind == PackedScene.CHANGECOLOR;
+                    long key = orderOf(CurrEffect.start, 0, seq++);
+                    if (matches && CurrEffect.start > 0 && CurrEffect.start <= Start[k] && key > latest) {
+                        latest = key;
+                        if (move) {
+                            From[k * 3] = CurrEffect.x;
+                            From[k * 3 + 1] = CurrEffect.y;
+                        } else {
+                            From[k * 3] = CurrEffect.newColor.getRed();
+                            From[k * 3 + 1] = CurrEffect.newColor.getGreen();
+                            From[k * 3 + 2] = CurrEffect.newColor.getBlue();
+                        }
+                    }
+                }
+                // Earlier tweens of the same kind last changed the shape on their end frame or this effect's start frame.
+                for (int j = count[shape]; j < i; j++) {
+                    int earlier = byShape[j];
+                    if (Kind[earlier] != Kind[k]) {
+                        continue;
+                    }
+                    int frame = Math.min(End[earlier], Start[k]);
+                    long key = orderOf(frame, 1, earlier);
+                    if (key > latest) {
+                        latest = key;
+                        valueAt(earlier, frame, value);
+                        System.arraycopy(value, 0, From, k * 3, 3);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Combines the frame, phase and position of a change into a single
+     * number, so the latest change has the largest number.
+     *
+     * @param frame The frame of the change.
+     * @param phase 0 for an instant effect, 1 for a tween.
+     * @param position The order of the change within its phase.
+     * @return The combined number.
+     */
+    static private long orderOf(int frame, int phase, int position) {
+        return ((long) frame << 32) | ((long) phase << 31) | position;
+    }
+
+    /**
+     * Calculates the value of an effect on a frame within it. This gives the
+     * same result as the batched evaluation.
+     *
+     * @param k The effect.
+     * @param frame The frame.
+     * @param value Receives the three values of the effect.
+     */
+    private void valueAt(int k, int frame, int[] value) {
+        float[] curve = Curves[Ease[k]];
+        float t = Math.min(1f, Math.max(0f, (frame - Origin[k]) * Rate[k]));
+        float eased = t * (curve[0] + t * (curve[1] + t * curve[2]));
+        for (int c = 0; c < 3; c++) {
+            value[c] = Math.round(From[k * 3 + c] + (float) (To[k * 3 + c] - From[k * 3 + c]) * eased);
+        }
+    }
+
+    /**
+     * Determines the first frame after the given frame on which an effect is
+     * active.
+     *
+     * @param frame The current frame.
+     * @return The next active frame, or {@link Integer#MAX_VALUE} if no
+     * effects are active after the given frame.
+     */
+    protected int nextActive(int frame) {
+        // Finds the first range of active frames that ends after the given frame.
+        int low = 0;
+        int high = Active.length / 2;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Active[mid * 2 + 1] <= frame) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < Active.length / 2 ? Math.max(frame + 1, Active[low * 2]) : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Evaluates the entries of a block on a frame. Entries that are not active
+     * on the frame are evaluated as well, as this is faster than checking each
+     * one, and are ignored afterwards.
+     *
+     * @param first The first entry of the block.
+     * @param last The entry after the last entry of the block.
+     * @param frame The frame.
+     * @param batch Receives the values of each entry.
+     */
+    private void evaluate(int first, int last, int frame, Batch batch) {
+        if (Vectorized != null) {
+            Vectorized.evaluate(this, first, last, frame, batch.Out0, batch.Out1, batch.Out2);
+        } else {
+            evaluateScalar(first, first, last, frame, batch.Out0, batch.Out1, batch.Out2);
+        }
+    }
+
+    /**
+     * Evaluates the entries of a block on a frame one entry at a time.
+     *
+     * @param first The first entry of the block, whose values are stored at
+     * the start of the buffers.
+     * @param from The first entry to evaluate.
+     * @param last The entry after the last entry of the block.
+     * @param frame The frame.
+     * @param out0 Receives the first value of each entry.
+     * @param out1 Receives the second value of each entry.
+     * @param out2 Receives the third value of each entry.
+     */
+    void evaluateScalar(int first, int from, int last, int frame, int[] out0, int[] out1, int[] out2) {
+        for (int e = from; e < last; e++) {
+            int k = BlockEffect[e];
+            float t = Math.min(1f, Math.max(0f, (frame - Origin[k]) * Rate[k]));
+            float eased = t * (A[k] + t * (B[k] + t * C[k]));
+            out0[e - first] = Math.round(From0[k] + Delta0[k] * eased);
+            out1[e - first] = Math.round(From1[k] + Delta1[k] * eased);
+            out2[e - first] = Math.round(From2[k] + Delta2[k] * eased);
+        }
+    }
+
+    /**
+     * Loads the {@link VectorTweens} evaluator, if the vector API is
+     * available. It is only available when the JVM is started with
+     * {@code --add-modules jdk.incubator.vector}, and the class is loaded by
+     * name so nothing else needs the module.
+     *
+     * @return The evaluator, or null if the vector API is not available.
+     */
+    static private Evaluator loadVectorized() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (Evaluator) Class.forName("AnimationProcessor.VectorTweens").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks if the effects are evaluated with the vector API.
+     *
+     * @return True if {@link VectorTweens} is used.
+     */
+    static protected boolean isVectorized() {
+        return Vectorized != null;
+    }
+
+    /**
+     * Applies every effect active on the given frame to its shape, in order.
+     *
+     * @param frame The frame whose effects should be applied.
+     * @param Shapes The shapes the effects were compiled from.
+     * @param dirty Receives the area covered by each changed shape before and
+     * after its effect, or null if the area is not needed.
+     * @param index The spatial index of the shapes, updated as each shape
+     * changes, or null if there is none.
+     */
+    protected void apply(int frame, List<Shape> Shapes, DirtyRegion dirty, SpatialIndex index) {
+        int block = frame / BlockSize;
+        if (frame < 0 || block >= BlockStart.length - 1) {
+            return;
+        }
+        int first = BlockStart[block];
+        int last = BlockStart[block + 1];
+        Batch batch = Batches.get();
+        evaluate(first, last, frame, batch);
+        for (int e = first; e < last; e++) {
+            int k = BlockEffect[e];
+            if (frame < Start[k] || frame > End[k]) {
+                continue;
+            }
+            Shape CurrShape = Shapes.get(ShapeIndex[k]);
+            if (dirty != null) {
+                dirty.add(CurrShape);
+            }
+            write(k, CurrShape, batch.Out0[e - first], batch.Out1[e - first], batch.Out2[e - first], batch.Colors);
+            if (dirty != null) {
+                dirty.add(CurrShape);
+            }
+            if (index != null) {
+                index.update(ShapeIndex[k]);
+            }
+        }
+    }
+
+    /**
+     * Applies every effect active on the given frame to a packed scene, in
+     * order.
+     *
+     * @param frame The frame whose effects should be applied.
+     * @param Scene The scene packed from the shapes the effects were compiled
+     * from.
+     */
+    protected void apply(int frame, PackedScene Scene) {
+        int block = frame / BlockSize;
+        if (frame < 0 || block >= BlockStart.length - 1) {
+            return;
+        }
+        int first = BlockStart[block];
+        int last = BlockStart[block + 1];
+        Batch batch = Batches.get();
+        evaluate(first, last, frame, batch);
+        for (int e = first; e < last; e++) {
+            int k = BlockEffect[e];
+            if (frame < Start[k] || frame > End[k]) {
+                continue;
+            }
+            int shape = ShapeIndex[k];
+            if (Kind[k] == PackedScene.MOVE) {
+                if (Line[k]) {
+                    Scene.endX[shape] += batch.Out0[e - first] - Scene.x[shape];
+                    Scene.endY[shape] += batch.Out1[e - first] - Scene.y[shape];
+                }
+                Scene.x[shape] = batch.Out0[e - first];
+                Scene.y[shape] = batch.Out1[e - first];
+            } else {
+                Scene.argb[shape] = 0xFF000000 | batch.Out0[e - first] << 16 | batch.Out1[e - first] << 8 | batch.Out2[e - first];
+            }
+        }
+    }
+
+    /**
+     * Applies a single effect as it is on the given frame.
+     *
+     * @param k The effect.
+     * @param frame The frame, which should be within the effect.
+     * @param Shapes The shapes the effects were compiled from.
+     */
+    protected void applyEffect(int k, int frame, List<Shape> Shapes) {
+        int[] value = new int[3];
+        valueAt(k, frame, value);
+        write(k, Shapes.get(ShapeIndex[k]), value[0], value[1], value[2], Batches.get().Colors);
+    }
+
+    /**
+     * Finds the effects that change their shapes from one frame up to (but
+     * not including) another, and the last frame in that range on which each
+     * does so. Earlier frames of each effect do not need to be applied, as
+     * each frame replaces the value of the last.
+     *
+     * @param from The first frame.
+     * @param to The frame to stop at.
+     * @return The changes, each holding its frame in the upper 32 bits and
+     * its effect in the lower 32 bits, sorted in the order they are applied.
+     */
+    protected long[] lastChanges(int from, int to) {
+        // Error Checking
+        // An empty range has no changes, even from the effects still running on its first frame.
+        if (from >= to) {
+            return new long[0];
+        }
+        long[] changes = new long[Size];
+        int count = 0;
+        for (int k = 0; k < Size && Start[k] < to; k++) {
+            if (End[k] >= from) {
+                changes[count++] = ((long) Math.min(End[k], to - 1) << 32) | k;
+            }
+        }
+        changes = Arrays.copyOf(changes, count);
+        Arrays.sort(changes);
+        return changes;
+    }
+
+    /**
+     * Changes the position or color of a shape to a value of an effect.
+     *
+     * @param k The effect.
+     * @param CurrShape The shape of the effect.
+     * @param v0 The x-coordinate, or red component, of the value.
+     * @param v1 The y-coordinate, or green component, of the value.
+     * @param v2 The blue component of the value.
+     * @param Colors The colors used for fades.
+     */
+    private void write(int k, Shape CurrShape, int v0, int v1, int v2, ColorCache Colors) {
+        if (Kind[k] == PackedScene.MOVE) {
+            // Lines keep their length and direction by moving their endpoint the same distance.
+            if (Line[k]) {
+                CurrShape.endX += v0 - CurrShape.x;
+                CurrShape.endY += v1 - CurrShape.y;
+            }
+            CurrShape.x = v0;
+            CurrShape.y = v1;
+        } else {
+            CurrShape.color = Colors.get(0xFF000000 | v0 << 16 | v1 << 8 | v2);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package AnimationProcessor;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Evaluates the move and fade effects of a block of {@link Tweens} with the
+ * vector API, as many effects at a time as the processor's vectors hold.
+ * <p>
+ * This class is only loaded by {@link Tweens} when the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}. The values are calculated with
+ * the same float operations, in the same order, as
+ * {@link Tweens#evaluateScalar evaluateScalar}, and rounded the same way as
+ * {@link Math#round(float)}, so both give exactly the same values. The
+ * entries left over after the last full vector are evaluated one at a time.
+ */
+class VectorTweens implements Tweens.Evaluator {
+
+    /**
+     * The widest vectors of floats the processor supports, and of ints of the
+     * same number of lanes.
+     */
+    static private final VectorSpecies<Float> Floats = FloatVector.SPECIES_PREFERRED;
+    static private final VectorSpecies<Integer> Ints = IntVector.SPECIES_PREFERRED;
+
+    public void evaluate(Tweens Effects, int first, int last, int frame, int[] out0, int[] out1, int[] out2) {
+        int[] effects = Effects.BlockEffect;
+        FloatVector now = FloatVector.broadcast(Floats, (float) frame);
+        int e = first;
+        for (int end = first + Floats.loopBound(last - first); e < end; e += Floats.length()) {
+            // Gathers the values of the effect of each entry.
+            FloatVector origin = FloatVector.fromArray(Floats, Effects.Origin, 0, effects, e);
+            FloatVector rate = FloatVector.fromArray(Floats, Effects.Rate, 0, effects, e);
+            FloatVector a = FloatVector.fromArray(Floats, Effects.A, 0, effects, e);
+            FloatVector b = FloatVector.fromArray(Floats, Effects.B, 0, effects, e);
+            FloatVector c = FloatVector.fromArray(Floats, Effects.C, 0, effects, e);
+            FloatVector t = now.sub(origin).mul(rate).max(0f).min(1f);
+            FloatVector eased = t.mul(a.add(t.mul(b.add(t.mul(c)))));
+            round(FloatVector.fromArray(Floats, Effects.From0, 0, effects, e)
+                    .add(FloatVector.fromArray(Floats, Effects.Delta0, 0, effects, e).mul(eased))).intoArray(out0, e - first);
+            round(FloatVector.fromArray(Floats, Effects.From1, 0, effects, e)
+                    .add(FloatVector.fromArray(Floats, Effects.Delta1, 0, effects, e).mul(eased))).intoArray(out1, e - first);
+            round(FloatVector.fromArray(Floats, Effects.From2, 0, effects, e)
+                    .add(FloatVector.fromArray(Floats, Effects.Delta2, 0, effects, e).mul(eased))).intoArray(out2, e - first);
+        }
+        Effects.evaluateScalar(first, e, last, frame, out0, out1, out2);
+    }
+
+    /**
+     * Rounds each lane to the nearest int, with halves rounded up, as
+     * {@link Math#round(float)} does. The part after the point is found
+     * exactly, so no lane is rounded twice.
+     *
+     * @param v The values, which must fit in an int.
+     * @return The rounded values.
+     */
+    static private IntVector round(FloatVector v) {
+        IntVector whole = (IntVector) v.convertShape(VectorOperators.F2I, Ints, 0);
+        FloatVector fraction = v.sub((FloatVector) whole.convertShape(VectorOperators.I2F, Floats, 0));
+        VectorMask<Integer> up = fraction.compare(VectorOperators.GE, 0.5f).cast(Ints);
+        VectorMask<Integer> down = fraction.compare(VectorOperators.LT, -0.5f).cast(Ints);
+        return whole.add(1, up).sub(1, down);
+    }
+}
@@ -0,0 +1,435 @@
+package AnimationProcessor;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * A {@link FrameSink} that streams every frame into a single video file.
+ * <p>
+ * The pixels of each frame are read straight from the {@link DataBufferInt}
+ * of the image drawn by the {@link HeadlessRenderer}, without copying the
+ * image, and converted into a buffer that is reused for every frame and
+ * written to a {@link FileChannel}. Two formats are supported:
+ * <ul>
+ * <li>{@link Format#Y4M}: uncompressed YUV 4:2:0 frames, which most video
+ * tools read directly. Converting a frame only takes integer arithmetic, so
+ * writing is limited by the speed of the disk.</li>
+ * <li>{@link Format#AVI}: each frame compressed as a JPEG, in an AVI file
+ * that most players can open. The sizes in the headers and the index of the
+ * frames are written when the sink is closed.</li>
+ * </ul>
+ * <p>
+ * Frames must be written in order, one at a time, so the sink can only be
+ * used by the {@link HeadlessRenderer}, and not by the
+ * {@link ParallelRenderer}.
+ */
+public class VideoSink implements FrameSink {
+
+    /**
+     * The file formats the video can be written in.
+     */
+    public enum Format {
+        /**
+         * Uncompressed YUV 4:2:0 frames in a YUV4MPEG2 stream.
+         */
+        Y4M("y4m"),
+        /**
+         * Motion JPEG frames in an AVI file.
+         */
+        AVI("avi");
+
+        /**
+         * The file extension of the format.
+         */
+        protected final String Extension;
+
+        Format(String Extension) {
+            this.Extension = Extension;
+        }
+
+        /**
+         * Finds the format of a video file from its extension.
+         *
+         * @param file The video file.
+         * @return The format, or null if the extension is not known.
+         */
+        static protected Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase();
+            for (Format format : values()) {
+                if (name.endsWith("." + format.Extension)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The quality the frames of an AVI file are compressed at, from 0 to 1.
+     */
+    static protected final float JpegQuality = 0.9f;
+
+    /**
+     * The position of the values in the headers of an AVI file that are only
+     * known once every frame has been written.
+     */
+    static private final int RiffSize = 4;
+    static private final int AviTotalFrames = 48;
+    static private final int AviBufferSize = 60;
+    static private final int StreamLength = 140;
+    static private final int StreamBufferSize = 144;
+    static private final int MoviSize = 216;
+    /**
+     * The position of the "movi" list type, which the offsets in the index of
+     * an AVI file are relative to, and the size of every header before the
+     * first frame.
+     */
+    static private final int MoviStart = 220;
+    static private final int HeaderSize = 224;
+
+    /**
+     * The file being written.
+     */
+    private final FileChannel Channel;
+    /**
+     * The format the video is written in.
+     */
+    private final Format Type;
+    /**
+     * The size of each frame.
+     */
+    private final int Width;
+    private final int Height;
+    /**
+     * Holds each converted frame before it is written. Reused for every frame.
+     */
+    private ByteBuffer Buffer;
+    /**
+     * The pixels of frames whose images are not backed by a
+     * {@link DataBufferInt}. Reused for every frame.
+     */
+    private int[] Pixels;
+
+    /**
+     * The number of the next frame expected.
+     */
+    private int NextFrame = -1;
+    /**
+     * The number of frames written.
+     */
+    private int Count;
+
+    /**
+     * Compresses the frames of an AVI file, and holds each compressed frame.
+     */
+    private ImageWriter Jpeg;
+    private ImageWriteParam JpegParam;
+    private FrameBytes Compressed;
+    /**
+     * The offset and size of each frame of an AVI file, for its index.
+     */
+    private int[] Index;
+    /**
+     * The size of the largest frame of an AVI file.
+     */
+    private int LargestFrame;
+
+    /**
+     * Holds the bytes of a compressed frame, which can be read without copying
+     * them.
+     */
+    static private class FrameBytes extends ByteArrayOutputStream {
+
+        FrameBytes(int size) {
+            super(size);
+        }
+
+        ByteBuffer wrap() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    /**
+     * Defines a sink writing a new video file, replacing any file already
+     * there.
+     *
+     * @param File The video file.
+     * @param Type The format the video is written in.
+     * @param Width The width of each frame.
+     * @param Height The height of each frame.
+     * @param Fps The frame rate of the video.
+     * @throws IOException If the file could not be created.
+     */
+    VideoSink(Path File, Format Type, int Width, int Height, int Fps) throws IOException {
+        this.Type = Type;
+        this.Width = Width;
+        this.Height = Height;
+        // Error Checking
+        // A video must have a positive frame rate, so animations without one are written at one frame per second.
+        Fps = Math.max(1, Fps);
+        Channel = FileChannel.open(File, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            if (Type == Format.Y4M) {
+                // The chroma is sampled once for every 2 by 2 block of pixels, rounding up at odd edges.
+                int chroma = ((Width + 1) / 2) * ((Height + 1) / 2);
+                Buffer = ByteBuffer.allocateDirect(6 + Width * Height + chroma * 2);
+                writeFully(ByteBuffer.wrap(String.format("YUV4MPEG2 W%d H%d F%d:1 Ip A1:1 C420jpeg\n", Width, Height, Fps)
+                        .getBytes(StandardCharsets.US_ASCII)));
+            } else {
+                Jpeg = ImageIO.getImageWritersByFormatName("jpeg").next();
+                JpegParam = Jpeg.getDefaultWriteParam();
+                JpegParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                JpegParam.setCompressionQuality(JpegQuality);
+                Compressed = new FrameBytes(Width * Height / 4);
+                Index = new int[256];
+                writeFully(aviHeader(Fps));
+            }
+        } catch (IOException | RuntimeException e) {
+            Channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a frame to the end of the video.
+     *
+     * @param frame The number of the frame, which must follow the last frame
+     * written.
+     * @param image The drawn frame.
+     * @throws IOException If the frame could not be written.
+     */
+    public void writeFrame(int frame, BufferedImage image) throws IOException {
+        // Error Checking
+        // A video holds its frames in order, so frames cannot be skipped or written twice.
+        if (NextFrame >= 0 && frame != NextFrame) {
+            throw new IllegalStateException("Frame " + frame + " was written to the video instead of frame " + NextFrame);
+        }
+        if (image.getWidth() != Width || image.getHeight() != Height) {
+            throw new IllegalArgumentException("Frame " + frame + " is " + image.getWidth() + "x" + image.getHeight()
+                    + " instead of " + Width + "x" + Height);
+        }
+        NextFrame = frame + 1;
+        if (Type == Format.Y4M) {
+            writeY4M(image);
+        } else {
+            writeAVI(image);
+        }
+        Count++;
+    }
+
+    /**
+     * Converts a frame into YUV and writes it.
+     *
+     * @param image The drawn frame.
+     * @throws IOException If the frame could not be written.
+     */
+    private void writeY4M(BufferedImage image) throws IOException {
+        int[] pixels = pixelsOf(image);
+        ByteBuffer out = Buffer;
+        out.clear();
+        out.put((byte) 'F').put((byte) 'R').put((byte) 'A').put((byte) 'M').put((byte) 'E').put((byte) '\n');
+        // Converts with the integer form of the BT.601 coefficients, as used by most encoders.
+        int planeY = out.position();
+        for (int i = 0; i < pixels.length; i++) {
+            int p = pixels[i];
+            int r = (p >> 16) & 0xFF;
+            int g = (p >> 8) & 0xFF;
+            int b = p & 0xFF;
+            out.put(planeY + i, (byte) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16));
+        }
+        // Averages each 2 by 2 block of pixels into one chroma sample.
+        int chromaWidth = (Width + 1) / 2;
+        int chromaHeight = (Height + 1) / 2;
+        int planeU = planeY + pixels.length;
+        int planeV = planeU + chromaWidth * chromaHeight;
+        for (int cy = 0; cy < chromaHeight; cy++) {
+            int row0 = cy * 2 * Width;
+            int row1 = Math.min(cy * 2 + 1, Height - 1) * Width;
+            for (int cx = 0; cx < chromaWidth; cx++) {
+                int x0 = cx * 2;
+                int x1 = Math.min(x0 + 1, Width - 1);
+                int p0 = pixels[row0 + x0];
+                int p1 = pixels[row0 + x1];
+                int p2 = pixels[row1 + x0];
+                int p3 = pixels[row1 + x1];
+                int r = (((p0 >> 16) & 0xFF) + ((p1 >> 16) & 0xFF) + ((p2 >> 16) & 0xFF) + ((p3 >> 16) & 0xFF) + 2) >> 2;
+                int g = (((p0 >> 8) & 0xFF) + ((p1 >> 8) & 0xFF) + ((p2 >> 8) & 0xFF) + ((p3 >> 8) & 0xFF) + 2) >> 2;
+                int b = ((p0 & 0xFF) + (p1 & 0xFF) + (p2 & 0xFF) + (p3 & 0xFF) + 2) >> 2;
+                int c = cy * chromaWidth + cx;
+                out.put(planeU + c, (byte) (((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128));
+                out.put(planeV + c, (byte) (((112 * r - 94 * g - 18 * b + 128) >> 8) + 128));
+            }
+        }
+        out.position(out.capacity()).flip();
+        writeFully(out);
+    }
+
+    /**
+     * Compresses a frame into a JPEG and writes it as a chunk of the AVI file.
+     *
+     * @param image The drawn frame.
+     * @throws IOException If the frame could not be written.
+     */
+    private void writeAVI(BufferedImage image) throws IOException {
+        Compressed.reset();
+        try (MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(Compressed)) {
+            Jpeg.setOutput(stream);
+            Jpeg.write(null, new IIOImage(image, null, null), JpegParam);
+        }
+        int size = Compressed.size();
+        long position = Channel.position();
+        // Error Checking
+        // The sizes and offsets of an AVI file are 32 bit, so it cannot grow past 4 GB.
+        if (position + 8 + size + 1 + 16L * (Count + 1) > 0xFFFFFFFFL) {
+            throw new IOException("The video is too large for an AVI file after frame " + (NextFrame - 2));
+        }
+        ByteBuffer chunk = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        chunk.put(fourCC("00dc")).putInt(size).flip();
+        writeFully(chunk);
+        writeFully(Compressed.wrap());
+        // Chunks start on even offsets.
+        if ((size & 1) != 0) {
+            writeFully(ByteBuffer.wrap(new byte[1]));
+        }
+        if (Index.length < (Count + 1) * 2) {
+            Index = Arrays.copyOf(Index, Index.length * 2);
+        }
+        Index[Count * 2] = (int) (position - MoviStart);
+        Index[Count * 2 + 1] = size;
+        LargestFrame = Math.max(LargestFrame, size);
+    }
+
+    /**
+     * Finds the pixels of an image, reading them directly from it when
+     * possible.
+     *
+     * @param image The image.
+     * @return The RGB value of each pixel, row by row.
+     */
+    private int[] pixelsOf(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+        Pixels = image.getRGB(0, 0, Width, Height, Pixels, 0, Width);
+        return Pixels;
+    }
+
+    /**
+     * Builds the headers of an AVI file holding a single stream of motion JPEG
+     * frames. The sizes of the file and the number of frames are filled in
+     * once every frame has been written.
+     *
+     * @param Fps The frame rate of the video.
+     * @return The headers, ready to be written.
+     */
+    private ByteBuffer aviHeader(int Fps) {
+        ByteBuffer header = ByteBuffer.allocate(HeaderSize).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(fourCC("RIFF")).putInt(0).put(fourCC("AVI "));
+        header.put(fourCC("LIST")).putInt(192).put(fourCC("hdrl"));
+        // The main header.
+        header.put(fourCC("avih")).putInt(56);
+        header.putInt(1000000 / Fps).putInt(0).putInt(0);
+        // Has an index.
+        header.putInt(0x10);
+        header.putInt(0).putInt(0).putInt(1).putInt(0).putInt(Width).putInt(Height);
+        header.putInt(0).putInt(0).putInt(0).putInt(0);
+        // The header of the stream.
+        header.put(fourCC("LIST")).putInt(116).put(fourCC("strl"));
+        header.put(fourCC("strh")).putInt(56);
+        header.put(fourCC("vids")).put(fourCC("MJPG")).putInt(0).putInt(0).putInt(0);
+        header.putInt(1).putInt(Fps).putInt(0).putInt(0).putInt(0).putInt(-1).putInt(0);
+        header.putShort((short) 0).putShort((short) 0).putShort((short) Width).putShort((short) Height);
+        // The format of the frames.
+        header.put(fourCC("strf")).putInt(40);
+        header.putInt(40).putInt(Width).putInt(Height).putShort((short) 1).putShort((short) 24);
+        header.put(fourCC("MJPG")).putInt(Width * Height * 3).putInt(0).putInt(0).putInt(0).putInt(0);
+        // The list the frames are written into.
+        header.put(fourCC("LIST")).putInt(0).put(fourCC("movi"));
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Finishes the video, writing the index and sizes of an AVI file, and
+     * closes the file.
+     *
+     * @throws IOException If the file could not be written.
+     */
+    public void close() throws IOException {
+        try {
+            if (Type == Format.AVI) {
+                long moviEnd = Channel.position();
+                ByteBuffer index = ByteBuffer.allocate(8 + 16 * Count).order(ByteOrder.LITTLE_ENDIAN);
+                index.put(fourCC("idx1")).putInt(16 * Count);
+                for (int i = 0; i < Count; i++) {
+                    // Every frame is a key frame.
+                    index.put(fourCC("00dc")).putInt(0x10).putInt(Index[i * 2]).putInt(Index[i * 2 + 1]);
+                }
+                index.flip();
+                writeFully(index);
+                long end = Channel.position();
+                patch(RiffSize, (int) (end - 8));
+                patch(MoviSize, (int) (moviEnd - MoviStart));
+                patch(AviTotalFrames, Count);
+                patch(StreamLength, Count);
+                patch(AviBufferSize, LargestFrame + 8);
+                patch(StreamBufferSize, LargestFrame + 8);
+                Jpeg.dispose();
+            }
+        } finally {
+            Channel.close();
+        }
+    }
+
+    /**
+     * Replaces a 32 bit value already written to the file.
+     *
+     * @param position The position of the value.
+     * @param value The new value.
+     * @throws IOException If the value could not be written.
+     */
+    private void patch(long position, int value) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value);
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            Channel.write(bytes, position + bytes.position());
+        }
+    }
+
+    /**
+     * Writes every remaining byte of a buffer to the end of the file.
+     *
+     * @param bytes The bytes to write.
+     * @throws IOException If the bytes could not be written.
+     */
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            Channel.write(bytes);
+        }
+    }
+
+    /**
+     * Converts a four character code into its bytes.
+     *
+     * @param code The code.
+     * @return The bytes.
+     */
+    static private byte[] fourCC(String code) {
+        return code.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -1,5 +1,12 @@
 package AnimationProcessor;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * The main class.
  *
@@ -13,16 +20,342 @@ package AnimationProcessor;
 public class main {
 
     /**
-     * Defines a new {@link AnimationPlayer#AnimationPlayer Animation Player}, {@link AnimationPlayer#loadAnimationFromFile loads}
-     * {@link Shape} and {@link Effect} data from the input file, then {@link AnimationPlayer#run plays the
+     * The arguments accepted when playing, rendering or compiling a single
+     * animation.
+     */
+    static private final String Usage = "Usage: main [input file] [--headless <output directory> [png|raw]] "
+            + "[--threads <count> | --packed | --pipeline] [--software] [--seek <frame>] [--metrics] [--progressive] [--watch]";
+    /**
+     * The arguments accepted when rendering several animations.
+     */
+    static private final String BatchUsage = "Usage: main --batch <directory or manifest> <output directory> [png|raw] [--threads <count>]";
+
+    /**
+     * Defines a new {@link AnimationPlayer#AnimationPlayer Animation Player}, {@link AnimationSession#loadAnimationFromFile loads}
+     * {@link Shape} and {@link Effect} data from the input file, then {@link AnimationSession#run plays the
      * animation}.
+     * <p>
+     * The arguments are {@code [input file] [--headless <output directory> [png|raw]] [--threads <count> | --packed | --pipeline] [--software] [--seek <frame>] [--metrics] [--progressive] [--watch]}.
+     * When {@code --headless} is given, the frames are written to the output directory by the
+     * {@link HeadlessRenderer} instead of being shown in a window. When {@code --threads} is also
+     * given, the frames are drawn by the {@link ParallelRenderer} on that many threads. Otherwise
+     * {@code --packed} draws the frames from a {@link PackedScene}, which uses less memory, and {@code --pipeline}
+     * applies effects, draws and writes the frames on separate threads using a {@link RenderPipeline}.
+     * {@code --software} draws the shapes with the {@link SoftwareRasterizer} instead of Java2D, unless the frames are
+     * drawn on several threads or from a packed scene. It also applies to {@code .y4m} and {@code .avi} videos.
+     * <p>
+     * {@code --seek <frame>} starts the animation, or the headless frames, at the given frame. Headless frames
+     * after a seek are drawn on a single thread. The time taken to seek grows with the number of frames with events,
+     * once the {@link Checkpoints} no longer fit in their memory budget.
+     * <p>
+     * {@code --metrics} records the time taken by each part of playback in the {@link PlaybackMetrics}, which can be
+     * read through JMX while the window is open, and can be turned on later through JMX as well. Headless runs print
+     * the time taken to load the animation.
+     * <p>
+     * {@code --progressive} starts playing the animation in the window while its shapes are still being read, using
+     * {@link AnimationSession#loadAnimationProgressively}, so large animations start playing at once.
+     * <p>
+     * {@code --watch} applies any change saved to the input file while the window is playing it, using a
+     * {@link HotReloader}, without starting the animation again.
+     * <p>
+     * {@code [input file] --video <output file> [--software] [--seek <frame>]} streams the frames into a single video file by the
+     * {@link VideoSink}, at the frame rate of the animation, instead of showing them in a window. The format is chosen by
+     * the extension of the file: {@code .y4m} for uncompressed YUV, or {@code .avi} for motion JPEG. On more than one
+     * processor, the frames are drawn by a {@link RenderPipeline}, so each is encoded while the next is drawn. Files
+     * ending in {@code .gif} or {@code .png} are exported as animated images by the {@link AnimatedImageExporter}, which
+     * only writes the frames that change.
+     * <p>
+     * {@code [input file] --compile <output file>} instead compiles the input file into the
+     * {@link BinaryScene binary format}, which can then be given as the input file.
+     * <p>
+     * {@code --batch <directory or manifest> <output directory> [png|raw] [--threads <count>]} renders every file in
+     * the directory, or listed in the manifest, into its own directory inside the output directory using the
+     * {@link BatchRenderer}, with frames drawn on that many threads, or one per processor. A summary of each job is
+     * printed and written to {@code summary.csv} in the output directory, and the program exits with status 1 if any
+     * job failed.
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        // The input file can be provided as the first argument.
+        String input = args.length > 0 && !args[0].startsWith("--") ? args[0] : "SampleInputt.txt";
+        // Finds the headless option, if it was provided.
+        int headless = -1;
+        // Whether the headless frames are drawn from a packed scene.
+        boolean packed = false;
+        // The file to compile the input file into.
+        String compile = null;
+        // The number of threads used to draw frames in headless and batch mode, or 0 if not given.
+        int threads = 0;
+        // The video file to write the frames to.
+        String video = null;
+        // Finds the batch option, if it was provided.
+        int batch = -1;
+        // The frame to start at.
+        int seek = 0;
+        // Whether the playback metrics are recorded from the start.
+        boolean metrics = false;
+        // Whether the window starts playing before the whole file has been read.
+        boolean progressive = false;
+        // Whether changes to the input file are applied while the window is playing it.
+        boolean watch = false;
+        // Whether the headless frames are drawn by a pipeline of threads.
+        boolean pipeline = false;
+        // Whether the headless frames are drawn by the software rasterizer rather than Java2D.
+        boolean software = false;
+        // Why an argument could not be read, or null if every argument was read.
+        String invalid = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--headless")) {
+                headless = i;
+            } else if (args[i].equals("--packed")) {
+                packed = true;
+            } else if (args[i].equals("--compile") && i + 1 < args.length) {
+                compile = args[i + 1];
+            } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = parseCount(args[i + 1]);
+                // Error Checking
+                // The number of threads must be a whole number, at least 0.
+                if (threads < 0 && invalid == null) {
+                    invalid = "Invalid thread count: " + args[i + 1];
+                }
+            } else if (args[i].equals("--seek") && i + 1 < args.length) {
+                seek = parseCount(args[i + 1]);
+                // Error Checking
+                // The frame must be a whole number, at least 0.
+                if (seek < 0 && invalid == null) {
+                    invalid = "Invalid frame: " + args[i + 1];
+                }
+            } else if (args[i].equals("--metrics")) {
+                metrics = true;
+            } else if (args[i].equals("--progressive")) {
+                progressive = true;
+            } else if (args[i].equals("--watch")) {
+                watch = true;
+            } else if (args[i].equals("--pipeline")) {
+                pipeline = true;
+            } else if (args[i].equals("--software")) {
+                software = true;
+            } else if (args[i].equals("--video") && i + 1 < args.length) {
+                video = args[i + 1];
+            } else if (args[i].equals("--batch")) {
+                batch = i;
+            }
+        }
+
+        // Error Checking
+        // Nothing is run if an argument could not be read.
+        if (invalid != null) {
+            System.out.println(invalid);
+            System.out.println(batch >= 0 ? BatchUsage : Usage);
+            return;
+        }
+
+        if (batch >= 0) {
+            // Error Checking
+            // The input and output directories must follow the batch option.
+            if (batch + 2 >= args.length) {
+                System.out.println(BatchUsage);
+                return;
+            }
+            // Prevents AWT from looking for a display.
+            System.setProperty("java.awt.headless", "true");
+            BatchRenderer renderer = new BatchRenderer(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+            if (batch + 3 < args.length && !args[batch + 3].startsWith("--")) {
+                try {
+                    renderer.Format = ImageSequenceSink.Format.valueOf(args[batch + 3].toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    // Error Checking
+                    // Only the formats the frames can be written in are accepted.
+                    System.out.println("Unknown frame format: " + args[batch + 3]);
+                    System.out.println(BatchUsage);
+                    return;
+                }
+            }
+            Path output = Paths.get(args[batch + 2]);
+            List<Path> inputs = BatchRenderer.listInputs(Paths.get(args[batch + 1]));
+            long begin = System.nanoTime();
+            List<BatchRenderer.Job> jobs;
+            try {
+                jobs = renderer.render(inputs, output);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            BatchRenderer.printSummary(System.out, jobs, (System.nanoTime() - begin) / 1e9);
+            Files.createDirectories(output);
+            BatchRenderer.writeSummary(output.resolve("summary.csv"), jobs);
+            if (jobs.stream().anyMatch(job -> !job.Succeeded)) {
+                System.exit(1);
+            }
+            return;
+        }
+
+        if (compile != null) {
+            // Loads the animation without creating a window and writes it in the binary format.
+            AnimationSession session = new AnimationSession();
+            session.loadAnimationFromFile(input);
+            BinaryScene.write(Paths.get(compile), session.ShapeList, session.Frames, session.Fps);
+            System.out.printf("Compiled %d shapes into %s.%n", session.ShapeList.size(), compile);
+            return;
+        }
+
+        if (video != null) {
+            VideoSink.Format format = VideoSink.Format.of(Paths.get(video));
+            AnimatedImageExporter.Format animated = AnimatedImageExporter.Format.of(Paths.get(video));
+            // Error Checking
+            // The format of the video is chosen by its extension.
+            if (format == null && animated == null) {
+                System.out.println("Usage: main [input file] --video <output file ending in .y4m, .avi, .gif or .png> [--software] [--seek <frame>]");
+                return;
+            }
+            // Prevents AWT from looking for a display.
+            System.setProperty("java.awt.headless", "true");
+            AnimationSession session = new AnimationSession();
+            session.loadAnimationFromFile(input);
+            if (animated != null) {
+                // Writes only the frames that change, as parts of the frame before them.
+                AnimatedImageExporter exporter = new AnimatedImageExporter(session);
+                long begin = System.nanoTime();
+                exporter.export(Paths.get(video), animated, seek);
+                System.out.printf("Wrote %d of %d frames to %s in %.1f ms.%n", exporter.Written, Math.max(0, session.Frames - seek),
+                        video, (System.nanoTime() - begin) / 1e6);
+                return;
+            }
+            // Streams each frame into the video as it is drawn, encoding it while the next frames are drawn if there is a
+            // processor for each.
+            try (FrameSink sink = new VideoSink(Paths.get(video), format, HeadlessRenderer.DefaultWidth, HeadlessRenderer.DefaultHeight,
+                    session.Fps)) {
+                double fps;
+                if (Runtime.getRuntime().availableProcessors() > 1) {
+                    RenderPipeline renderer = new RenderPipeline(session);
+                    renderer.Software = software;
+                    fps = renderer.render(sink, seek);
+                } else {
+                    HeadlessRenderer renderer = new HeadlessRenderer(session);
+                    renderer.Software = software;
+                    fps = renderer.render(sink, seek);
+                }
+                System.out.printf("Wrote %d frames to %s at %.1f frames per second.%n", Math.max(0, session.Frames - seek), video, fps);
+            }
+            return;
+        }
+
+        if (headless >= 0) {
+            String usage = "Usage: main [input file] [--headless <output directory> [png|raw]] [--threads <count> | --packed | --pipeline] [--software] [--seek <frame>] [--metrics]";
+            // Error Checking
+            // The output directory must follow the headless option.
+            if (headless + 1 >= args.length) {
+                System.out.println(usage);
+                return;
+            }
+            ImageSequenceSink.Format format = ImageSequenceSink.Format.PNG;
+            if (headless + 2 < args.length && !args[headless + 2].startsWith("--")) {
+                try {
+                    format = ImageSequenceSink.Format.valueOf(args[headless + 2].toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    // Error Checking
+                    // Only the formats the frames can be written in are accepted.
+                    System.out.println("Unknown frame format: " + args[headless + 2]);
+                    System.out.println(usage);
+                    return;
+                }
+            }
+            // The frames after a seek are drawn on a single thread, as the parallel renderer always starts at frame 0.
+            if (threads > 1 && seek > 0 && !packed && !pipeline) {
+                System.out.println("Warning: --threads is ignored with --seek, the frames are drawn on a single thread.");
+            }
+            // Prevents AWT from looking for a display.
+            System.setProperty("java.awt.headless", "true");
+
+            // Loads the animation without creating a window.
+            AnimationSession session = new AnimationSession();
+            session.Metrics.setEnabled(metrics);
+            session.loadAnimationFromFile(input);
+            if (metrics) {
+                System.out.printf("Loaded %d shapes in %.1f ms.%n", session.ShapeList.size(), session.Metrics.getLastLoadMillis());
+            }
+            // Draws each frame into the output directory.
+            try (FrameSink sink = new ImageSequenceSink(Paths.get(args[headless + 1]), format)) {
+                double fps;
+                if (packed) {
+                    PackedScene scene = new PackedScene(session.ShapeList, session.EffectTimeline);
+                    // The shapes are no longer needed once they have been packed.
+                    session.ShapeList.clear();
+                    session.EffectTimeline = Timeline.build(session.ShapeList);
+                    fps = new HeadlessRenderer(scene, session.Frames).render(sink, seek);
+                } else if (pipeline) {
+                    RenderPipeline renderer = new RenderPipeline(session);
+                    renderer.Software = software;
+                    fps = renderer.render(sink, seek);
+                } else if (threads > 1 && seek == 0) {
+                    ForkJoinPool pool = new ForkJoinPool(threads);
+                    try {
+                        fps = new ParallelRenderer(session.ShapeList, session.EffectTimeline, session.Frames, pool).render(sink);
+                    } finally {
+                        pool.shutdown();
+                    }
+                } else {
+                    HeadlessRenderer renderer = new HeadlessRenderer(session);
+                    renderer.Software = software;
+                    fps = renderer.render(sink, seek);
+                }
+                System.out.printf("Rendered %d frames at %.1f frames per second.%n", Math.max(0, session.Frames - seek), fps);
+            }
+            return;
+        }
+
         // Creates the animation player. Runs its constructor.
         AnimationPlayer player = new AnimationPlayer();
+        // Makes the metrics readable through JMX, so they can be turned on while the animation is playing.
+        player.Metrics.register(player.Id);
+        player.Metrics.setEnabled(metrics);
         // Loads the information from the input file into the ShapeList.
-        player.loadAnimationFromFile("SampleInputt.txt");
+        if (progressive) {
+            player.loadAnimationProgressively(input);
+        } else {
+            player.loadAnimationFromFile(input);
+        }
+        // Moves to the starting frame, if one was given.
+        if (seek > 0) {
+            player.seek(seek);
+        }
+        // Applies changes to the input file while the animation is playing.
+        if (watch) {
+            HotReloader reloader = player.watchFile(input);
+            reloader.Listener = main::reportReload;
+        }
         // Runs the animation assuming all information is stored correctly.
         player.run();
     }
+
+    /**
+     * Reads a count or frame given as an argument.
+     *
+     * @param value The argument.
+     * @return The number, or -1 if the argument is not a whole number of at
+     * least 0.
+     */
+    static private int parseCount(String value) {
+        try {
+            return Math.max(-1, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Prints how a change to the input file was reloaded, or why it could
+     * not be.
+     *
+     * @param reloader The reloader watching the input file.
+     */
+    static private void reportReload(HotReloader reloader) {
+        Exception failure = reloader.LastFailure;
+        // Error Checking
+        if (failure != null) {
+            System.out.println("The File could not be reloaded: " + failure);
+            return;
+        }
+        System.out.printf("Reloaded %s, reading %d of %d blocks, in %.1f ms.%n", reloader.Patched ? "the changed shapes" : "the animation",
+                reloader.Reparsed, reloader.Blocks, reloader.LastReloadNanos / 1e6);
+    }
 }
@@ -0,0 +1,153 @@
+package AnimationProcessor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks the thread safety promised by {@link AnimationSession}: sessions
+ * share no state, and painting never shows a half updated frame.
+ */
+class AnimationSessionTest {
+
+    @TempDir
+    Path Dir;
+
+    /**
+     * Sessions stepped and painted at the same time on a pool draw the same
+     * frames as when each is played alone.
+     */
+    @Test
+    void sessionsPlayedAtOnceMatchSessionsPlayedAlone() throws Exception {
+        int scenes = 4;
+        List<Path> files = new ArrayList<>();
+        List<int[]> expected = new ArrayList<>();
+        for (int i = 0; i < scenes; i++) {
+            Path file = TestScenes.write(Dir.resolve("scene" + i + ".txt"), i, 300, 150);
+            files.add(file);
+            expected.add(play(file));
+        }
+        // Each scene is played twice at once, so the same file is also shared between sessions.
+        ExecutorService pool = Executors.newFixedThreadPool(scenes * 2);
+        try {
+            List<Future<int[]>> played = new ArrayList<>();
+            for (int i = 0; i < scenes * 2; i++) {
+                Path file = files.get(i % scenes);
+                played.add(pool.submit(() -> play(file)));
+            }
+            for (int i = 0; i < scenes * 2; i++) {
+                assertArrayEquals(expected.get(i % scenes), played.get(i).get(), "scene " + i % scenes);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Steps through every frame of a session, painting its canvas after each.
+     *
+     * @param file The input file.
+     * @return The checksum of each painted frame.
+     */
+    static private int[] play(Path file) {
+        AnimationSession session = TestScenes.load(file);
+        BufferedImage image = TestScenes.frame();
+        Graphics2D g = image.createGraphics();
+        int[] frames = new int[session.Frames];
+        try {
+            for (int frame = 0; frame < session.Frames; frame++) {
+                session.stepFrame();
+                session.Canvas.paint(g);
+                frames[frame] = TestScenes.checksum(image);
+            }
+        } finally {
+            g.dispose();
+        }
+        return frames;
+    }
+
+    /**
+     * A canvas painted on another thread while the session is stepped only
+     * ever shows every shape of a frame in the same state. Each frame changes
+     * the color of every shape, so a frame painted while effects were being
+     * applied would show shapes of different colors.
+     */
+    @Test
+    void paintingWhileSteppingNeverShowsHalfUpdatedFrames() throws Exception {
+        int count = 20;
+        int frames = 400;
+        List<Shape> Shapes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Shape CurrShape = new Shape();
+            CurrShape.type = "Rect";
+            CurrShape.x = 10 + i * 19;
+            CurrShape.y = 100;
+            CurrShape.length = 15;
+            CurrShape.width = 15;
+            CurrShape.color = Color.black;
+            CurrShape.borderColor = Color.black;
+            Effect show = new Effect();
+            show.type = "Show";
+            show.start = 1;
+            CurrShape.EffectList.add(show);
+            for (int frame = 2; frame < frames; frame++) {
+                Effect change = new Effect();
+                change.type = "ChangeColor";
+                change.start = frame;
+                change.newColor = new Color(frame * 0x010307 & 0xFFFFFF);
+                CurrShape.EffectList.add(change);
+            }
+            Shapes.add(CurrShape);
+        }
+        AnimationSession session = TestScenes.load(TestScenes.write(Dir.resolve("colors.txt"), Shapes, frames));
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger painted = new AtomicInteger();
+        AtomicReference<String> torn = new AtomicReference<>();
+        Thread painter = new Thread(() -> {
+            BufferedImage image = TestScenes.frame();
+            Graphics2D g = image.createGraphics();
+            while (!done.get() && torn.get() == null) {
+                session.Canvas.paint(g);
+                int first = image.getRGB(10 + 7, 107);
+                for (int i = 1; i < count; i++) {
+                    int color = image.getRGB(10 + i * 19 + 7, 107);
+                    if (color != first) {
+                        torn.set("shape " + i + " was " + Integer.toHexString(color) + " but shape 0 was " + Integer.toHexString(first));
+                    }
+                }
+                painted.incrementAndGet();
+            }
+            g.dispose();
+        }, "Painter");
+        painter.start();
+        try {
+            for (int frame = 0; frame < frames; frame++) {
+                session.stepFrame();
+                // Gives the painter a chance to run between frames as well as during them.
+                Thread.yield();
+            }
+        } finally {
+            done.set(true);
+            painter.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        assertNull(torn.get(), "a half updated frame was painted");
+        assertTrue(painted.get() > 0, "the canvas was never painted");
+    }
+}
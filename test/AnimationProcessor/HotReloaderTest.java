@@ -0,0 +1,139 @@
+package AnimationProcessor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a {@link HotReloader} patches edited shapes into the scene
+ * being played, and that the animation then plays as if the edited file had
+ * been loaded.
+ */
+class HotReloaderTest {
+
+    static private final int ShapeCount = 300;
+    static private final int FrameCount = 120;
+
+    @TempDir
+    Path Dir;
+
+    /**
+     * Moving the effects of a few shapes patches them in place, and the
+     * frames played next match those of the edited file.
+     */
+    @Test
+    void editedEffectsArePatchedInPlace() throws Exception {
+        assertReloadMatches(Shapes -> {
+            for (int shape = 10; shape < ShapeCount; shape += 97) {
+                List<Effect> effects = Shapes.get(shape).EffectList;
+                Effect last = effects.get(effects.size() - 1);
+                last.start = Math.min(FrameCount - 1, last.start + 15);
+                last.end = Math.max(last.end, last.start);
+            }
+        });
+    }
+
+    /**
+     * Moving the shapes themselves, so every checkpoint is taken again, also
+     * patches them in place.
+     */
+    @Test
+    void editedShapesArePatchedInPlace() throws Exception {
+        assertReloadMatches(Shapes -> {
+            for (int shape = 5; shape < ShapeCount; shape += 61) {
+                Shapes.get(shape).x += 17;
+                Shapes.get(shape).y -= 9;
+            }
+        });
+    }
+
+    /**
+     * Adding a shape can not be patched, so the scene is built again in full.
+     */
+    @Test
+    void addedShapesAreBuiltInFull() throws Exception {
+        Path file = Dir.resolve("scene.txt");
+        List<Shape> Shapes = new SceneGenerator(3).generate(ShapeCount);
+        TestScenes.write(file, Shapes, FrameCount);
+        AnimationSession session = TestScenes.load(file);
+        HotReloader reloader = new HotReloader(session, file);
+        reloader.reload();
+        session.stepFrame();
+
+        Shapes.add(Shapes.get(0));
+        TestScenes.write(file, Shapes, FrameCount);
+        reloader.reload();
+        assertNull(reloader.LastFailure);
+        assertFalse(reloader.Patched);
+        session.stepFrame();
+        assertEquals(ShapeCount + 1, session.ShapeList.size());
+    }
+
+    /**
+     * Edits a scene while it is played, and checks the reload was patched in
+     * place and plays the same frames as a session loaded from the edited
+     * file.
+     *
+     * @param edit Changes the shapes without adding or removing any.
+     */
+    private void assertReloadMatches(Consumer<List<Shape>> edit) throws Exception {
+        Path file = Dir.resolve("scene.txt");
+        List<Shape> Shapes = new SceneGenerator(2).generate(ShapeCount);
+        TestScenes.write(file, Shapes, FrameCount);
+        AnimationSession session = TestScenes.load(file);
+        HotReloader reloader = new HotReloader(session, file);
+        // The first reload splits the file into blocks, as the watching thread does when it starts.
+        reloader.reload();
+        int played = FrameCount / 2;
+        for (int frame = 0; frame < played; frame++) {
+            session.stepFrame();
+        }
+
+        edit.accept(Shapes);
+        Path edited = TestScenes.write(Dir.resolve("edited.txt"), Shapes, FrameCount);
+        TestScenes.write(file, Shapes, FrameCount);
+        reloader.reload();
+        assertNull(reloader.LastFailure);
+        assertTrue(reloader.Patched);
+        assertTrue(reloader.Reparsed < reloader.Blocks);
+
+        AnimationSession expected = TestScenes.load(edited);
+        for (int frame = 0; frame < played; frame++) {
+            expected.stepFrame();
+        }
+        assertArrayEquals(play(expected, FrameCount - played), play(session, FrameCount - played));
+    }
+
+    /**
+     * Steps through frames of a session, painting its canvas after each.
+     *
+     * @param session The session.
+     * @param frames The number of frames to play.
+     * @return The checksum of each painted frame.
+     */
+    static private int[] play(AnimationSession session, int frames) {
+        BufferedImage image = TestScenes.frame();
+        Graphics2D g = image.createGraphics();
+        int[] checksums = new int[frames];
+        try {
+            for (int frame = 0; frame < frames; frame++) {
+                session.stepFrame();
+                session.Canvas.paint(g);
+                checksums[frame] = TestScenes.checksum(image);
+            }
+        } finally {
+            g.dispose();
+        }
+        return checksums;
+    }
+}
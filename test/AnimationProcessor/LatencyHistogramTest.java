@@ -0,0 +1,82 @@
+package AnimationProcessor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the bucket bounds of a {@link LatencyHistogram} and the
+ * percentiles found from them.
+ */
+class LatencyHistogramTest {
+
+    /**
+     * The buckets cover every duration without gaps or overlaps, small
+     * durations exactly and larger ones to within 12.5%.
+     */
+    @Test
+    void bucketsCoverEveryDuration() {
+        long lower = 0;
+        for (int bucket = 0; bucket < LatencyHistogram.Buckets; bucket++) {
+            long upper = LatencyHistogram.upperBoundOf(bucket);
+            assertEquals(bucket, LatencyHistogram.bucketOf(lower), "lowest duration of bucket " + bucket);
+            assertEquals(bucket, LatencyHistogram.bucketOf(upper), "highest duration of bucket " + bucket);
+            if (bucket < LatencyHistogram.SubBuckets) {
+                assertEquals(lower, upper);
+            } else {
+                assertTrue(upper - lower + 1 <= lower / LatencyHistogram.SubBuckets, "width of bucket " + bucket);
+            }
+            lower = upper + 1;
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBoundOf(LatencyHistogram.Buckets - 1));
+    }
+
+    /**
+     * Each percentile is the top of the bucket holding it, so it is never
+     * below the true value and at most 12.5% above it, and never above the
+     * largest duration.
+     */
+    @Test
+    void percentilesAreBoundedByTheirBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 1000; nanos++) {
+            histogram.record(nanos * 1000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.Count);
+        assertEquals(1_000_000, snapshot.Max);
+        assertEquals(500_500, snapshot.mean(), 1e-9);
+        for (int percent = 1; percent <= 100; percent++) {
+            long exact = percent * 10_000L;
+            long found = snapshot.percentile(percent);
+            assertTrue(found >= exact && found <= exact + exact / LatencyHistogram.SubBuckets, percent + "th percentile " + found);
+        }
+        assertEquals(1_000_000, snapshot.percentile(100));
+        assertEquals(LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(1000)), snapshot.percentile(0));
+    }
+
+    /**
+     * An empty histogram reports 0 for everything, negative durations are
+     * counted as 0, and a reset removes every duration.
+     */
+    @Test
+    void emptyNegativeAndResetDurations() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().percentile(99));
+        assertEquals(0, histogram.snapshot().mean(), 0);
+
+        histogram.record(-5);
+        histogram.record(3);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(2, snapshot.Count);
+        assertEquals(3, snapshot.Total);
+        assertEquals(0, snapshot.percentile(50));
+        assertEquals(3, snapshot.percentile(100));
+
+        histogram.reset();
+        snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.Count);
+        assertEquals(0, snapshot.Max);
+    }
+}
@@ -0,0 +1,116 @@
+package AnimationProcessor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that the shapes of a loaded animation that stop changing once they
+ * are shown are cached in the layers of a {@link LayerCache}, are still found
+ * by the {@link SpatialIndex}, and are drawn once, in order.
+ */
+class LayerCacheTest {
+
+    static private final int ShapeCount = 400;
+    static private final int AnimatedCount = 100;
+    static private final int FrameCount = 60;
+
+    @TempDir
+    Path Dir;
+
+    /**
+     * Shapes shown on the first frame with no later effects are cached, and
+     * hit tests and queries still find them.
+     */
+    @Test
+    void shownShapesAreCachedAndFoundByTheIndex() throws Exception {
+        AnimationSession session = load();
+        assertTrue(session.Layers.layers() > 0);
+        // Steps past frame 1, on which every shape is shown.
+        session.stepFrame();
+        session.stepFrame();
+        int visible = 0;
+        for (Shape CurrShape : session.ShapeList) {
+            if (CurrShape.visible) {
+                visible++;
+            }
+        }
+        assertEquals(visible, session.Index.query(Integer.MIN_VALUE / 2, Integer.MIN_VALUE / 2, Integer.MAX_VALUE / 2, Integer.MAX_VALUE / 2));
+    }
+
+    /**
+     * Drawing with layers draws the same frames as drawing every shape in
+     * order, while playing and after seeking back.
+     */
+    @Test
+    void layersDrawTheSameFrames() throws Exception {
+        AnimationSession session = load();
+        for (int frame = 0; frame < FrameCount; frame++) {
+            assertSameFrame(session, "frame " + frame);
+            session.stepFrame();
+        }
+        session.seek(FrameCount / 3);
+        assertSameFrame(session, "seek to frame " + FrameCount / 3);
+        session.seek(0);
+        assertSameFrame(session, "seek to frame 0");
+    }
+
+    /**
+     * Loads a random animation of a background of shapes with no effects
+     * after the one showing them, with animated shapes drawn over it.
+     */
+    private AnimationSession load() throws Exception {
+        SceneGenerator generator = new SceneGenerator(4);
+        generator.Frames = FrameCount;
+        generator.EffectsPerShape = 0;
+        List<Shape> Shapes = generator.generate(ShapeCount - AnimatedCount);
+        generator.EffectsPerShape = 2;
+        Shapes.addAll(generator.generate(AnimatedCount));
+        return TestScenes.load(TestScenes.write(Dir.resolve("scene.txt"), Shapes, FrameCount));
+    }
+
+    /**
+     * Checks that the layers draw the current frame of a session the same as
+     * drawing every shape.
+     */
+    static private void assertSameFrame(AnimationSession session, String message) {
+        Rectangle area = new Rectangle(0, 0, HeadlessRenderer.DefaultWidth, HeadlessRenderer.DefaultHeight);
+        BufferedImage cached = TestScenes.frame();
+        Graphics2D g = cached.createGraphics();
+        try {
+            session.Layers.draw(g, session.Display, session.Index, area, area.width, area.height);
+        } finally {
+            g.dispose();
+        }
+        BufferedImage drawn = TestScenes.frame();
+        g = drawn.createGraphics();
+        try {
+            for (int shape = 0; shape < session.ShapeList.size(); shape++) {
+                session.Display.draw(g, shape);
+            }
+        } finally {
+            g.dispose();
+        }
+        assertArrayEquals(rgb(drawn), rgb(cached), message);
+    }
+
+    /**
+     * Finds the color of each pixel of a frame, without the unused alpha bits,
+     * which Java2D leaves set by some drawing operations and clear by others.
+     */
+    static private int[] rgb(BufferedImage image) {
+        int[] pixels = TestScenes.pixels(image).clone();
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] &= 0xFFFFFF;
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,159 @@
+package AnimationProcessor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.management.ThreadMXBean;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that painting a session allocates no memory of its own once it has
+ * warmed up, by counting the bytes allocated by the painting thread.
+ * <p>
+ * Java2D allocates memory itself for each stroked outline it draws, which
+ * these tests do not check. The dispatch of the draw commands is counted on
+ * its own by drawing them with a {@link SoftwareRasterizer}, which does not
+ * go through Java2D.
+ */
+class PaintAllocationTest {
+
+    /**
+     * The number of paints run before counting, so every path is compiled and
+     * every cache is filled.
+     */
+    static private final int WarmUp = 300;
+    /**
+     * The number of paints counted.
+     */
+    static private final int Paints = 100;
+    /**
+     * The number of shapes in each scene.
+     */
+    static private final int ShapeCount = 300;
+
+    @TempDir
+    Path Dir;
+
+    /**
+     * Painting a scene whose shapes are all hidden, which finds, sorts and
+     * dispatches every shape and draws the overlay, allocates nothing.
+     */
+    @Test
+    void paintingAllocatesNothing() throws Exception {
+        // Every generated shape is hidden until frame 1.
+        AnimationSession session = load(0);
+        BufferedImage image = TestScenes.frame();
+        Graphics2D g = image.createGraphics();
+        try {
+            assertEquals(0, bytesPerPaint(() -> session.Canvas.paint(g)));
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Dispatching the draw commands of visible shapes, without Java2D,
+     * allocates nothing.
+     */
+    @Test
+    void dispatchingAllocatesNothing() throws Exception {
+        AnimationSession session = load(30);
+        SoftwareRasterizer rasterizer = new SoftwareRasterizer(TestScenes.frame());
+        assertEquals(0, bytesPerPaint(() -> session.Display.draw(rasterizer)));
+    }
+
+    /**
+     * Painting visible shapes allocates no more than drawing the same shapes
+     * straight through Java2D. Both include what Java2D allocates itself, so
+     * this only checks that painting adds nothing to it.
+     */
+    @Test
+    void paintingAllocatesNoMoreThanJava2D() throws Exception {
+        AnimationSession session = load(30);
+        BufferedImage image = TestScenes.frame();
+        Graphics2D g = image.createGraphics();
+        try {
+            double painted = bytesPerPaint(() -> session.Canvas.paint(g));
+            double drawn = bytesPerPaint(() -> {
+                for (Shape CurrShape : session.ShapeList) {
+                    draw(g, CurrShape);
+                }
+            });
+            assertTrue(painted <= drawn, painted + " bytes per paint, " + drawn + " bytes drawn by Java2D");
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Loads a random animation and plays it up to a frame.
+     *
+     * @param frames The number of frames to play.
+     * @return The session.
+     */
+    private AnimationSession load(int frames) throws Exception {
+        AnimationSession session = TestScenes.load(TestScenes.write(Dir.resolve("scene.txt"), 4, ShapeCount, 60));
+        for (int frame = 0; frame < frames; frame++) {
+            session.stepFrame();
+        }
+        return session;
+    }
+
+    /**
+     * Counts the bytes allocated by painting, after warming it up.
+     *
+     * @param paint Paints once.
+     * @return The average number of bytes allocated by each paint.
+     */
+    static private double bytesPerPaint(Runnable paint) {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < WarmUp; i++) {
+            paint.run();
+        }
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < Paints; i++) {
+            paint.run();
+        }
+        return (threads.getThreadAllocatedBytes(thread) - before) / (double) Paints;
+    }
+
+    /**
+     * Draws a shape with the same Java2D calls as
+     * {@link JComp#drawShape drawShape}, straight from its fields.
+     */
+    static private void draw(Graphics2D g, Shape CurrShape) {
+        if (!CurrShape.visible) {
+            return;
+        }
+        g.setColor(CurrShape.color);
+        switch (CurrShape.type) {
+            case "Circle":
+                g.setStroke(JComp.ThinStroke);
+                g.fillOval(CurrShape.x - CurrShape.r, CurrShape.y - CurrShape.r, CurrShape.r * 2, CurrShape.r * 2);
+                g.setColor(CurrShape.borderColor);
+                g.setStroke(JComp.strokeOf(CurrShape.border));
+                g.drawOval(CurrShape.x - CurrShape.r, CurrShape.y - CurrShape.r, CurrShape.r * 2, CurrShape.r * 2);
+                break;
+            case "Rect":
+                g.fillRect(CurrShape.x, CurrShape.y, CurrShape.length, CurrShape.width);
+                g.setColor(CurrShape.borderColor);
+                g.setStroke(JComp.strokeOf(CurrShape.border));
+                g.drawRect(CurrShape.x, CurrShape.y, CurrShape.length, CurrShape.width);
+                break;
+            case "Line":
+                g.setColor(CurrShape.borderColor);
+                g.setStroke(JComp.strokeOf(CurrShape.border));
+                g.drawLine(CurrShape.x, CurrShape.y, CurrShape.endX, CurrShape.endY);
+                g.setColor(CurrShape.color);
+                g.setStroke(JComp.ThinStroke);
+                g.drawLine(CurrShape.x, CurrShape.y, CurrShape.endX, CurrShape.endY);
+                break;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package AnimationProcessor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Graphics2D;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks what the {@link PlaybackMetrics} of a session record while it is
+ * loaded, stepped and painted.
+ */
+class PlaybackMetricsTest {
+
+    static private final int FrameCount = 60;
+    static private final int PaintCount = 25;
+
+    @TempDir
+    Path Dir;
+
+    /**
+     * With metrics enabled, the load, each frame with effects and each paint
+     * are recorded.
+     */
+    @Test
+    void enabledMetricsRecordEachSpan() throws Exception {
+        PlaybackMetrics.Snapshot snapshot = play(true);
+        assertEquals(1, snapshot.Loads.Count);
+        assertTrue(snapshot.Effects.Count > 0 && snapshot.Effects.Count <= FrameCount, snapshot.Effects.Count + " effect frames");
+        assertEquals(PaintCount, snapshot.Paints.Count);
+        for (LatencyHistogram.Snapshot spans : new LatencyHistogram.Snapshot[]{snapshot.Loads, snapshot.Effects, snapshot.Paints}) {
+            assertTrue(spans.Max > 0);
+            assertTrue(spans.percentile(50) <= spans.percentile(99) && spans.percentile(99) <= spans.Max);
+            assertTrue(spans.mean() <= spans.Max);
+        }
+        // Frames are only counted when they are played by the scheduler.
+        assertEquals(0, snapshot.Frames);
+    }
+
+    /**
+     * With metrics disabled, nothing is recorded.
+     */
+    @Test
+    void disabledMetricsRecordNothing() throws Exception {
+        PlaybackMetrics.Snapshot snapshot = play(false);
+        assertEquals(0, snapshot.Loads.Count);
+        assertEquals(0, snapshot.Effects.Count);
+        assertEquals(0, snapshot.Paints.Count);
+        assertEquals(0, snapshot.Lateness.Count);
+        assertEquals(0, snapshot.Frames);
+        assertEquals(0, snapshot.DroppedFrames);
+    }
+
+    /**
+     * Loads a scene, steps through every frame and paints it a number of
+     * times.
+     *
+     * @param enabled Whether metrics are enabled before loading.
+     * @return The metrics afterwards.
+     */
+    private PlaybackMetrics.Snapshot play(boolean enabled) throws Exception {
+        Path file = TestScenes.write(Dir.resolve("scene.txt"), 5, 400, FrameCount);
+        AnimationSession session = new AnimationSession();
+        session.Metrics.setEnabled(enabled);
+        session.loadAnimationFromFile(file.toString());
+        session.Canvas.setSize(HeadlessRenderer.DefaultWidth, HeadlessRenderer.DefaultHeight);
+        for (int frame = 0; frame < FrameCount; frame++) {
+            session.stepFrame();
+        }
+        Graphics2D g = TestScenes.frame().createGraphics();
+        try {
+            for (int i = 0; i < PaintCount; i++) {
+                session.Canvas.paint(g);
+            }
+        } finally {
+            g.dispose();
+        }
+        return session.Metrics.snapshot();
+    }
+}
@@ -0,0 +1,71 @@
+package AnimationProcessor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that an animation {@link AnimationSession#loadAnimationProgressively
+ * loaded progressively} plays the same frames as one loaded in full, once
+ * every shape has been swapped in.
+ */
+class ProgressiveLoaderTest {
+
+    static private final int ShapeCount = 5 * ProgressiveLoader.ChunkSize;
+    static private final int FrameCount = 60;
+
+    @TempDir
+    Path Dir;
+
+    /**
+     * Frames played while the shapes are still being read do not change the
+     * frames played once every shape has been swapped in.
+     */
+    @Test
+    void loadedScenesPlayAsIfLoadedInFull() throws Exception {
+        Path file = TestScenes.write(Dir.resolve("scene.txt"), 5, ShapeCount, FrameCount);
+        AnimationSession session = new AnimationSession();
+        session.loadAnimationProgressively(file.toString());
+        session.Canvas.setSize(HeadlessRenderer.DefaultWidth, HeadlessRenderer.DefaultHeight);
+        int played = FrameCount / 3;
+        for (int frame = 0; frame < played; frame++) {
+            session.stepFrame();
+        }
+        session.awaitLoaded();
+        assertEquals(ShapeCount, session.ShapeList.size());
+
+        AnimationSession expected = TestScenes.load(file);
+        for (int frame = 0; frame < played; frame++) {
+            expected.stepFrame();
+        }
+        assertArrayEquals(play(expected, FrameCount - played), play(session, FrameCount - played));
+    }
+
+    /**
+     * Steps through frames of a session, painting its canvas after each.
+     *
+     * @param session The session.
+     * @param frames The number of frames to play.
+     * @return The checksum of each painted frame.
+     */
+    static private int[] play(AnimationSession session, int frames) {
+        BufferedImage image = TestScenes.frame();
+        Graphics2D g = image.createGraphics();
+        int[] checksums = new int[frames];
+        try {
+            for (int frame = 0; frame < frames; frame++) {
+                session.stepFrame();
+                session.Canvas.paint(g);
+                checksums[frame] = TestScenes.checksum(image);
+            }
+        } finally {
+            g.dispose();
+        }
+        return checksums;
+    }
+}
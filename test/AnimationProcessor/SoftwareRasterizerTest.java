@@ -0,0 +1,252 @@
+package AnimationProcessor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a {@link SoftwareRasterizer} covers the pixels Java2D covers,
+ * within its {@link SoftwareRasterizer#Tolerance tolerance}, by comparing
+ * its frames with golden images drawn by Java2D.
+ * <p>
+ * The golden images are kept in {@code test/resources}, so the frames do not
+ * depend on the version of Java2D the tests run on. They are drawn again with
+ * {@code mvn test -DupdateGoldens}, which should only be needed when the
+ * shapes drawn by a test change.
+ */
+class SoftwareRasterizerTest {
+
+    /**
+     * Where the golden images are written when they are drawn again.
+     */
+    static private final Path GoldenDir = Paths.get("test", "resources", "AnimationProcessor", "golden");
+
+    @TempDir
+    Path Dir;
+
+    /**
+     * Circles with no, thin and thick borders, including empty circles and
+     * circles running off every edge, match Java2D. Borders thicker than the
+     * radius are left out, as Java2D leaves holes in them.
+     */
+    @Test
+    void circlesMatchJava2D() throws IOException {
+        List<Shape> Shapes = new ArrayList<>();
+        // The largest circles are drawn first, so they do not cover the others.
+        int[] radii = {900, 260, 97, 40, 13, 5, 2, 1, 0};
+        int[] borders = {0, 1, 2, 3, 6, 11, 24, 60};
+        int i = 0;
+        for (int r : radii) {
+            for (int border : borders) {
+                if (r > 0 && border > r) {
+                    continue;
+                }
+                // Spreads the circles over and past the frame, so some are clipped by each edge.
+                int x = -60 + (i * 37) % (HeadlessRenderer.DefaultWidth + 120);
+                int y = -60 + (i * 53) % (HeadlessRenderer.DefaultHeight + 120);
+                Shapes.add(circle(x, y, r, border, i++));
+            }
+        }
+        assertMatches("circles", Shapes);
+    }
+
+    /**
+     * Rectangles with thin and thick borders, including rectangles running off
+     * the edges, match Java2D.
+     */
+    @Test
+    void rectanglesMatchJava2D() throws IOException {
+        List<Shape> Shapes = new ArrayList<>();
+        int[] borders = {0, 1, 2, 5, 16};
+        int i = 0;
+        for (int border : borders) {
+            Shapes.add(rect(20 + i * 60, 30, 40, 25, border, i++));
+            Shapes.add(rect(-10, 80 + i * 40, 30, 12, border, i++));
+            Shapes.add(rect(HeadlessRenderer.DefaultWidth - 20, -10 + i * 30, 50, 3, border, i++));
+            Shapes.add(rect(100 + i * 10, HeadlessRenderer.DefaultHeight - 6, 1, 40, border, i++));
+        }
+        assertMatches("rectangles", Shapes);
+    }
+
+    /**
+     * Lines of every direction with thin and thick borders, including lines
+     * running off the edges, match Java2D.
+     */
+    @Test
+    void linesMatchJava2D() throws IOException {
+        List<Shape> Shapes = new ArrayList<>();
+        int[] borders = {0, 1, 2, 5, 12};
+        int cx = HeadlessRenderer.DefaultWidth / 2;
+        int cy = HeadlessRenderer.DefaultHeight / 2;
+        int i = 0;
+        for (int border : borders) {
+            for (int angle = 0; angle < 360; angle += 23) {
+                double length = 40 + border * 25 + angle;
+                int endX = cx + (int) Math.round(Math.cos(Math.toRadians(angle)) * length);
+                int endY = cy + (int) Math.round(Math.sin(Math.toRadians(angle)) * length);
+                Shapes.add(line(cx + border * 7, cy - border * 5, endX, endY, border, i++));
+            }
+        }
+        assertMatches("lines", Shapes);
+    }
+
+    /**
+     * A shape given a new color after the list was compiled is drawn in the
+     * new color, as if the list had been compiled with it.
+     */
+    @Test
+    void changedColorsAreDrawn() {
+        List<Shape> Shapes = new ArrayList<>();
+        Shapes.add(circle(100, 100, 40, 4, 0));
+        Shapes.add(rect(200, 50, 60, 30, 3, 1));
+        DisplayList Display = new DisplayList(Shapes);
+        draw(Display);
+        for (Shape CurrShape : Shapes) {
+            CurrShape.color = new Color(0x123456);
+            CurrShape.borderColor = new Color(0xABCDEF);
+        }
+        assertArrayEquals(draw(new DisplayList(Shapes)), draw(Display));
+    }
+
+    /**
+     * Frames throughout a generated animation match Java2D.
+     */
+    @Test
+    void animationsMatchJava2D() throws Exception {
+        AnimationSession session = TestScenes.load(TestScenes.write(Dir.resolve("scene.txt"), 1, 200, 60));
+        for (int frame = 0; frame < session.Frames; frame++) {
+            session.stepFrame();
+            if (frame % 20 == 19) {
+                assertMatches("animation-" + frame, session.Display);
+            }
+        }
+    }
+
+    /**
+     * Draws shapes through a software rasterizer, and checks that they match
+     * the golden image drawn by Java2D.
+     *
+     * @param name The name of the golden image.
+     * @param Shapes The visible shapes to draw.
+     */
+    static private void assertMatches(String name, List<Shape> Shapes) throws IOException {
+        assertMatches(name, new DisplayList(Shapes));
+    }
+
+    static private void assertMatches(String name, DisplayList Display) throws IOException {
+        int Width = HeadlessRenderer.DefaultWidth;
+        int Height = HeadlessRenderer.DefaultHeight;
+        BufferedImage golden;
+        if (System.getProperty("updateGoldens") != null) {
+            golden = TestScenes.frame();
+            Graphics2D g = golden.createGraphics();
+            try {
+                HeadlessRenderer.drawFrame(g, Display, Width, Height);
+            } finally {
+                g.dispose();
+            }
+            Files.createDirectories(GoldenDir);
+            ImageIO.write(golden, "png", GoldenDir.resolve(name + ".png").toFile());
+        } else {
+            golden = golden(name);
+        }
+        int[] expected = rgb(golden);
+        int[] actual = draw(Display);
+        int mismatches = SoftwareRasterizer.countMismatches(expected, actual, Width, Height);
+        assertTrue(mismatches <= Width * Height * SoftwareRasterizer.MismatchShare, name + ": " + mismatches + " pixels differ");
+    }
+
+    /**
+     * Draws shapes through a software rasterizer.
+     *
+     * @param Display The shapes, compiled into draw commands.
+     * @return The color of each pixel drawn.
+     */
+    static private int[] draw(DisplayList Display) {
+        BufferedImage actual = TestScenes.frame();
+        new SoftwareRasterizer(actual).drawFrame(Display);
+        return rgb(actual);
+    }
+
+    /**
+     * Reads a golden image from the test resources.
+     *
+     * @param name The name of the image.
+     * @return The image, as drawn into a frame.
+     */
+    static private BufferedImage golden(String name) throws IOException {
+        try (InputStream in = SoftwareRasterizerTest.class.getResourceAsStream("golden/" + name + ".png")) {
+            assertNotNull(in, "No golden image " + name + ", run the tests with -DupdateGoldens to draw it");
+            BufferedImage frame = TestScenes.frame();
+            Graphics2D g = frame.createGraphics();
+            try {
+                g.drawImage(ImageIO.read(in), 0, 0, null);
+            } finally {
+                g.dispose();
+            }
+            return frame;
+        }
+    }
+
+    /**
+     * Finds the color of each pixel of a frame, without the unused alpha bits,
+     * which Java2D leaves set by some drawing operations and clear by others.
+     */
+    static private int[] rgb(BufferedImage image) {
+        int[] pixels = TestScenes.pixels(image).clone();
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] &= 0xFFFFFF;
+        }
+        return pixels;
+    }
+
+    static private Shape circle(int x, int y, int r, int border, int seed) {
+        Shape CurrShape = shape("Circle", x, y, border, seed);
+        CurrShape.r = r;
+        return CurrShape;
+    }
+
+    static private Shape rect(int x, int y, int length, int width, int border, int seed) {
+        Shape CurrShape = shape("Rect", x, y, border, seed);
+        CurrShape.length = length;
+        CurrShape.width = width;
+        return CurrShape;
+    }
+
+    static private Shape line(int x, int y, int endX, int endY, int border, int seed) {
+        Shape CurrShape = shape("Line", x, y, border, seed);
+        CurrShape.endX = endX;
+        CurrShape.endY = endY;
+        return CurrShape;
+    }
+
+    /**
+     * Creates a visible shape, with colors that differ from its neighbours so
+     * overlaps show.
+     */
+    static private Shape shape(String type, int x, int y, int border, int seed) {
+        Shape CurrShape = new Shape();
+        CurrShape.type = type;
+        CurrShape.x = x;
+        CurrShape.y = y;
+        CurrShape.border = border;
+        CurrShape.visible = true;
+        CurrShape.color = new Color(0x10000 * (seed * 41 % 256) + 0x100 * (seed * 97 % 256) + 0x80);
+        CurrShape.borderColor = new Color(0x40 + 0x10000 * (seed * 13 % 256) + 0x100 * (seed * 211 % 256));
+        return CurrShape;
+    }
+}
@@ -0,0 +1,95 @@
+package AnimationProcessor;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds the animations used by the tests, and reduces drawn frames to
+ * values that can be compared.
+ */
+final class TestScenes {
+
+    private TestScenes() {
+    }
+
+    /**
+     * Writes a random animation as an input file.
+     *
+     * @param file The file to write.
+     * @param seed The seed the animation is made from.
+     * @param shapes The number of shapes.
+     * @param frames The number of frames.
+     * @return The file.
+     * @throws IOException If the file could not be written.
+     */
+    static Path write(Path file, long seed, int shapes, int frames) throws IOException {
+        SceneGenerator generator = new SceneGenerator(seed);
+        generator.Frames = frames;
+        generator.write(file, generator.generate(shapes));
+        return file;
+    }
+
+    /**
+     * Writes the given shapes as an input file.
+     *
+     * @param file The file to write.
+     * @param Shapes The shapes, with their effects.
+     * @param frames The number of frames.
+     * @return The file.
+     * @throws IOException If the file could not be written.
+     */
+    static Path write(Path file, List<Shape> Shapes, int frames) throws IOException {
+        SceneGenerator generator = new SceneGenerator(0);
+        generator.Frames = frames;
+        generator.write(file, Shapes);
+        return file;
+    }
+
+    /**
+     * Loads an input file into a new session, with a canvas the size of the
+     * default frame.
+     *
+     * @param file The input file.
+     * @return The session, at frame 0.
+     */
+    static AnimationSession load(Path file) {
+        AnimationSession session = new AnimationSession();
+        session.loadAnimationFromFile(file.toString());
+        session.Canvas.setSize(HeadlessRenderer.DefaultWidth, HeadlessRenderer.DefaultHeight);
+        return session;
+    }
+
+    /**
+     * Creates an image the size of the default frame.
+     *
+     * @return The image.
+     */
+    static BufferedImage frame() {
+        return new BufferedImage(HeadlessRenderer.DefaultWidth, HeadlessRenderer.DefaultHeight, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /**
+     * Finds the pixels of an image that stores each pixel as an int.
+     *
+     * @param image The image.
+     * @return The pixels, row by row.
+     */
+    static int[] pixels(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Reduces the pixels of an image to a single value, which differs for
+     * almost any difference between images.
+     *
+     * @param image The image.
+     * @return The checksum.
+     */
+    static int checksum(BufferedImage image) {
+        return Arrays.hashCode(pixels(image));
+    }
+}
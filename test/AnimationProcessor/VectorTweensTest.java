@@ -0,0 +1,48 @@
+package AnimationProcessor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link VectorTweens} evaluates every block of effects to
+ * exactly the same values as the scalar loop of {@link Tweens}.
+ */
+class VectorTweensTest {
+
+    static private final int ShapeCount = 500;
+    static private final int FrameCount = 600;
+
+    /**
+     * Every entry of every block has the same values on each frame of the
+     * block, including the entries left over after the last full vector.
+     */
+    @Test
+    void vectorsMatchTheScalarLoop() {
+        assumeTrue(Tweens.isVectorized(), "The vector API is not available");
+        SceneGenerator generator = new SceneGenerator(7);
+        generator.Frames = FrameCount;
+        generator.EffectsPerShape = 4;
+        List<Shape> Shapes = generator.generate(ShapeCount);
+        Tweens tweens = new Tweens(Shapes);
+        VectorTweens vectors = new VectorTweens();
+        for (int block = 0; block < tweens.BlockStart.length - 1; block++) {
+            int first = tweens.BlockStart[block];
+            // Leaves out a few entries, so the last vector of the block is only partly filled.
+            for (int last = tweens.BlockStart[block + 1]; last > Math.max(first, tweens.BlockStart[block + 1] - 3); last--) {
+                for (int frame = block * Tweens.BlockSize; frame < (block + 1) * Tweens.BlockSize; frame += 7) {
+                    int size = last - first;
+                    int[][] expected = {new int[size], new int[size], new int[size]};
+                    int[][] actual = {new int[size], new int[size], new int[size]};
+                    tweens.evaluateScalar(first, first, last, frame, expected[0], expected[1], expected[2]);
+                    vectors.evaluate(tweens, first, last, frame, actual[0], actual[1], actual[2]);
+                    for (int value = 0; value < 3; value++) {
+                        assertArrayEquals(expected[value], actual[value], "block " + block + " on frame " + frame);
+                    }
+                }
+            }
+        }
+    }
+}